@@ -247,10 +247,11 @@ public class BiomassSpecies implements Serializable {
 				_biomassSp.initializeReactionsArray();
 			}
 			// precompute the rates for all reactions
+			int g = MultigridVariable.getFinestLevel();
+			int p = MultigridVariable.snapToIndex(c);
 			for (int i = 0; i < _biomassSp._reactions.length; i++) {
-				MultigridVariable.setCurrentLocation(c);
-				_biomassSp._reactions[i]
-						.computeMassGrowthRateAndAddToGlobal(this);
+				_biomassSp._reactions[i].computeMassGrowthRateAndAddToGlobal(
+						this, g, p);
 			}
 			// iterate through the reactions involved with this biomass
 			// species and call getMassRate which performes all the
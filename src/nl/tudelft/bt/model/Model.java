@@ -255,7 +255,8 @@ public class Model implements Serializable {
 	 * @param g
 	 *            grid size for solute concentration field
 	 * @throws InvalidValueException
-	 *             id ((d != 2) && (d != 3)) and if g is not of form 2^n + 1
+	 *             id ((d != 2) && (d != 3)) and if g is not odd (see
+	 *             MultigridVariable.setGrid)
 	 */
 	public void buildSystem(int d, float s, int g) throws InvalidValueException {
 		if ((d != 2) && (d != 3))
@@ -348,6 +349,9 @@ public class Model implements Serializable {
 		_biomassSpecies = b;
 		_soluteSpecies = c;
 		_boundaryLayer = bl;
+		// find the factors of each reaction that depend on each solute
+		for (Iterator<Reaction> iter = _reactions.iterator(); iter.hasNext();)
+			iter.next().buildDerivativeSparsity(_soluteSpecies);
 		// get the array of fixed substances from the biomass species array
 		Collection<ParticulateSpecies> col = new ArrayList<ParticulateSpecies>();
 		for (int i = 0; i < _biomassSpecies.length; i++) {
@@ -366,13 +370,17 @@ public class Model implements Serializable {
 	/**
 	 * Add a reaction to the reaction container. This method is called directly
 	 * by the Reaction contructor, so that each reaction created is
-	 * automatically stored
+	 * automatically stored. If the solutes are already set, the sparsity of
+	 * the derivatives of the reaction is built (see
+	 * Reaction.buildDerivativeSparsity).
 	 * 
 	 * @param r
 	 *            reactioin to add to model
 	 */
 	public void addReaction(Reaction r) {
 		_reactions.add(r);
+		if (_soluteSpecies != null)
+			r.buildDerivativeSparsity(_soluteSpecies);
 	}
 
 	/**
@@ -674,8 +682,7 @@ public class Model implements Serializable {
 	public void initializeSoluteConcentrations()
 			throws MultigridSystemNotSetException {
 		updateBioDiscreteData();
-		MultigridVariable.solve(_soluteSpecies, _particulateSpecies,
-				_boundaryLayer);
+		solveWithMultigrid();
 		// perform the global reactor mass balances
 		for (int i = 0; i < _soluteSpecies.length; i++) {
 			_soluteSpecies[i].initializeGlobalRateSeries();
@@ -698,23 +705,21 @@ public class Model implements Serializable {
 		}
 		updateBioDiscreteData();
 		solveWithMultigrid();
-		// NOTE to solve by relaxation use:
-		// MultigridVariable.solveByRelax(
-		// _chemicalSpecies,
-		// _fixedSpecies,
-		// _boundaryLayer);
+		// NOTE to solve by multigrid use:
+		// MultigridVariable.setSolver(MultigridVariable.MULTIGRID);
 	}
 
 	/**
 	 * Determines the concentration fields of all solutes by solving the
-	 * diffusion/reaction PDE's using multigrid
+	 * diffusion/reaction PDE's using the solver set in MultigridVariable
+	 * (relaxation by default)
 	 * 
 	 * @throws MultigridSystemNotSetException
 	 * 
 	 */
 	public void solveWithMultigrid() throws MultigridSystemNotSetException {
-		MultigridVariable.solve(_soluteSpecies, _particulateSpecies,
-				_boundaryLayer);
+		MultigridVariable.solveDiffusionReaction(_soluteSpecies,
+				_particulateSpecies, _boundaryLayer);
 	}
 
 	/**
@@ -0,0 +1,131 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.apps.output;
+
+import nl.tudelft.bt.model.Model;
+import nl.tudelft.bt.model.exceptions.ModelRuntimeException;
+import nl.tudelft.bt.model.multigrid.MultigridVariable;
+import nl.tudelft.bt.model.multigrid.SoluteSpecies;
+import nl.tudelft.bt.model.multigrid.SolverStatistics;
+
+/**
+ * The time series of a statistic of the solvers of the reaction-diffusion
+ * equations, taken from the last call to the solvers at each iteration (see
+ * MultigridVariable.getSolverStatistics). Statistics of a solute are created
+ * with SolverSeries(int, SoluteSpecies).
+ */
+public class SolverSeries extends VariableSeries {
+	// statistics of the whole system
+	public static final int WALLTIME = 0;
+
+	public static final int VCYCLES = 1;
+
+	public static final int SWEEPS = 2;
+
+	public static final int ACTIVEVOXELS = 3;
+
+	// statistics of a solute
+	public static final int RESIDUAL = 4;
+
+	public static final int TRUNCATIONERROR = 5;
+
+	// residual divided by the norm of the rates, compared to the solver
+	// tolerance of the solute
+	public static final int RELATIVERESIDUAL = 6;
+
+	private static final String[] LABELS = { "Solver wall time [ms]",
+			"V-cycles", "Relaxation sweeps", "Active voxels", "residual",
+			"truncation error", "relative residual" };
+
+	private final int _statistic;
+
+	private final SoluteSpecies _solute;
+
+	/**
+	 * @param statistic
+	 *            WALLTIME, VCYCLES, SWEEPS or ACTIVEVOXELS (at the finest
+	 *            grid)
+	 */
+	public SolverSeries(int statistic) {
+		this(statistic, null);
+	}
+
+	/**
+	 * @param statistic
+	 *            RESIDUAL, TRUNCATIONERROR or RELATIVERESIDUAL
+	 * @param c
+	 *            the solute
+	 */
+	public SolverSeries(int statistic, SoluteSpecies c) {
+		super(label(statistic, c), "Time [h]", label(statistic, c));
+		_statistic = statistic;
+		_solute = c;
+		setX(Model.model().getTimeSeries());
+	}
+
+	/**
+	 * @param statistic
+	 * @param c
+	 *            the solute for statistics of a solute
+	 * @return the label of a series
+	 */
+	private static String label(int statistic, SoluteSpecies c) {
+		if ((statistic < WALLTIME) | (statistic > RELATIVERESIDUAL))
+			throw new ModelRuntimeException("solver statistic " + statistic
+					+ " not valid");
+		if ((statistic >= RESIDUAL) != (c != null))
+			throw new ModelRuntimeException("solver statistic " + statistic
+					+ (c == null ? " requires" : " does not take")
+					+ " a solute");
+		if (c == null)
+			return LABELS[statistic];
+		return c.getName() + " " + LABELS[statistic];
+	}
+
+	/**
+	 * @return the present value of the statistic, 0 before the first call to
+	 *         the solvers
+	 */
+	private float getValue() {
+		SolverStatistics s = MultigridVariable.getSolverStatistics();
+		int order = s.getNumberOfGridOrders();
+		if (order == 0)
+			return 0;
+		switch (_statistic) {
+		case WALLTIME:
+			return s.getWallTime();
+		case VCYCLES:
+			return s.getVCycles();
+		case SWEEPS:
+			return s.getSweeps();
+		case ACTIVEVOXELS:
+			return s.getActiveVoxels(order - 1);
+		}
+		int i = s.indexOf(_solute);
+		if (i < 0)
+			return 0;
+		switch (_statistic) {
+		case RESIDUAL:
+			return s.getResidual(i);
+		case TRUNCATIONERROR:
+			return s.getTruncationError(i);
+		default:
+			return s.getResidual(i) / s.getRateNorm(i);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see nl.tudelft.bt.model.apps.output.VariableSeries#getLastY()
+	 */
+	public float getLastY() {
+		int sizeX = getXArray().getSize();
+		int sizeY = getYArray().getSize();
+		// every time getY is invoked, the array is updated
+		for (int i = sizeY; i < sizeX; i++)
+			getYArray().add(getValue());
+		return super.getLastY();
+	}
+}
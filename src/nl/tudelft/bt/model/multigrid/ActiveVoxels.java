@@ -0,0 +1,118 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+/**
+ * The voxels of a grid where the reaction-diffusion equations are solved,
+ * i.e. the voxels inside the boundary layer, compacted so that the solvers
+ * iterate only over these. Voxels are stored as runs along the contiguous
+ * dimension of the matrices (k in 3D, j in planar 2D matrices): run r of a
+ * list covers the positions from runs[r * RUN] to runs[r * RUN + 1] of the
+ * matrix data. There is a list for each color of the red-black ordering,
+ * where consecutive voxels of a run are 2 positions apart, and a list of all
+ * voxels, where they are 1 position apart. Runs are sorted by position.
+ */
+public class ActiveVoxels {
+	// number of entries of each run
+	static final int RUN = 2;
+
+	// runs of the voxels with odd i + j + k (color 1), even i + j + k (color
+	// 2) and of all voxels
+	private final int[] _odd;
+
+	private final int[] _even;
+
+	private final int[] _all;
+
+	private final int _count;
+
+	/**
+	 * Find the voxels inside the boundary layer
+	 * 
+	 * @param bl
+	 *            matrix of the boundary layer at a grid order
+	 */
+	public ActiveVoxels(PaddedMatrix bl) {
+		_odd = findRuns(bl, 1);
+		_even = findRuns(bl, 2);
+		_all = findRuns(bl, 0);
+		int count = 0;
+		for (int q = 0; q < _all.length; q += RUN)
+			count += _all[q + 1] - _all[q] + 1;
+		_count = count;
+	}
+
+	/**
+	 * Find the runs of voxels inside the boundary layer
+	 * 
+	 * @param bl
+	 * @param color
+	 *            1 for voxels with odd i + j + k, 2 for even, 0 for all
+	 * @return the runs
+	 */
+	private static int[] findRuns(PaddedMatrix bl, int color) {
+		boolean planar = bl.isPlanar();
+		int n = bl.getN();
+		// number of rows per index i and length of the rows
+		int rows = (planar ? 1 : bl.getM());
+		int length = (planar ? bl.getM() : bl.getL());
+		int step = (color == 0 ? 1 : 2);
+		float[] b = bl.data;
+		float threshold = MultigridVariable.BLTHRESH;
+		int[] runs = new int[RUN * 16];
+		int size = 0;
+		for (int i = 1; i <= n; i++)
+			for (int j = 1; j <= rows; j++) {
+				// first voxel of the color in this row, rows of planar
+				// matrices run along j with k = 1
+				int x = (color == 0 ? 1 : 2 - ((i + j + color) % 2));
+				int p = (planar ? bl.index(i, x, 1) : bl.index(i, j, x));
+				while (x <= length) {
+					if (b[p] >= threshold) {
+						x += step;
+						p += step;
+						continue;
+					}
+					if (size + RUN > runs.length) {
+						int[] r = new int[runs.length * 2];
+						System.arraycopy(runs, 0, r, 0, size);
+						runs = r;
+					}
+					runs[size] = p;
+					while ((x <= length) && (b[p] < threshold)) {
+						x += step;
+						p += step;
+					}
+					runs[size + 1] = p - step;
+					size += RUN;
+				}
+			}
+		int[] r = new int[size];
+		System.arraycopy(runs, 0, r, 0, size);
+		return r;
+	}
+
+	/**
+	 * @param color
+	 *            color of the red-black ordering (1 or 2, as isw in relax)
+	 * @return the runs of the voxels of color
+	 */
+	int[] getRuns(int color) {
+		return (color == 1 ? _odd : _even);
+	}
+
+	/**
+	 * @return the runs of all voxels
+	 */
+	int[] getRuns() {
+		return _all;
+	}
+
+	/**
+	 * @return number of voxels inside the boundary layer
+	 */
+	public int getNumberOfVoxels() {
+		return _count;
+	}
+}
@@ -200,7 +200,7 @@ public class BiomassBooleanMatrix {
 					} else
 						// if not
 						for (int sp = 0; sp < b.length; sp++) {
-							if (b[sp]._mg[_order - 1][i][j][k] > 0) {
+							if (b[sp]._mg[_order - 1].get(i, j, k) > 0) {
 								_totalBiomass[i][j][k] = true;
 								break;
 							}
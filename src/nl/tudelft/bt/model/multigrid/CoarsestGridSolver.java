@@ -0,0 +1,546 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+import nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions;
+import nl.tudelft.bt.model.multigrid.boundary_layers.BoundaryLayer;
+import nl.tudelft.bt.model.reaction.FactorCache;
+import nl.tudelft.bt.model.reaction.RateKernel;
+
+/**
+ * Direct solver of the reaction-diffusion equations at the coarsest grid,
+ * where the boundary layer holds only a handful of voxels. The equations of
+ * all solutes at all voxels inside the boundary layer are solved at once by
+ * Newton's method, with a dense Jacobian factorized by LU decomposition at
+ * each step. The Jacobian is the diffusion stencil (exact, including the
+ * boundary conditions) plus the derivatives of the rates, the derivative of
+ * the rate of each solute in respect to itself from its rate kernel and the
+ * coupling between solutes by finite differences.
+ * <p>
+ * Fails, so that the caller falls back to relaxation, if the system is too
+ * large, the Jacobian is singular or Newton's method does not converge.
+ */
+class CoarsestGridSolver {
+	// maximum number of unknowns (voxels times solutes) of a dense system
+	private static final int MAXUNKNOWNS = 400;
+
+	// maximum number of Newton iterations
+	private static final int NEWTONITERATIONS = 30;
+
+	// maximum number of times a Newton step is halved
+	private static final int LINESEARCH = 8;
+
+	// the solution converged when the Newton step of every solute is below
+	// this times its maximum concentration, or F at every voxel below this
+	// times the magnitude of the terms of F there
+	private static final float TOLERANCE = 1e-5f;
+
+	// relative change of the concentrations for the finite differences of
+	// the rates, about the square root of the precision of floats
+	private static final float PERTURBATION = 3e-4f;
+
+	// unit perturbation at one voxel, to compute the diffusion stencil
+	// including the boundary conditions
+	private final PaddedMatrix _unit;
+
+	private int _voxels;
+
+	private int _solutes;
+
+	// positions of the voxels inside the boundary layer and a value per voxel
+	private int[] _position = new int[0];
+
+	private float[] _values = new float[0];
+
+	// diffusion term at voxel i of a unit value at voxel j (i * voxels + j)
+	private float[] _diffusion = new float[0];
+
+	// per unknown (voxel * solutes + solute): concentrations before a Newton
+	// step, rates, rate derivatives, F and the Newton step
+	private float[] _u0 = new float[0];
+
+	private float[] _rates = new float[0];
+
+	private float[] _derivatives = new float[0];
+
+	private double[] _f = new double[0];
+
+	// magnitude of the terms of F
+	private double[] _scale = new double[0];
+
+	private double[] _du = new double[0];
+
+	// unknowns fixed at 0 during a Newton step
+	private boolean[] _fixed = new boolean[0];
+
+	// Jacobian (row major) and its LU decomposition, in place
+	private double[] _jacobian = new double[0];
+
+	private int[] _pivot = new int[0];
+
+	// whether the rate of solute s depends on solute t (s * solutes + t),
+	// the sparsity of the coupling terms of the Jacobian
+	private boolean[] _coupled = new boolean[0];
+
+	// rate and rate derivative
+	private final float[] _rDr = new float[2];
+
+	/**
+	 * Allocate the solver for the present grid
+	 * 
+	 * @param coarsest
+	 *            a matrix of the size of the coarsest grid
+	 */
+	CoarsestGridSolver(PaddedMatrix coarsest) {
+		_unit = new PaddedMatrix(coarsest.getN(), coarsest.getM(), coarsest
+				.getL());
+	}
+
+	/**
+	 * Solve the reaction-diffusion equations at the coarsest grid for the
+	 * right hand sides of the solutes, starting from their present
+	 * concentrations
+	 * 
+	 * @param c
+	 *            solute species
+	 * @param kernels
+	 *            rate kernels of the solutes
+	 * @param cache
+	 *            factor cache for the kernels, or null
+	 * @param d
+	 *            relative diffusion
+	 * @param bl
+	 *            boundary layer
+	 * @return true if the solution converged, false if the caller must fall
+	 *         back to relaxation
+	 */
+	boolean solve(SoluteSpecies[] c, RateKernel[] kernels, FactorCache cache,
+			RelativeDiffusion d, BoundaryLayer bl) {
+		int g = MultigridVariable.COARSEST;
+		if (!setUnknowns(c.length, bl.getActiveVoxels(g)))
+			return false;
+		computeDiffusion(d);
+		computeCoupling(c, kernels);
+		evaluate(c, kernels, cache, d);
+		for (int it = 0; it < NEWTONITERATIONS; it++) {
+			saveValues(c);
+			if (!computeStep(c, kernels, cache))
+				return false;
+			double merit = merit();
+			// negated comparison to fail on NaN as well
+			if (!(merit < Double.POSITIVE_INFINITY))
+				return false;
+			// F may be too close to round-off for the step to be small
+			if (isResidualSmall())
+				return true;
+			boolean converged = isStepSmall();
+			// line search
+			float lambda = 1;
+			for (int h = 0;; h++) {
+				boolean changed = step(c, lambda);
+				evaluate(c, kernels, cache, d);
+				// a step too small to change any concentration cannot
+				// improve the solution further
+				if (converged || !changed)
+					return true;
+				if (merit() < merit)
+					break;
+				if (h == LINESEARCH)
+					return false;
+				lambda *= 0.5f;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Compute the Newton step at the present concentrations. Concentrations
+	 * at 0 that the step would make negative are fixed, as relaxation does,
+	 * and the step is computed again for the others until no more
+	 * concentrations are fixed.
+	 * 
+	 * @param c
+	 * @param kernels
+	 * @param cache
+	 * @return false if the Jacobian is singular
+	 */
+	private boolean computeStep(SoluteSpecies[] c, RateKernel[] kernels,
+			FactorCache cache) {
+		int n = _f.length;
+		for (int a = 0; a < n; a++)
+			_fixed[a] = false;
+		for (boolean fixedMore = true; fixedMore;) {
+			computeJacobian(c, kernels, cache);
+			for (int a = 0; a < n; a++) {
+				if (_fixed[a]) {
+					for (int b = 0; b < n; b++)
+						_jacobian[a * n + b] = 0;
+					_jacobian[a * n + a] = 1;
+					_du[a] = 0;
+				} else
+					_du[a] = -_f[a];
+			}
+			if (!decompose())
+				return false;
+			substitute();
+			fixedMore = false;
+			for (int a = 0; a < n; a++)
+				if (!_fixed[a] && (_u0[a] == 0) && (_du[a] < 0)) {
+					_fixed[a] = true;
+					fixedMore = true;
+				}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the squared norm of F at the unknowns that are not fixed
+	 */
+	private double merit() {
+		double merit = 0;
+		for (int a = 0; a < _f.length; a++)
+			if (!_fixed[a])
+				merit += _f[a] * _f[a];
+		return merit;
+	}
+
+	/**
+	 * Set the unknowns for the voxels inside the boundary layer, allocating
+	 * the arrays if needed
+	 * 
+	 * @param solutes
+	 *            number of solutes
+	 * @param active
+	 *            voxels inside the boundary layer
+	 * @return false if the system is too large for a dense solver
+	 */
+	private boolean setUnknowns(int solutes, ActiveVoxels active) {
+		int voxels = active.getNumberOfVoxels();
+		int n = voxels * solutes;
+		if ((n == 0) || (n > MAXUNKNOWNS))
+			return false;
+		_voxels = voxels;
+		_solutes = solutes;
+		if (_position.length < voxels) {
+			_position = new int[voxels];
+			_values = new float[voxels];
+			_diffusion = new float[voxels * voxels];
+		}
+		if (_u0.length < n) {
+			_u0 = new float[n];
+			_rates = new float[n];
+			_derivatives = new float[n];
+			_pivot = new int[n];
+			_fixed = new boolean[n];
+			_jacobian = new double[n * n];
+		}
+		if (_f.length != n) {
+			// _f and _du set the size of the system
+			_f = new double[n];
+			_scale = new double[n];
+			_du = new double[n];
+		}
+		int[] runs = active.getRuns();
+		int v = 0;
+		for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+			for (int p = runs[q]; p <= runs[q + 1]; p++)
+				_position[v++] = p;
+		return true;
+	}
+
+	/**
+	 * Find which solutes the rate of each solute depends on, so that the
+	 * finite differences of the other coupling terms, which are 0, are
+	 * skipped
+	 * 
+	 * @param c
+	 * @param kernels
+	 */
+	private void computeCoupling(SoluteSpecies[] c, RateKernel[] kernels) {
+		if (_coupled.length != _solutes * _solutes)
+			_coupled = new boolean[_solutes * _solutes];
+		for (int s = 0; s < _solutes; s++)
+			for (int t = 0; t < _solutes; t++)
+				_coupled[s * _solutes + t] = kernels[s].dependsOn(c[t]);
+	}
+
+	/**
+	 * Compute the diffusion term at every voxel of a unit value at every
+	 * other voxel, with the boundary conditions
+	 * 
+	 * @param d
+	 *            relative diffusion
+	 */
+	private void computeDiffusion(RelativeDiffusion d) {
+		BoundaryConditions bc = MultigridVariable._boundaryConditions;
+		Stencil stencil = d.getStencil(MultigridVariable.COARSEST);
+		float[] cf = stencil.coefficients;
+		int size = stencil.size;
+		float[] e = _unit.data;
+		boolean planar = _unit.isPlanar();
+		for (int j = 0; j < _voxels; j++) {
+			MultigridUtils.setValues(_unit, 0);
+			e[_position[j]] = 1;
+			bc.refreshBoundaryConditions(_unit);
+			for (int i = 0; i < _voxels; i++) {
+				int p = _position[i];
+				_diffusion[i * _voxels + j] = MultigridVariable.diffusion(cf,
+						p * size, e, p, _unit.si, _unit.sj, planar);
+			}
+		}
+	}
+
+	/**
+	 * Compute the rates, their derivatives and F = L(u) - rhs at the present
+	 * concentrations
+	 * 
+	 * @param c
+	 * @param kernels
+	 * @param cache
+	 * @param d
+	 */
+	private void evaluate(SoluteSpecies[] c, RateKernel[] kernels,
+			FactorCache cache, RelativeDiffusion d) {
+		int g = MultigridVariable.COARSEST;
+		for (int i = 0; i < _voxels; i++) {
+			int p = _position[i];
+			if (cache != null)
+				cache.moveTo();
+			for (int s = 0; s < _solutes; s++) {
+				if (cache == null)
+					kernels[s].updateValuesForRateAndRateDerivative(_rDr, g, p);
+				else
+					cache.updateValuesForRateAndRateDerivative(s, _rDr, g, p);
+				_rates[i * _solutes + s] = _rDr[0];
+				_derivatives[i * _solutes + s] = _rDr[1];
+			}
+		}
+		Stencil stencil = d.getStencil(g);
+		float[] cf = stencil.coefficients;
+		int size = stencil.size;
+		for (int s = 0; s < _solutes; s++) {
+			PaddedMatrix um = c[s]._mg[g];
+			float[] u = um.data;
+			float[] rhs = c[s].rhs._mg[g].data;
+			float dc = c[s].getDiffusivity();
+			boolean planar = um.isPlanar();
+			for (int i = 0; i < _voxels; i++) {
+				int p = _position[i];
+				int n = i * _solutes + s;
+				_f[n] = dc
+						* MultigridVariable.diffusion(cf, p * size, u, p,
+								um.si, um.sj, planar) + _rates[n] - rhs[p];
+				_scale[n] = dc * cf[p * size + Stencil.DIAGONAL]
+						* Math.abs(u[p]) + Math.abs(_rates[n])
+						+ Math.abs(rhs[p]);
+			}
+		}
+	}
+
+	/**
+	 * Compute the Jacobian of F at the present concentrations, for which the
+	 * rates and their derivatives were evaluated
+	 * 
+	 * @param c
+	 * @param kernels
+	 * @param cache
+	 */
+	private void computeJacobian(SoluteSpecies[] c, RateKernel[] kernels,
+			FactorCache cache) {
+		int g = MultigridVariable.COARSEST;
+		int n = _f.length;
+		for (int a = 0; a < n * n; a++)
+			_jacobian[a] = 0;
+		// diffusion, coupling voxels of the same solute
+		for (int s = 0; s < _solutes; s++) {
+			float dc = c[s].getDiffusivity();
+			for (int i = 0; i < _voxels; i++) {
+				int row = (i * _solutes + s) * n;
+				for (int j = 0; j < _voxels; j++)
+					_jacobian[row + j * _solutes + s] = dc
+							* _diffusion[i * _voxels + j];
+			}
+		}
+		// rates, coupling solutes at the same voxel. The derivatives of the
+		// rate of each solute in respect to itself come from its kernel
+		for (int a = 0; a < n; a++)
+			_jacobian[a * n + a] += _derivatives[a];
+		if (_solutes == 1)
+			return;
+		for (int t = 0; t < _solutes; t++) {
+			boolean coupled = false;
+			for (int s = 0; s < _solutes; s++)
+				coupled |= (s != t) && _coupled[s * _solutes + t];
+			if (!coupled)
+				continue;
+			float[] u = c[t]._mg[g].data;
+			float scale = 0;
+			for (int i = 0; i < _voxels; i++) {
+				_values[i] = u[_position[i]];
+				scale = Math.max(scale, Math.abs(_values[i]));
+			}
+			// rates are local, so all voxels are perturbed at once
+			for (int i = 0; i < _voxels; i++) {
+				float h = PERTURBATION * Math.max(Math.abs(_values[i]), scale);
+				if (h == 0)
+					h = PERTURBATION;
+				u[_position[i]] = _values[i] + h;
+				// the actual perturbation, after rounding
+				h = u[_position[i]] - _values[i];
+				int p = _position[i];
+				if (cache != null)
+					cache.moveTo();
+				for (int s = 0; s < _solutes; s++) {
+					if ((s == t) || !_coupled[s * _solutes + t])
+						continue;
+					float r = (cache == null ? kernels[s].getRate(g, p)
+							: cache.getRate(s, g, p));
+					int row = i * _solutes + s;
+					_jacobian[row * n + i * _solutes + t] += (r - _rates[row])
+							/ h;
+				}
+			}
+			for (int i = 0; i < _voxels; i++)
+				u[_position[i]] = _values[i];
+		}
+	}
+
+	/**
+	 * LU decomposition of the Jacobian in place, with partial pivoting
+	 * 
+	 * @return false if the Jacobian is singular
+	 */
+	private boolean decompose() {
+		int n = _f.length;
+		double[] a = _jacobian;
+		for (int k = 0; k < n; k++) {
+			int pivot = k;
+			double max = Math.abs(a[k * n + k]);
+			for (int i = k + 1; i < n; i++) {
+				double v = Math.abs(a[i * n + k]);
+				if (v > max) {
+					max = v;
+					pivot = i;
+				}
+			}
+			// negated comparison to fail on NaN as well
+			if (!(max > 0))
+				return false;
+			_pivot[k] = pivot;
+			if (pivot != k)
+				for (int j = 0; j < n; j++) {
+					double v = a[k * n + j];
+					a[k * n + j] = a[pivot * n + j];
+					a[pivot * n + j] = v;
+				}
+			double diagonal = a[k * n + k];
+			for (int i = k + 1; i < n; i++) {
+				double l = a[i * n + k] / diagonal;
+				a[i * n + k] = l;
+				if (l != 0)
+					for (int j = k + 1; j < n; j++)
+						a[i * n + j] -= l * a[k * n + j];
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Solve the decomposed system for the right hand side in _du, in place
+	 */
+	private void substitute() {
+		int n = _f.length;
+		double[] a = _jacobian;
+		double[] x = _du;
+		// the rows were swapped whole, multipliers included, so all the
+		// swaps are applied before the forward substitution
+		for (int k = 0; k < n; k++) {
+			int pivot = _pivot[k];
+			if (pivot != k) {
+				double v = x[k];
+				x[k] = x[pivot];
+				x[pivot] = v;
+			}
+		}
+		for (int k = 0; k < n; k++)
+			for (int i = k + 1; i < n; i++)
+				x[i] -= a[i * n + k] * x[k];
+		for (int k = n - 1; k >= 0; k--) {
+			double v = x[k];
+			for (int j = k + 1; j < n; j++)
+				v -= a[k * n + j] * x[j];
+			x[k] = v / a[k * n + k];
+		}
+	}
+
+	/**
+	 * Store the present concentrations in _u0
+	 * 
+	 * @param c
+	 */
+	private void saveValues(SoluteSpecies[] c) {
+		for (int s = 0; s < _solutes; s++) {
+			float[] u = c[s]._mg[MultigridVariable.COARSEST].data;
+			for (int i = 0; i < _voxels; i++)
+				_u0[i * _solutes + s] = u[_position[i]];
+		}
+	}
+
+	/**
+	 * @return true if F at every unknown that is not fixed is below TOLERANCE
+	 *         times the magnitude of its terms
+	 */
+	private boolean isResidualSmall() {
+		for (int a = 0; a < _f.length; a++)
+			if (!_fixed[a] && !(Math.abs(_f[a]) <= TOLERANCE * _scale[a]))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return true if the Newton step of every solute is below TOLERANCE
+	 *         times its maximum concentration
+	 */
+	private boolean isStepSmall() {
+		for (int s = 0; s < _solutes; s++) {
+			float max = 0;
+			double step = 0;
+			for (int i = 0; i < _voxels; i++) {
+				int n = i * _solutes + s;
+				max = Math.max(max, Math.abs(_u0[n]));
+				step = Math.max(step, Math.abs(_du[n]));
+			}
+			// negated comparison to fail on NaN as well
+			if (!(step <= TOLERANCE * max))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Set the concentrations to those before the Newton step plus lambda
+	 * times the step, not lower than 0
+	 * 
+	 * @param c
+	 * @param lambda
+	 * @return true if some concentration changed
+	 */
+	private boolean step(SoluteSpecies[] c, float lambda) {
+		boolean changed = false;
+		for (int s = 0; s < _solutes; s++) {
+			PaddedMatrix um = c[s]._mg[MultigridVariable.COARSEST];
+			float[] u = um.data;
+			for (int i = 0; i < _voxels; i++) {
+				int n = i * _solutes + s;
+				float v = (float) (_u0[n] + lambda * _du[n]);
+				v = (v < 0 ? 0 : v);
+				changed |= (v != _u0[n]);
+				u[_position[i]] = v;
+			}
+			MultigridVariable._boundaryConditions
+					.refreshBoundaryConditions(um);
+		}
+		return changed;
+	}
+}
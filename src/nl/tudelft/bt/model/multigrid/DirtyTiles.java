@@ -0,0 +1,360 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+import java.util.Arrays;
+
+/**
+ * Marks the tiles of a grid where values changed since the last update, so
+ * that the values that depend on them (e.g. the boundary layer, the relative
+ * diffusion and their coarser grid copies) are recomputed only there. The n x
+ * m x l voxels of the grid (indexes starting at 0, without padding) are
+ * divided in cubic tiles of TILE voxels per side. Marking is conservative: a
+ * tile is marked if any of its voxels may have changed.
+ */
+public class DirtyTiles {
+	// number of voxels per side of a tile
+	public static final int TILE = 8;
+
+	// fraction of marked tiles above which updating only the marked tiles is
+	// not worth it
+	private static final float FULLUPDATE = 0.5f;
+
+	private final int _n;
+
+	private final int _m;
+
+	private final int _l;
+
+	// number of tiles along each dimension
+	private final int _ti;
+
+	private final int _tj;
+
+	private final int _tk;
+
+	// tile (ti, tj, tk) is marked if _marked[(ti * _tj + tj) * _tk + tk]
+	private final boolean[] _marked;
+
+	private int _count;
+
+	// buffer for dilate
+	private final boolean[] _buffer;
+
+	/**
+	 * Create the tiles of a grid of n x m x l voxels, none marked
+	 * 
+	 * @param n
+	 * @param m
+	 * @param l
+	 */
+	public DirtyTiles(int n, int m, int l) {
+		_n = n;
+		_m = m;
+		_l = l;
+		_ti = (n + TILE - 1) / TILE;
+		_tj = (m + TILE - 1) / TILE;
+		_tk = (l + TILE - 1) / TILE;
+		_marked = new boolean[_ti * _tj * _tk];
+		_buffer = new boolean[_marked.length];
+	}
+
+	/**
+	 * Unmark all tiles
+	 */
+	public void clear() {
+		Arrays.fill(_marked, false);
+		_count = 0;
+	}
+
+	/**
+	 * Mark all tiles
+	 */
+	public void markAll() {
+		Arrays.fill(_marked, true);
+		_count = _marked.length;
+	}
+
+	/**
+	 * Mark the tiles marked in t
+	 * 
+	 * @param t
+	 *            tiles of a grid of the same size
+	 */
+	public void markAll(DirtyTiles t) {
+		for (int q = 0; q < _marked.length; q++)
+			if (t._marked[q] & !_marked[q]) {
+				_marked[q] = true;
+				_count++;
+			}
+	}
+
+	/**
+	 * Mark the tile of voxel (i, j, k)
+	 * 
+	 * @param i
+	 * @param j
+	 * @param k
+	 */
+	public void mark(int i, int j, int k) {
+		int q = ((i / TILE) * _tj + j / TILE) * _tk + k / TILE;
+		if (!_marked[q]) {
+			_marked[q] = true;
+			_count++;
+		}
+	}
+
+	/**
+	 * Mark the tiles of the voxels in [i0, i1] x [j0, j1] x [k0, k1], clipped
+	 * to the grid
+	 * 
+	 * @param i0
+	 * @param i1
+	 * @param j0
+	 * @param j1
+	 * @param k0
+	 * @param k1
+	 */
+	public void markRange(int i0, int i1, int j0, int j1, int k0, int k1) {
+		i0 = Math.max(i0, 0) / TILE;
+		i1 = Math.min(i1, _n - 1) / TILE;
+		j0 = Math.max(j0, 0) / TILE;
+		j1 = Math.min(j1, _m - 1) / TILE;
+		k0 = Math.max(k0, 0) / TILE;
+		k1 = Math.min(k1, _l - 1) / TILE;
+		for (int ti = i0; ti <= i1; ti++)
+			for (int tj = j0; tj <= j1; tj++)
+				for (int tk = k0; tk <= k1; tk++) {
+					int q = (ti * _tj + tj) * _tk + tk;
+					if (!_marked[q]) {
+						_marked[q] = true;
+						_count++;
+					}
+				}
+	}
+
+	/**
+	 * @return true if no tile is marked
+	 */
+	public boolean isEmpty() {
+		return _count == 0;
+	}
+
+	/**
+	 * @return true if so many tiles are marked that values should rather be
+	 *         updated everywhere
+	 */
+	public boolean isMostlyMarked() {
+		return _count > FULLUPDATE * _marked.length;
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @param k
+	 * @return true if the tile of voxel (i, j, k) is marked
+	 */
+	public boolean isMarkedAt(int i, int j, int k) {
+		return _marked[((i / TILE) * _tj + j / TILE) * _tk + k / TILE];
+	}
+
+	/**
+	 * @return number of tiles
+	 */
+	public int getNumberOfTiles() {
+		return _marked.length;
+	}
+
+	/**
+	 * @param t
+	 *            index of a tile
+	 * @return true if tile t is marked
+	 */
+	public boolean isMarked(int t) {
+		return _marked[t];
+	}
+
+	/**
+	 * Get the voxels of a tile
+	 * 
+	 * @param t
+	 *            index of a tile
+	 * @param box
+	 *            array to write the voxel ranges {i0, i1, j0, j1, k0, k1}
+	 *            (inclusive) of the tile to
+	 */
+	public void getTile(int t, int[] box) {
+		int tk = t % _tk;
+		int tj = (t / _tk) % _tj;
+		int ti = t / (_tk * _tj);
+		box[0] = ti * TILE;
+		box[1] = Math.min(box[0] + TILE, _n) - 1;
+		box[2] = tj * TILE;
+		box[3] = Math.min(box[2] + TILE, _m) - 1;
+		box[4] = tk * TILE;
+		box[5] = Math.min(box[4] + TILE, _l) - 1;
+	}
+
+	/**
+	 * Get the smallest box containing the marked tiles. Dimensions j and k
+	 * are taken as cyclic, so that the box may extend past the last voxel
+	 * (j1 >= m or k1 >= l) to cover tiles on both sides of the border.
+	 * 
+	 * @param box
+	 *            array to write the voxel ranges {i0, i1, j0, j1, k0, k1}
+	 *            (inclusive) of the box to
+	 */
+	public void getBoundingBox(int[] box) {
+		boolean[] pi = new boolean[_ti];
+		boolean[] pj = new boolean[_tj];
+		boolean[] pk = new boolean[_tk];
+		for (int ti = 0; ti < _ti; ti++)
+			for (int tj = 0; tj < _tj; tj++)
+				for (int tk = 0; tk < _tk; tk++)
+					if (_marked[(ti * _tj + tj) * _tk + tk]) {
+						pi[ti] = true;
+						pj[tj] = true;
+						pk[tk] = true;
+					}
+		int first = 0;
+		while ((first < _ti) && !pi[first])
+			first++;
+		int last = _ti - 1;
+		while ((last > first) && !pi[last])
+			last--;
+		box[0] = first * TILE;
+		box[1] = Math.min((last + 1) * TILE, _n) - 1;
+		cyclicBounds(pj, _m, box, 2);
+		cyclicBounds(pk, _l, box, 4);
+	}
+
+	/**
+	 * Find the shortest cyclic range of tiles containing the marked tiles of
+	 * a projection, i.e. the complement of the longest cyclic gap
+	 * 
+	 * @param p
+	 *            projection of the marked tiles onto a dimension
+	 * @param size
+	 *            number of voxels along the dimension
+	 * @param box
+	 * @param offset
+	 *            position of the range in box
+	 */
+	private static void cyclicBounds(boolean[] p, int size, int[] box,
+			int offset) {
+		int t = p.length;
+		int gapEnd = -1;
+		int gap = 0;
+		// scan twice the length to find gaps that wrap around the border
+		int run = 0;
+		for (int q = 0; q < 2 * t; q++) {
+			if (p[q % t]) {
+				run = 0;
+				continue;
+			}
+			run++;
+			if ((run > gap) & (run < t)) {
+				gap = run;
+				gapEnd = q;
+			}
+		}
+		if (gap == 0) {
+			// all tiles are marked
+			box[offset] = 0;
+			box[offset + 1] = size - 1;
+			return;
+		}
+		int first = (gapEnd + 1) % t;
+		int last = first + t - gap - 1;
+		box[offset] = first * TILE;
+		box[offset + 1] = (last >= t ? size + Math.min((last - t + 1) * TILE,
+				size) - 1 : Math.min((last + 1) * TILE, size) - 1);
+	}
+
+	/**
+	 * Mark also the tiles within a distance of the marked ones. Dimensions j
+	 * and k are taken as cyclic.
+	 * 
+	 * @param d
+	 *            distance in voxels
+	 */
+	public void dilate(int d) {
+		int r = (d + TILE - 1) / TILE;
+		if (r == 0)
+			return;
+		// dilate along each dimension in turn
+		for (int dim = 0; dim < 3; dim++) {
+			System.arraycopy(_marked, 0, _buffer, 0, _marked.length);
+			for (int ti = 0; ti < _ti; ti++)
+				for (int tj = 0; tj < _tj; tj++)
+					for (int tk = 0; tk < _tk; tk++) {
+						if (!_buffer[(ti * _tj + tj) * _tk + tk])
+							continue;
+						for (int s = -r; s <= r; s++) {
+							int a = ti;
+							int b = tj;
+							int c = tk;
+							if (dim == 0) {
+								a += s;
+								if ((a < 0) | (a >= _ti))
+									continue;
+							} else if (dim == 1) {
+								b = (b + s + r * _tj) % _tj;
+							} else {
+								c = (c + s + r * _tk) % _tk;
+							}
+							_marked[(a * _tj + b) * _tk + c] = true;
+						}
+					}
+		}
+		_count = 0;
+		for (int q = 0; q < _marked.length; q++)
+			if (_marked[q])
+				_count++;
+	}
+
+	/**
+	 * Mark the tiles of a grid one order coarser where the values restricted
+	 * from the marked tiles of this grid are found (see
+	 * MultigridUtils.restrict). Voxels at the borders also mark the coarser
+	 * voxels on the opposite border, which depend on them through cyclic
+	 * boundary conditions.
+	 * 
+	 * @param coarse
+	 *            tiles of the coarser grid
+	 */
+	public void restrictTo(DirtyTiles coarse) {
+		// directions that are not coarsened (semi-coarsening) map voxel c
+		// to coarse voxel c
+		int ri = (coarse._n != _n ? 2 : 1);
+		int rj = (coarse._m != _m ? 2 : 1);
+		int rk = (coarse._l != _l ? 2 : 1);
+		int[] box = new int[6];
+		for (int t = 0; t < _marked.length; t++) {
+			if (!_marked[t])
+				continue;
+			getTile(t, box);
+			// coarse voxel c is restricted from voxels 2c - 1 to 2c + 1
+			int i0 = box[0] / ri;
+			int i1 = (box[1] + ri - 1) / ri;
+			int j0 = box[2] / rj;
+			int j1 = (box[3] + rj - 1) / rj;
+			int k0 = box[4] / rk;
+			int k1 = (box[5] + rk - 1) / rk;
+			coarse.markRange(i0, i1, j0, j1, k0, k1);
+			if ((box[0] == 0) | (box[1] == _n - 1)) {
+				coarse.markRange(0, 0, j0, j1, k0, k1);
+				coarse.markRange(coarse._n - 1, coarse._n - 1, j0, j1, k0, k1);
+			}
+			if ((box[2] == 0) | (box[3] == _m - 1)) {
+				coarse.markRange(i0, i1, 0, 0, k0, k1);
+				coarse.markRange(i0, i1, coarse._m - 1, coarse._m - 1, k0, k1);
+			}
+			if ((box[4] == 0) | (box[5] == _l - 1)) {
+				coarse.markRange(i0, i1, j0, j1, 0, 0);
+				coarse.markRange(i0, i1, j0, j1, coarse._l - 1, coarse._l - 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+/**
+ * The relative diffusion at the faces between neighbouring nodes of every
+ * grid order, used to build the coarse grid operators algebraically (see
+ * MultigridVariable.setCoarseGridOperators). At the finest grid, the face
+ * between two nodes has the mean of their relative diffusion, as in Stencil.
+ * The faces of a coarser grid are computed from those of the finer one
+ * instead of from the restricted relative diffusion: along the direction of
+ * the face, the finer faces between two coarse nodes are in series (harmonic
+ * mean), and across it, the finer faces are in parallel (weighted mean with
+ * weights 1/4, 1/2 and 1/4). A wall of near-zero diffusion (e.g. a carrier)
+ * thus stays a wall at the coarser grids, where restricting the relative
+ * diffusion would average it out.
+ * <p>
+ * The face of node p along direction d is the face between p and the next
+ * node along d, and is stored at position p of the matrix data.
+ */
+class FaceDiffusion {
+	// faces of each grid order, per direction
+	private final float[][][] _faces;
+
+	/**
+	 * Allocate the faces for the grid orders of a multigrid variable
+	 * 
+	 * @param mg
+	 *            matrices of each grid order
+	 */
+	FaceDiffusion(PaddedMatrix[] mg) {
+		_faces = new float[mg.length][][];
+		for (int g = 0; g < mg.length; g++) {
+			int directions = (mg[g].isPlanar() ? 2 : 3);
+			_faces[g] = new float[directions][mg[g].data.length];
+		}
+	}
+
+	/**
+	 * Compute the faces of every grid order from the relative diffusion at
+	 * the finest grid
+	 * 
+	 * @param mg
+	 *            relative diffusion at each grid order, only the finest is
+	 *            used
+	 */
+	void compute(PaddedMatrix[] mg) {
+		int f = mg.length - 1;
+		PaddedMatrix d = mg[f];
+		float[] dd = d.data;
+		int[] stride = { d.si, d.sj, d.sk };
+		for (int dir = 0; dir < _faces[f].length; dir++) {
+			float[] face = _faces[f][dir];
+			int s = stride[dir];
+			for (int p = 0; p + s < dd.length; p++)
+				face[p] = (dd[p] + dd[p + s]) * 0.5f;
+		}
+		for (int g = f; g > MultigridVariable.COARSEST; g--)
+			for (int dir = 0; dir < _faces[g].length; dir++)
+				coarsen(mg[g], mg[g - 1], _faces[g][dir], _faces[g - 1][dir],
+						dir);
+	}
+
+	/**
+	 * Compute the faces along one direction of a coarser grid from those of
+	 * a finer one
+	 * 
+	 * @param u
+	 *            a matrix of the finer grid
+	 * @param uc
+	 *            a matrix of the coarser grid
+	 * @param face
+	 *            faces of the finer grid along dir
+	 * @param coarse
+	 *            faces of the coarser grid along dir, to compute
+	 * @param dir
+	 *            direction
+	 */
+	private static void coarsen(PaddedMatrix u, PaddedMatrix uc, float[] face,
+			float[] coarse, int dir) {
+		int[] fineSize = { u.getN(), u.getM(), u.getL() };
+		int[] size = { uc.getN(), uc.getM(), uc.getL() };
+		int[] fineStride = { u.si, u.sj, u.sk };
+		int[] stride = { uc.si, uc.sj, uc.sk };
+		// directions across the face
+		int t1 = (dir + 1) % 3;
+		int t2 = (dir + 2) % 3;
+		// weights of the finer faces at offsets -1, 0 and 1 across the face
+		double[] w1 = weights(fineSize[t1], size[t1]);
+		double[] w2 = weights(fineSize[t2], size[t2]);
+		boolean coarsened = (fineSize[dir] != size[dir]);
+		int s = fineStride[dir];
+		// faces along dir start at the lower padding
+		for (int a = 0; a <= size[dir]; a++) {
+			int fa = fine(a, coarsened);
+			// the faces to the padding are one finest spacing long at every
+			// grid order, so they are not in series
+			boolean series = coarsened && (a > 0) && (a < size[dir]);
+			for (int b = 1; b <= size[t1]; b++) {
+				int fb = fine(b, fineSize[t1] != size[t1]);
+				for (int c = 1; c <= size[t2]; c++) {
+					int fc = fine(c, fineSize[t2] != size[t2]);
+					double sum = 0;
+					for (int x = -1; x <= 1; x++) {
+						if (w1[x + 1] == 0)
+							continue;
+						// lines beyond the borders are taken at the border
+						int qb = Math.min(Math.max(fb + x, 1), fineSize[t1]);
+						for (int y = -1; y <= 1; y++) {
+							if (w2[y + 1] == 0)
+								continue;
+							int qc = Math.min(Math.max(fc + y, 1),
+									fineSize[t2]);
+							int p = fa * s + qb * fineStride[t1] + qc
+									* fineStride[t2];
+							double d = face[p];
+							if (series) {
+								double d2 = face[p + s];
+								d = (d + d2 > 0 ? 2 * d * d2 / (d + d2) : 0);
+							}
+							sum += w1[x + 1] * w2[y + 1] * d;
+						}
+					}
+					coarse[a * stride[dir] + b * stride[t1] + c
+							* stride[t2]] = (float) sum;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param c
+	 *            index in the coarser grid
+	 * @param coarsened
+	 *            true if the direction is coarsened
+	 * @return the index of the same node in the finer grid
+	 */
+	private static int fine(int c, boolean coarsened) {
+		return (coarsened && (c > 0) ? 2 * c - 1 : c);
+	}
+
+	/**
+	 * @param fineSize
+	 *            number of nodes of the finer grid along a direction across
+	 *            the face
+	 * @param size
+	 *            number of nodes of the coarser grid along it
+	 * @return the weights of the finer faces at offsets -1, 0 and 1 along
+	 *         the direction: 1/4, 1/2 and 1/4 if it is coarsened, only
+	 *         offset 0 otherwise
+	 */
+	private static double[] weights(int fineSize, int size) {
+		if (fineSize == size)
+			return new double[] { 0, 1, 0 };
+		return new double[] { 0.25, 0.5, 0.25 };
+	}
+
+	/**
+	 * @param g
+	 *            grid order
+	 * @return the faces of grid order g, per direction
+	 */
+	float[][] getFaces(int g) {
+		return _faces[g];
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+import java.util.Arrays;
+
+import nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions;
+import nl.tudelft.bt.model.multigrid.boundary_layers.BoundaryLayer;
+import nl.tudelft.bt.model.reaction.RateKernel;
+
+/**
+ * Direct solver at the finest grid for solutes whose rates do not depend on
+ * the concentrations being solved (e.g. production with zero order
+ * kinetics), for which the reaction-diffusion equation D L(c) + r = 0 is
+ * linear. The discrete diffusion operator L (see Stencil) is the same for
+ * all these solutes, so it is factorized once, by a banded LU decomposition
+ * over the nodes inside the boundary layer ordered by position, and the
+ * factors are kept while the stencil coefficients and the boundary layer do
+ * not change. Each solute then costs a forward and a back substitution.
+ * <p>
+ * The padding nodes are related to the nodes they are copies of by
+ * refreshing the boundary conditions of a matrix holding the position of
+ * each node. Padding nodes that are not copies of a node, and the nodes
+ * outside the boundary layer, are at the bulk concentration. The operator is
+ * diagonally dominant, so no pivoting is needed.
+ */
+class LinearSoluteSolver {
+	// maximum number of entries of the band of the factors and of
+	// operations of the decomposition, larger systems (e.g. most 3D grids)
+	// are left to the iterative solvers, which are faster for them
+	private static final int MAXIMUMBANDSIZE = 1 << 22;
+
+	private static final int MAXIMUMOPERATIONS = 1 << 25;
+
+	// factors of the operator, row r holds columns r - _lower to r + _upper,
+	// null if the operator could not be factorized
+	private double[] _lu;
+
+	private int _lower;
+
+	private int _upper;
+
+	private int _unknowns;
+
+	// unknown of each position of the finest grid, -1 outside the boundary
+	// layer
+	private int[] _unknown;
+
+	// position of each unknown
+	private int[] _position;
+
+	// position each position is a copy of after the boundary conditions are
+	// refreshed, the position itself if it is not a copy
+	private int[] _source;
+
+	// matrix holding the positions, to find the copies
+	private PaddedMatrix _probe;
+
+	// right hand side and solution
+	private double[] _x;
+
+	// operator of the factors: voxels inside the boundary layer, boundary
+	// conditions and stencil coefficients
+	private ActiveVoxels _active;
+
+	private BoundaryConditions _bc;
+
+	private float[] _coefficients;
+
+	/**
+	 * Solve the linear reaction-diffusion equation of a solute at the finest
+	 * grid. The values of the solute are changed only if a solution is
+	 * found, and then set to the bulk concentration outside the boundary
+	 * layer and restricted to the coarser grids.
+	 * 
+	 * @param c
+	 *            a solute with a rate kernel that does not depend on c
+	 * @param d
+	 *            relative diffusion, with the stencils computed
+	 * @param bl
+	 *            boundary layer
+	 * @param bc
+	 *            boundary conditions
+	 * @return true if a solution was found, false if the system is too large
+	 *         to be factorized or the solution has negative concentrations
+	 */
+	boolean solve(SoluteSpecies c, RelativeDiffusion d, BoundaryLayer bl,
+			BoundaryConditions bc) {
+		int f = d._mg.length - 1;
+		PaddedMatrix u = c._mg[f];
+		float dc = c.getDiffusivity();
+		if (!(dc > 0) || !factorize(d, bl.getActiveVoxels(f), bc, f))
+			return false;
+		Stencil stencil = d.getStencil(f);
+		float[] cf = stencil.coefficients;
+		int size = stencil.size;
+		int[] offsets = offsets(u);
+		float bulk = c.getBulkConcentration();
+		RateKernel kernel = c.getRateKernel();
+		double[] x = _x;
+		for (int r = 0; r < _unknowns; r++) {
+			int p = _position[r];
+			double b = -kernel.getRate(f, p) / dc;
+			// nodes at the bulk concentration are moved to the right side
+			for (int n = 0; n < offsets.length; n++)
+				if (_unknown[_source[p + offsets[n]]] < 0)
+					b -= cf[p * size + n + 1] * bulk;
+			x[r] = b;
+		}
+		substitute(x);
+		for (int r = 0; r < _unknowns; r++)
+			// negated comparison to fail on NaN as well
+			if (!(x[r] >= 0))
+				return false;
+		c.resetMultigridCopies();
+		for (int r = 0; r < _unknowns; r++)
+			u.data[_position[r]] = (float) x[r];
+		bc.refreshBoundaryConditions(u);
+		c.updateMultigridCopies();
+		return true;
+	}
+
+	/**
+	 * Factorize the operator at the finest grid, unless it is the same as
+	 * that of the present factors
+	 * 
+	 * @param d
+	 * @param active
+	 *            voxels inside the boundary layer at the finest grid
+	 * @param bc
+	 * @param f
+	 *            finest grid order
+	 * @return true if there are factors of the operator
+	 */
+	private boolean factorize(RelativeDiffusion d, ActiveVoxels active,
+			BoundaryConditions bc, int f) {
+		Stencil stencil = d.getStencil(f);
+		float[] cf = stencil.coefficients;
+		if ((active == _active) && (bc == _bc)
+				&& Arrays.equals(cf, _coefficients))
+			return (_lu != null);
+		_active = active;
+		_bc = bc;
+		if ((_coefficients == null) || (_coefficients.length != cf.length))
+			_coefficients = new float[cf.length];
+		System.arraycopy(cf, 0, _coefficients, 0, cf.length);
+		_lu = null;
+		PaddedMatrix m = d._mg[f];
+		findSources(m, bc);
+		// number the unknowns by position
+		Arrays.fill(_unknown, -1);
+		_unknowns = active.getNumberOfVoxels();
+		if ((_position == null) || (_position.length < _unknowns)) {
+			_position = new int[_unknowns];
+			_x = new double[_unknowns];
+		}
+		int[] runs = active.getRuns();
+		int r = 0;
+		for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+			for (int p = runs[q]; p <= runs[q + 1]; p++) {
+				_unknown[p] = r;
+				_position[r++] = p;
+			}
+		int[] offsets = offsets(m);
+		_lower = 0;
+		_upper = 0;
+		for (r = 0; r < _unknowns; r++)
+			for (int n = 0; n < offsets.length; n++) {
+				int s = _unknown[_source[_position[r] + offsets[n]]];
+				if (s >= 0) {
+					_lower = Math.max(_lower, r - s);
+					_upper = Math.max(_upper, s - r);
+				}
+			}
+		int width = _lower + _upper + 1;
+		if (((long) _unknowns * width > MAXIMUMBANDSIZE)
+				|| ((long) _unknowns * _lower * _upper > MAXIMUMOPERATIONS))
+			return false;
+		double[] lu = new double[_unknowns * width];
+		int size = stencil.size;
+		for (r = 0; r < _unknowns; r++) {
+			int p = _position[r];
+			int diagonal = r * width + _lower;
+			for (int n = 0; n < offsets.length; n++) {
+				float coefficient = cf[p * size + n + 1];
+				lu[diagonal] -= coefficient;
+				int s = _unknown[_source[p + offsets[n]]];
+				if (s >= 0)
+					lu[diagonal + s - r] += coefficient;
+			}
+		}
+		// LU decomposition without pivoting, inside the band
+		for (int k = 0; k < _unknowns; k++) {
+			double pivot = lu[k * width + _lower];
+			if (!(pivot != 0))
+				return false;
+			int rows = Math.min(_unknowns - 1, k + _lower);
+			int columns = Math.min(_unknowns - 1, k + _upper);
+			int rowK = k * width + _lower - k;
+			for (r = k + 1; r <= rows; r++) {
+				int row = r * width + _lower - r;
+				if (lu[row + k] == 0)
+					continue;
+				double l = lu[row + k] / pivot;
+				lu[row + k] = l;
+				for (int j = k + 1; j <= columns; j++)
+					lu[row + j] -= l * lu[rowK + j];
+			}
+		}
+		_lu = lu;
+		return true;
+	}
+
+	/**
+	 * Find the position each position of the finest grid is a copy of
+	 * 
+	 * @param m
+	 *            a matrix of the finest grid
+	 * @param bc
+	 */
+	private void findSources(PaddedMatrix m, BoundaryConditions bc) {
+		float[] data = m.data;
+		if ((_probe == null) || (_probe.data.length != data.length)) {
+			_probe = new PaddedMatrix(m.getN(), m.getM(), m.getL());
+			_source = new int[data.length];
+			_unknown = new int[data.length];
+		}
+		float[] probe = _probe.data;
+		Arrays.fill(probe, -1);
+		for (int i = 1; i <= m.getN(); i++)
+			for (int j = 1; j <= m.getM(); j++)
+				for (int k = 1; k <= m.getL(); k++) {
+					int p = m.index(i, j, k);
+					probe[p] = p;
+				}
+		bc.refreshBoundaryConditions(_probe);
+		for (int p = 0; p < probe.length; p++)
+			_source[p] = (probe[p] >= 0 ? (int) probe[p] : p);
+	}
+
+	/**
+	 * Solve for a right hand side with the factors
+	 * 
+	 * @param x
+	 *            the right hand side, overwritten with the solution
+	 */
+	private void substitute(double[] x) {
+		int width = _lower + _upper + 1;
+		double[] lu = _lu;
+		for (int r = 0; r < _unknowns; r++) {
+			int row = r * width + _lower - r;
+			double s = x[r];
+			for (int j = Math.max(0, r - _lower); j < r; j++)
+				s -= lu[row + j] * x[j];
+			x[r] = s;
+		}
+		for (int r = _unknowns - 1; r >= 0; r--) {
+			int row = r * width + _lower - r;
+			double s = x[r];
+			int columns = Math.min(_unknowns - 1, r + _upper);
+			for (int j = r + 1; j <= columns; j++)
+				s -= lu[row + j] * x[j];
+			x[r] = s / lu[row + r];
+		}
+	}
+
+	/**
+	 * @param m
+	 *            a matrix of the finest grid
+	 * @return the offsets of the neighbours of a node, in the order of the
+	 *         stencil coefficients (see Stencil)
+	 */
+	private static int[] offsets(PaddedMatrix m) {
+		if (m.isPlanar())
+			return new int[] { -m.si, m.si, -m.sj, m.sj };
+		return new int[] { -m.si, m.si, -m.sj, m.sj, -1, 1 };
+	}
+}
@@ -4,6 +4,8 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import nl.tudelft.bt.model.exceptions.InvalidValueException;
 import nl.tudelft.bt.model.exceptions.ModelRuntimeException;
@@ -18,6 +20,9 @@ import nl.tudelft.bt.model.util.ExtraMath;
 public abstract class MultigridUtils {
 	// boundarylayer threshold
 	private static final float BLTHRESH = MultigridVariable.BLTHRESH;
+
+	// number of partial sums of sumOfSquaresInPartialSums
+	private static final int PARTIALSUMS = 8;
 	public static final String SEPARATOR = " ";
 
 	/**
@@ -40,6 +45,60 @@ public abstract class MultigridUtils {
 				+ ") must be 2^i + 1"));
 	}
 
+	/**
+	 * Compute the sizes of the grids of every grid order for a finest grid of
+	 * n x m x l nodes (l = 1 in 2D). Going from the finest grid to coarser
+	 * ones, a direction is coarsened from s to (s + 1) / 2 nodes if s is odd
+	 * and larger than 3, and if its spacing is not already larger than that
+	 * of the other directions. While all directions can be coarsened this is
+	 * the usual full coarsening of 2^i + 1 grids, keeping the voxels cubic.
+	 * Once the short directions reach 3 nodes (or an even number of nodes),
+	 * only the long directions are coarsened (semi-coarsening), until their
+	 * spacing is twice that of the short ones, so that the coarsest grid of a
+	 * wide system is small and its voxels are at most 2:1.
+	 * 
+	 * @param n
+	 * @param m
+	 * @param l
+	 * @return sizes [g][direction] of grid order g, from the coarsest (0) to
+	 *         the finest
+	 * @throws InvalidValueException
+	 *             if a size is not odd and at least 3 (except l = 1)
+	 */
+	public static int[][] gridSizes(int n, int m, int l)
+			throws InvalidValueException {
+		int[] size = { n, m, l };
+		int directions = (l == 1 ? 2 : 3);
+		for (int d = 0; d < directions; d++)
+			if ((size[d] < 3) || (size[d] % 2 == 0))
+				throw (new InvalidValueException("invalid grid value ("
+						+ size[d] + ") must be odd and at least 3"));
+		// number of times each direction was coarsened
+		int[] coarsened = new int[3];
+		ArrayList sizes = new ArrayList();
+		sizes.add(size.clone());
+		while (true) {
+			int least = Integer.MAX_VALUE;
+			for (int d = 0; d < directions; d++)
+				least = Math.min(least, coarsened[d]);
+			boolean any = false;
+			for (int d = 0; d < directions; d++)
+				if ((size[d] > 3) && (size[d] % 2 == 1)
+						&& (coarsened[d] == least)) {
+					size[d] = (size[d] + 1) / 2;
+					coarsened[d]++;
+					any = true;
+				}
+			if (!any)
+				break;
+			sizes.add(size.clone());
+		}
+		int[][] s = new int[sizes.size()][];
+		for (int g = 0; g < s.length; g++)
+			s[g] = (int[]) sizes.get(s.length - g - 1);
+		return s;
+	}
+
 	/**
 	 * Return the size of grid o orders smaller then n. Only to be used in
 	 * initialization of multigrid variables
@@ -64,29 +123,41 @@ public abstract class MultigridUtils {
 	 * @param uc
 	 *            coarser grid
 	 */
-	public static void restrict(float[][][] u, float[][][] uc,
+	public static void restrict(PaddedMatrix u, PaddedMatrix uc,
 			BoundaryConditions bc) {
-		int lc = uc[0][0].length - 2;
-		int mc = uc[0].length - 2;
-		int nc = uc.length - 2;
-
-		int i, j, k; // indexes for fine grid
-		int ic, jc, kc; // indexes for coarse grid
-
-		// implements 2D and 3D
-		float nfac = (lc == 1 ? 1.0f / 8.0f : 1.0f / 12.0f); // pre-compute
-
-		for (k = 1, kc = 1; kc <= lc; kc++, k += 2)
-			for (j = 1, jc = 1; jc <= nc; jc++, j += 2)
-				for (i = 1, ic = 1; ic <= mc; ic++, i += 2)
-					// special case for 2D (when lc = 1)
-					uc[ic][jc][kc] = 0.5f
-							* u[i][j][k]
-							+ nfac
-							* (u[i + 1][j][k] + u[i - 1][j][k] + u[i][j + 1][k]
-									+ u[i][j - 1][k] + (lc == 1
-									? 0.0f
-									: u[i][j][k + 1] + u[i][j][k - 1]));
+		restrict(u, uc, null, false);
+		bc.refreshBoundaryConditions(uc);
+	}
+
+	/**
+	 * Restricts the data in matrix u to a grid one order coarser, only inside
+	 * the marked tiles of the coarser grid, or everywhere if most tiles are
+	 * marked. Restriction excludes border points.
+	 * 
+	 * @param u
+	 *            finer grid
+	 * @param uc
+	 *            coarser grid
+	 * @param tiles
+	 *            tiles of the coarser grid to restrict
+	 * @param bc
+	 */
+	public static void restrict(PaddedMatrix u, PaddedMatrix uc,
+			DirtyTiles tiles, BoundaryConditions bc) {
+		if (tiles.isEmpty())
+			return;
+		if (tiles.isMostlyMarked()) {
+			restrict(u, uc, bc);
+			return;
+		}
+		int[] box = new int[6];
+		for (int t = 0; t < tiles.getNumberOfTiles(); t++) {
+			if (!tiles.isMarked(t))
+				continue;
+			tiles.getTile(t, box);
+			restrict(u, uc, null, false, box[0] + 1, box[1] + 1, box[2] + 1,
+					box[3] + 1, box[4] + 1, box[5] + 1);
+		}
 		bc.refreshBoundaryConditions(uc);
 	}
 
@@ -104,78 +175,142 @@ public abstract class MultigridUtils {
 	 * @param blc
 	 *            boundary layer at corser grid
 	 */
-	public static void restrictBoundaryLayer(float[][][] u, float[][][] uc,
-			float blc[][][], BoundaryConditions bc) {
-		int lc = uc[0][0].length - 2;
-		int mc = uc[0].length - 2;
-		int nc = uc.length - 2;
-
-		int i, j, k; // indexes for fine grid
-		int ic, jc, kc; // indexes for coarse grid
-
-		// implements 2D and 3D
-		float nfac = (lc == 1 ? 1.0f / 8.0f : 1.0f / 12.0f); // pre-compute
-
-		for (k = 1, kc = 1; kc <= lc; kc++, k += 2)
-			for (j = 1, jc = 1; jc <= nc; jc++, j += 2)
-				for (i = 1, ic = 1; ic <= mc; ic++, i += 2)
-					if (blc[ic][jc][kc] < BLTHRESH)
-						// special case for 2D (when lc = 1)
-						uc[ic][jc][kc] = 0.5f
-								* u[i][j][k]
-								+ nfac
-								* (u[i + 1][j][k] + u[i - 1][j][k]
-										+ u[i][j + 1][k] + u[i][j - 1][k] + (lc == 1
-										? 0.0f
-										: u[i][j][k + 1] + u[i][j][k - 1]));
+	public static void restrictBoundaryLayer(PaddedMatrix u, PaddedMatrix uc,
+			PaddedMatrix blc, BoundaryConditions bc) {
+		restrict(u, uc, blc, true);
 		bc.refreshBoundaryConditions(uc);
 	}
 
 	/**
-	 * Interpolates the data in matrix uc to a grid one order finner for cubic
-	 * matrices. Interpolation excludes border points.
+	 * Implements restriction, for all points or only for points inside the
+	 * boundary layer
 	 * 
 	 * @param u
 	 *            finer grid
 	 * @param uc
 	 *            coarser grid
+	 * @param blc
+	 *            boundary layer at corser grid
+	 * @param insideBoundaryLayerOnly
+	 *            if true, skip points outside the boundary layer
 	 */
-	static void interpolate(float[][][] u, float[][][] uc, BoundaryConditions bc) {
-		int l_ = u[0][0].length - 2;
-		int m = u[0].length - 2;
-		int n = u.length - 2;
+	private static void restrict(PaddedMatrix u, PaddedMatrix uc,
+			PaddedMatrix blc, boolean insideBoundaryLayerOnly) {
+		restrict(u, uc, blc, insideBoundaryLayerOnly, 1, uc.getN(), 1, uc
+				.getM(), 1, uc.getL());
+	}
 
-		int i, j, k; // indexes for fine grid
-		int ic, jc, kc; // indexes for coarse grid
+	/**
+	 * Implements restriction of the points of the coarser grid in
+	 * [i0, i1] x [j0, j1] x [k0, k1]
+	 * 
+	 * @param u
+	 *            finer grid
+	 * @param uc
+	 *            coarser grid
+	 * @param blc
+	 *            boundary layer at corser grid
+	 * @param insideBoundaryLayerOnly
+	 *            if true, skip points outside the boundary layer
+	 * @param i0
+	 * @param i1
+	 * @param j0
+	 * @param j1
+	 * @param k0
+	 * @param k1
+	 */
+	private static void restrict(PaddedMatrix u, PaddedMatrix uc,
+			PaddedMatrix blc, boolean insideBoundaryLayerOnly, int i0, int i1,
+			int j0, int j1, int k0, int k1) {
+		float[] f = u.data;
+		float[] c = uc.data;
+		int si = u.si;
+		int sj = u.sj;
+		int sk = u.sk;
+		// directions along which the grid was coarsened (all of them, except
+		// in semi-coarsening, see gridSizes)
+		boolean ci = (u.getN() != uc.getN());
+		boolean cj = (u.getM() != uc.getM());
+		boolean ck = (u.getL() != uc.getL());
+		int ri = (ci ? 2 : 1);
+		int rj = (cj ? 2 : 1);
+		int rk = (ck ? 2 : 1);
+		// half of the weight goes to the neighbours along the coarsened
+		// directions: 1/8 each in 2D and 1/12 each in 3D
+		float nfac = 0.25f / ((ci ? 1 : 0) + (cj ? 1 : 0) + (ck ? 1 : 0));
+		// rows of points run along k, or along j for planar matrices (see
+		// lastRowJ), so that the innermost loop is long in 2D as well
+		int jLast = lastRowJ(uc, j0, j1);
+		int length = rowLength(uc, j0, j1, k0, k1);
+		// stride of the rows in the finer grid
+		int stride = (uc.isPlanar() ? rj : rk);
 
-		// copy points
-		for (kc = 1, k = 1; k <= l_; kc++, k += 2) {
-			for (jc = 1, j = 1; j <= n; jc++, j += 2) {
-				for (ic = 1, i = 1; i <= m; ic++, i += 2)
-					u[i][j][k] = uc[ic][jc][kc];
-			}
-		}
-		//interpolate verically
-		for (k = 1; k <= l_; k += 2) {
-			for (j = 1; j <= n; j += 2) {
-				for (i = 2; i < m; i += 2)
-					u[i][j][k] = 0.5f * (u[i + 1][j][k] + u[i - 1][j][k]);
-			}
-		}
-		//interpolate sideways
-		for (k = 1; k <= l_; k += 2) {
-			for (j = 2; j < n; j += 2) {
-				for (i = 1; i <= m; i++)
-					u[i][j][k] = 0.5f * (u[i][j + 1][k] + u[i][j - 1][k]);
-			}
-		}
-		for (k = 2; k < l_; k += 2) {
-			for (j = 1; j <= n; j++) {
-				for (i = 1; i <= m; i++)
-					u[i][j][k] = 0.5f * (u[i][j][k + 1] + u[i][j][k - 1]);
+		for (int ic = i0; ic <= i1; ic++)
+			for (int jc = j0; jc <= jLast; jc++) {
+				// indexes for coarse grid and corresponding fine grid entry
+				int pc = uc.index(ic, jc, k0);
+				int p = u.index(ri * (ic - 1) + 1, rj * (jc - 1) + 1, rk
+						* (k0 - 1) + 1);
+				for (int x = 0; x < length; x++, pc++, p += stride) {
+					if (insideBoundaryLayerOnly && blc.data[pc] >= BLTHRESH)
+						continue;
+					float nb = 0;
+					if (ci)
+						nb = f[p + si] + f[p - si];
+					if (cj)
+						nb = nb + f[p + sj] + f[p - sj];
+					if (ck)
+						nb += f[p + sk] + f[p - sk];
+					c[pc] = 0.5f * f[p] + nfac * nb;
+				}
 			}
-		}
+	}
+
+	/**
+	 * The rows of points of a matrix run along the direction of unit stride
+	 * of its data: along k, or along j for planar matrices, which have a
+	 * single k. Loops over the points in [j0, j1] x [k0, k1] of each i are
+	 * then a loop over j from j0 to the returned last j, and an innermost
+	 * loop over the rowLength points of a row, whose positions are
+	 * contiguous, and that the JIT compiler can unroll and vectorize.
+	 * 
+	 * @param uc
+	 *            the matrix of the points
+	 * @param j0
+	 * @param j1
+	 * @return the last j of the loop over j
+	 */
+	private static int lastRowJ(PaddedMatrix uc, int j0, int j1) {
+		return (uc.isPlanar() ? j0 : j1);
+	}
+
+	/**
+	 * @param uc
+	 *            the matrix of the points
+	 * @param j0
+	 * @param j1
+	 * @param k0
+	 * @param k1
+	 * @return the number of points of a row of the points in
+	 *         [j0, j1] x [k0, k1] of each i (see lastRowJ)
+	 */
+	private static int rowLength(PaddedMatrix uc, int j0, int j1, int k0,
+			int k1) {
+		return (uc.isPlanar() ? j1 - j0 + 1 : k1 - k0 + 1);
+	}
 
+	/**
+	 * Interpolates the data in matrix uc to a grid one order finner for cubic
+	 * matrices. Interpolation excludes border points.
+	 * 
+	 * @param u
+	 *            finer grid
+	 * @param uc
+	 *            coarser grid
+	 */
+	static void interpolate(PaddedMatrix u, PaddedMatrix uc,
+			BoundaryConditions bc) {
+		interpolate(u, uc, null, false, null);
 		bc.refreshBoundaryConditions(u);
 	}
 
@@ -193,48 +328,158 @@ public abstract class MultigridUtils {
 	 * @param bl
 	 *            boundary layer at finer grid
 	 */
-	static void interpolateBoundaryLayer(float[][][] u, float[][][] uc,
-			float[][][] bl, BoundaryConditions bc) {
-		int l_ = u[0][0].length - 2;
-		int m = u[0].length - 2;
-		int n = u.length - 2;
+	static void interpolateBoundaryLayer(PaddedMatrix u, PaddedMatrix uc,
+			PaddedMatrix bl, BoundaryConditions bc) {
+		interpolate(u, uc, bl, true, null);
+		bc.refreshBoundaryConditions(u);
+	}
 
-		int i, j, k; // indexes for fine grid
-		int ic, jc, kc; // indexes for coarse grid
+	/**
+	 * Interpolates the data in matrix uc to a grid one order finner for
+	 * points inside the boundary layer, as interpolateBoundaryLayer, but
+	 * weighting the coarse grid values by the relative diffusion at the faces
+	 * towards them (operator-dependent interpolation), so that values do not
+	 * spread across walls of near-zero diffusion.
+	 * 
+	 * @param u
+	 *            finer grid
+	 * @param uc
+	 *            coarser grid
+	 * @param bl
+	 *            boundary layer at finer grid
+	 * @param faces
+	 *            relative diffusion at the faces of the finer grid (see
+	 *            FaceDiffusion), or null to interpolate linearly
+	 * @param bc
+	 */
+	static void interpolateBoundaryLayer(PaddedMatrix u, PaddedMatrix uc,
+			PaddedMatrix bl, float[][] faces, BoundaryConditions bc) {
+		interpolate(u, uc, bl, true, faces);
+		bc.refreshBoundaryConditions(u);
+	}
+
+	/**
+	 * Implements interpolation, for all points or only for points inside the
+	 * boundary layer
+	 * 
+	 * @param u
+	 *            finer grid
+	 * @param uc
+	 *            coarser grid
+	 * @param bl
+	 *            boundary layer at finer grid
+	 * @param insideBoundaryLayerOnly
+	 *            if true, skip points outside the boundary layer
+	 * @param faces
+	 *            relative diffusion at the faces of the finer grid, to
+	 *            weight the interpolation, or null to interpolate linearly
+	 */
+	private static void interpolate(PaddedMatrix u, PaddedMatrix uc,
+			PaddedMatrix bl, boolean insideBoundaryLayerOnly, float[][] faces) {
+		int l_ = u.getL();
+		int m = u.getM();
+		int n = u.getN();
+		float[] f = u.data;
+		int si = u.si;
+		int sj = u.sj;
+		float[] b = (insideBoundaryLayerOnly ? bl.data : null);
+		// directions along which the grid was coarsened
+		int ri = (n != uc.getN() ? 2 : 1);
+		int rj = (m != uc.getM() ? 2 : 1);
+		int rk = (l_ != uc.getL() ? 2 : 1);
+
+		// rows of points run along k, or along j for planar matrices (see
+		// rows)
+		boolean planar = u.isPlanar();
+		int lastJ = (planar ? 1 : m);
+		int length = (planar ? m : l_);
+		int r = (planar ? rj : rk);
 
 		// copy points
-		for (kc = 1, k = 1; k <= l_; kc++, k += 2) {
-			for (jc = 1, j = 1; j <= n; jc++, j += 2) {
-				for (ic = 1, i = 1; i <= m; ic++, i += 2)
-					if (bl[i][j][k] < BLTHRESH)
-						u[i][j][k] = uc[ic][jc][kc];
+		for (int i = 1, ic = 1; i <= n; ic++, i += ri) {
+			for (int j = 1, jc = 1; j <= lastJ; jc++, j += rj) {
+				int p = u.index(i, j, 1);
+				int pc = uc.index(ic, jc, 1);
+				for (int x = 1; x <= length; x += r, p += r, pc++)
+					if (b == null || b[p] < BLTHRESH)
+						f[p] = uc.data[pc];
 			}
 		}
 		//interpolate verically
-		for (k = 1; k <= l_; k += 2) {
-			for (j = 1; j <= n; j += 2) {
-				for (i = 2; i < m; i += 2)
-					if (bl[i][j][k] < BLTHRESH)
-						u[i][j][k] = 0.5f * (u[i + 1][j][k] + u[i - 1][j][k]);
+		if (ri == 2)
+			for (int i = 2; i < n; i += 2) {
+				for (int j = 1; j <= lastJ; j += rj) {
+					int p = u.index(i, j, 1);
+					for (int x = 1; x <= length; x += r, p += r)
+						interpolatePoint(f, b, faces, p, si, 0);
+				}
 			}
-		}
 		//interpolate sideways
-		for (k = 1; k <= l_; k += 2) {
-			for (j = 2; j < n; j += 2) {
-				for (i = 1; i <= m; i++)
-					if (bl[i][j][k] < BLTHRESH)
-						u[i][j][k] = 0.5f * (u[i][j + 1][k] + u[i][j - 1][k]);
+		if ((rj == 2) && planar)
+			for (int i = 1; i <= n; i++) {
+				// every other point of the row
+				int p = u.index(i, 2, 1);
+				for (int j = 2; j < m; j += 2, p += 2)
+					interpolatePoint(f, b, faces, p, sj, 1);
 			}
-		}
-		for (k = 2; k < l_; k += 2) {
-			for (j = 1; j <= n; j++) {
-				for (i = 1; i <= m; i++)
-					if (bl[i][j][k] < BLTHRESH)
-						u[i][j][k] = 0.5f * (u[i][j][k + 1] + u[i][j][k - 1]);
+		else if (rj == 2)
+			for (int i = 1; i <= n; i++) {
+				for (int j = 2; j < m; j += 2) {
+					int p = u.index(i, j, 1);
+					for (int k = 1; k <= l_; k += rk, p += rk)
+						interpolatePoint(f, b, faces, p, sj, 1);
+				}
 			}
-		}
+		if (rk == 2)
+			for (int i = 1; i <= n; i++) {
+				for (int j = 1; j <= m; j++) {
+					int p = u.index(i, j, 2);
+					for (int k = 2; k < l_; k += 2, p += 2)
+						interpolatePoint(f, b, faces, p, 1, 2);
+				}
+			}
+	}
 
-		bc.refreshBoundaryConditions(u);
+	/**
+	 * Interpolate a point of a finer grid from its neighbours along one
+	 * direction, unless it is outside the boundary layer
+	 * 
+	 * @param f
+	 *            data of the finer grid
+	 * @param b
+	 *            boundary layer at the finer grid, or null to interpolate
+	 *            every point
+	 * @param faces
+	 *            relative diffusion at the faces of the finer grid, to
+	 *            weight the interpolation, or null to interpolate linearly
+	 * @param p
+	 *            position of the point
+	 * @param s
+	 *            stride of the direction
+	 * @param dir
+	 *            the direction
+	 */
+	private static void interpolatePoint(float[] f, float[] b,
+			float[][] faces, int p, int s, int dir) {
+		if (b == null || b[p] < BLTHRESH)
+			f[p] = (faces == null ? 0.5f * (f[p + s] + f[p - s])
+					: weightedMean(f[p - s], f[p + s], faces[dir][p - s],
+							faces[dir][p]));
+	}
+
+	/**
+	 * @param a
+	 * @param b
+	 * @param wa
+	 *            weight of a
+	 * @param wb
+	 *            weight of b
+	 * @return the weighted mean of a and b, or their mean if both weights
+	 *         are 0
+	 */
+	private static float weightedMean(float a, float b, float wa, float wb) {
+		float w = wa + wb;
+		return (w > 0 ? (wa * a + wb * b) / w : 0.5f * (a + b));
 	}
 
 	/**
@@ -243,11 +488,8 @@ public abstract class MultigridUtils {
 	 * @param u
 	 * @param val
 	 */
-	public static void setValues(float u[][][], float val) {
-		for (int i = 0; i < u.length; i++)
-			for (int j = 0; j < u[i].length; j++)
-				for (int k = 0; k < u[i][j].length; k++)
-					u[i][j][k] = val;
+	public static void setValues(PaddedMatrix u, float val) {
+		Arrays.fill(u.data, val);
 	}
 
 	/**
@@ -269,11 +511,11 @@ public abstract class MultigridUtils {
 	 * @param a
 	 * @param b
 	 */
-	static void addTo(float a[][][], float b[][][]) {
-		for (int i = 0; i < a.length; i++)
-			for (int j = 0; j < a[i].length; j++)
-				for (int k = 0; k < a[i][j].length; k++)
-					a[i][j][k] += b[i][j][k];
+	static void addTo(PaddedMatrix a, PaddedMatrix b) {
+		float[] x = a.data;
+		float[] y = b.data;
+		for (int p = 0; p < x.length; p++)
+			x[p] += y[p];
 	}
 
 	/**
@@ -282,11 +524,23 @@ public abstract class MultigridUtils {
 	 * @param a
 	 * @param b
 	 */
-	static void subtractTo(float a[][][], float b[][][]) {
-		for (int i = 0; i < a.length; i++)
-			for (int j = 0; j < a[i].length; j++)
-				for (int k = 0; k < a[i][j].length; k++)
-					a[i][j][k] -= b[i][j][k];
+	static void subtractTo(PaddedMatrix a, PaddedMatrix b) {
+		float[] x = a.data;
+		float[] y = b.data;
+		for (int p = 0; p < x.length; p++)
+			x[p] -= y[p];
+	}
+
+	/**
+	 * Multiply every entry of matrix a by the factor f
+	 * 
+	 * @param a
+	 * @param f
+	 */
+	static void multiplyBy(PaddedMatrix a, float f) {
+		float[] x = a.data;
+		for (int p = 0; p < x.length; p++)
+			x[p] *= f;
 	}
 
 	/**
@@ -296,15 +550,10 @@ public abstract class MultigridUtils {
 	 * @param b
 	 * @return c = a-b
 	 */
-	public static float[][][] subtract(float a[][][], float b[][][]) {
-		int l = a.length;
-		int m = a[0].length;
-		int n = a[0][0].length;
-		float[][][] c = new float[l][m][n];
-		for (int i = 0; i < l; i++)
-			for (int j = 0; j < m; j++)
-				for (int k = 0; k < n; k++)
-					c[i][j][k] = a[i][j][k] - b[i][j][k];
+	public static PaddedMatrix subtract(PaddedMatrix a, PaddedMatrix b) {
+		PaddedMatrix c = new PaddedMatrix(a.getN(), a.getM(), a.getL());
+		for (int p = 0; p < c.data.length; p++)
+			c.data[p] = a.data[p] - b.data[p];
 		return c;
 	}
 
@@ -314,12 +563,10 @@ public abstract class MultigridUtils {
 	 * @param a
 	 * @return the minimum value in the matrix
 	 */
-	public static float min(float a[][][]) {
-		float min = a[0][0][0];
-		for (int i = 0; i < a.length; i++)
-			for (int j = 0; j < a[i].length; j++)
-				for (int k = 0; k < a[i][j].length; k++)
-					min = (a[i][j][k] < min ? a[i][j][k] : min);
+	public static float min(PaddedMatrix a) {
+		float min = a.data[0];
+		for (int p = 0; p < a.data.length; p++)
+			min = (a.data[p] < min ? a.data[p] : min);
 		return min;
 	}
 
@@ -329,12 +576,10 @@ public abstract class MultigridUtils {
 	 * @param a
 	 * @return the maximum value in the matrix
 	 */
-	public static float max(float a[][][]) {
-		float max = a[0][0][0];
-		for (int i = 0; i < a.length; i++)
-			for (int j = 0; j < a[i].length; j++)
-				for (int k = 0; k < a[i][j].length; k++)
-					max = (a[i][j][k] > max ? a[i][j][k] : max);
+	public static float max(PaddedMatrix a) {
+		float max = a.data[0];
+		for (int p = 0; p < a.data.length; p++)
+			max = (a.data[p] > max ? a.data[p] : max);
 		return max;
 	}
 
@@ -344,27 +589,103 @@ public abstract class MultigridUtils {
 	 * @param a
 	 * @return the norm of the matrix
 	 */
-	public static float computeNorm(float[][][] a) {
+	public static float computeNorm(PaddedMatrix a) {
+		if (MultigridVariable.isPartialSumNorms())
+			return (float) Math.sqrt(sumOfSquaresInPartialSums(a));
 		float norm = 0;
-		for (int i = 1; i < a.length - 1; i++)
-			for (int j = 1; j < a[i].length - 1; j++)
-				for (int k = 1; k < a[i][j].length - 1; k++)
-					norm += ExtraMath.sq(a[i][j][k]);
+		// rows of entries run along k, or along j for planar matrices
+		int jLast = lastRowJ(a, 1, a.getM());
+		int length = rowLength(a, 1, a.getM(), 1, a.getL());
+		for (int i = 1; i <= a.getN(); i++)
+			for (int j = 1; j <= jLast; j++) {
+				int p = a.index(i, j, 1);
+				for (int x = 0; x < length; x++, p++)
+					norm += ExtraMath.sq(a.data[p]);
+			}
 		return (float) Math.sqrt(norm);
 	}
+
+	/**
+	 * Compute the sum of the squares of the entries of a matrix (excluding
+	 * padding) in PARTIALSUMS independent partial sums, that are added
+	 * pairwise at the end. The partial sums do not depend on each other, so
+	 * that the processor can pipeline their additions, where a single sum
+	 * must add the entries one after the other. The result is rounded
+	 * differently from that of a single sum, but it does not depend on the
+	 * machine.
+	 * 
+	 * @param a
+	 * @return the sum of the squares of the entries of a
+	 */
+	private static float sumOfSquaresInPartialSums(PaddedMatrix a) {
+		float[] d = a.data;
+		float s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+		int jLast = lastRowJ(a, 1, a.getM());
+		int length = rowLength(a, 1, a.getM(), 1, a.getL());
+		for (int i = 1; i <= a.getN(); i++)
+			for (int j = 1; j <= jLast; j++) {
+				int p = a.index(i, j, 1);
+				int end = p + length;
+				for (; p + PARTIALSUMS <= end; p += PARTIALSUMS) {
+					s0 += d[p] * d[p];
+					s1 += d[p + 1] * d[p + 1];
+					s2 += d[p + 2] * d[p + 2];
+					s3 += d[p + 3] * d[p + 3];
+					s4 += d[p + 4] * d[p + 4];
+					s5 += d[p + 5] * d[p + 5];
+					s6 += d[p + 6] * d[p + 6];
+					s7 += d[p + 7] * d[p + 7];
+				}
+				// the remainder of the row goes to the first partial sum
+				for (; p < end; p++)
+					s0 += d[p] * d[p];
+			}
+		return ((s0 + s1) + (s2 + s3)) + ((s4 + s5) + (s6 + s7));
+	}
+
 	/**
 	 * @param a
 	 * @return the sum of all elements of a
 	 */
-	public static float computeSum(float[][][] a) {
+	public static float computeSum(PaddedMatrix a) {
 		float sum = 0;
-		for (int i = 1; i < a.length - 1; i++)
-			for (int j = 1; j < a[i].length - 1; j++)
-				for (int k = 1; k < a[i][j].length - 1; k++)
-					sum += a[i][j][k];
+		int jLast = lastRowJ(a, 1, a.getM());
+		int length = rowLength(a, 1, a.getM(), 1, a.getL());
+		for (int i = 1; i <= a.getN(); i++)
+			for (int j = 1; j <= jLast; j++) {
+				int p = a.index(i, j, 1);
+				for (int x = 0; x < length; x++, p++)
+					sum += a.data[p];
+			}
 		return sum;
 	}
 
+	/**
+	 * Return values in a matrix (excluding boundaries) as a formatted string
+	 * 
+	 * @param matrix
+	 *            to output as string
+	 * @return string output
+	 */
+	public static String coreMatrixToString(PaddedMatrix matrix) {
+		int n = matrix.getN();
+		int m = matrix.getM();
+		int l = matrix.getL();
+		StringBuffer out = new StringBuffer();
+		for (int k = 1; k <= l; k++) {
+			for (int i = n; i >= 1; i--) {
+				for (int j = 1; j <= m; j++) {
+					out.append(matrix.get(i, j, k));
+					//change here for format (presently space separated values
+					out.append(SEPARATOR);
+				}
+				out.append("\n");
+			}
+			out.append("\n");
+		}
+		return out.toString();
+	}
+
 	/**
 	 * Return values in a matrix (excluding boundaries) as a formatted string
 	 * 
@@ -4,8 +4,12 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import nl.tudelft.bt.model.ContinuousCoordinate;
 import nl.tudelft.bt.model.DiscreteCoordinate;
@@ -15,6 +19,9 @@ import nl.tudelft.bt.model.exceptions.ModelRuntimeException;
 import nl.tudelft.bt.model.exceptions.MultigridSystemNotSetException;
 import nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions;
 import nl.tudelft.bt.model.multigrid.boundary_layers.BoundaryLayer;
+import nl.tudelft.bt.model.reaction.FactorCache;
+import nl.tudelft.bt.model.reaction.RateKernel;
+import nl.tudelft.bt.model.util.ExtraMath;
 
 /**
  * Implements a 3D state variable at multigrid resolutions. Common base class
@@ -34,12 +41,43 @@ public class MultigridVariable implements Serializable {
 	// index of coarsestgrid
 	protected static final int COARSEST = 0;
 
+	// solver used by solveDiffusionReaction, may be set using setSolver()
+	public static final int RELAXATION = 0;
+
+	public static final int MULTIGRID = 1;
+
+	// multigrid nested iteration with Jacobian-free Newton-Krylov at the
+	// finest grid instead of V-cycles (see NewtonKrylov)
+	public static final int NEWTONKRYLOV = 2;
+
+	private static int _solver = RELAXATION;
+
+	// coarse grid operators, may be set per type of boundary conditions
+	// using setCoarseGridOperators(): rediscretized from the restricted
+	// relative diffusion, or built from the diffusion at the faces of the
+	// finer grids with operator-dependent interpolation (see FaceDiffusion)
+	public static final int GEOMETRIC = 0;
+
+	public static final int ALGEBRAIC = 1;
+
+	private static HashMap _coarseGridOperators = new HashMap();
+
 	// Default values. May be reset using setSteps()
 	protected static final int VCYCLES = 10;
 
-	protected static final int NSOLVE = 1000; // coarset grid solution (50
+	// maximum number of V-cycles per nested iteration level. May be reset
+	// using setMaximumVCycles()
+	protected static int nVCycles = VCYCLES;
+
+	// number of sweeps used by the relaxation solver
+	protected static final int NRELAX = 5000;
 
-	// works)
+	// relaxations of the coarsest grid solution if the direct solver fails
+	// (50 works)
+	protected static final int NSOLVE = 1000;
+
+	// relaxations of the coarsest grid between attempts of the direct solver
+	protected static final int NRECOVER = 20;
 
 	protected static int nPreSteps = 50;
 
@@ -51,14 +89,82 @@ public class MultigridVariable implements Serializable {
 	// substrate limitation)
 	protected static final float ALPHA = 0.33f; // post-smoothing steps
 
+	// damping factor of the coarse grid correction, may be set using
+	// setCorrectionDamping()
+	private static float _correctionDamping = 0.6f;
+
 	private static final float PRECISION = 1e-6f; // required precision
 
+	// if true, the solvers start from the solution of the previous call. May
+	// be set using setWarmStart()
+	private static boolean _warmStart = false;
+
+	// relative change of the inputs of the solvers below which the previous
+	// solution is reused, 0 to always solve. May be set using
+	// setSkipSolveTolerance()
+	private static float _skipTolerance = 0;
+
+	// if true, the multigrid solver solves the solutes by levels of their
+	// dependencies. May be set using setScheduleByDependencies()
+	private static boolean _scheduleByDependencies = false;
+
+	// if true, the multigrid solver solves the solutes whose rates do not
+	// depend on the solutes being solved directly. May be set using
+	// setDirectSolverForLinearSolutes()
+	private static boolean _directLinearSolver = false;
+
+	// if true, relaxation updates all solutes at a node together by a
+	// Newton step with their coupling. May be set using
+	// setCoupledRelaxation()
+	private static boolean _coupledRelaxation = false;
+
+	// norms of residuals are summed in independent partial sums, see
+	// setPartialSumNorms
+	private static boolean _partialSumNorms = false;
+
+	// minimum size of the matrices of a grid order (including padding) for
+	// relaxation to be done in parallel
+	private static final int PARALLELTHRESHOLD = 4096;
+
+	// minimum number of nodes inside the boundary layer of a grid order for
+	// independent blocks of solutes to be relaxed in parallel
+	private static final int BLOCKTHRESHOLD = 256;
+
+	// number of threads used for relaxation. May be reset using
+	// setNumberOfThreads()
+	private static int _nThreads = Runtime.getRuntime().availableProcessors();
+
+	// the pool of threads used for relaxation, created on first use
+	private static ForkJoinPool _pool;
+
+	// scratch state of the solvers for the present grid, allocated on first
+	// use after the grid is set
+	private static SolverWorkspace _workspace;
+
+	// tasks relaxing the slabs of a color pass in parallel and the task
+	// running them, reused for every pass
+	private static RelaxSlab[] _slabs;
+
+	private static RelaxPass _pass;
+
+	// tasks relaxing the independent blocks of solutes in parallel and the
+	// task running them
+	private static RelaxSlab[] _blockSlabs;
+
+	private static RelaxPass _blockPass;
+
+	// statistics of the last call to the solvers, and the listeners notified
+	// at the end of every call
+	private static final SolverStatistics _statistics = new SolverStatistics();
+
+	private static ArrayList _solverListeners;
+
 	protected String _name;
 
 	// holds the multi-grid values for a variable
 	// set access control to public when boundary layers where placed on
 	// a different package
-	public float[][][][] _mg;
+	public PaddedMatrix[] _mg;
 
 	// sizes of finest grid
 	protected static int _l;
@@ -70,6 +176,10 @@ public class MultigridVariable implements Serializable {
 	// multigrid order
 	protected static int _order;
 
+	// sizes of the grids of each grid order, per direction (see
+	// MultigridUtils.gridSizes)
+	private static int[][] _sizes;
+
 	// the volume of an element of the finest grid [um^3]
 	protected static float _voxelVolume;
 
@@ -80,6 +190,10 @@ public class MultigridVariable implements Serializable {
 	// current grid order
 	protected static int _g;
 
+	// grid order of the current location (see setCurrentLocation), kept
+	// apart from the grid order of the solvers
+	protected static int _cursorG;
+
 	// current indexes
 	protected static int _i;
 
@@ -90,11 +204,9 @@ public class MultigridVariable implements Serializable {
 	// grid is set lock
 	private static boolean _gridIsSet = false;
 
-	// a static 3D array for neighborhood computations in relax
-	private static final float[][][] _diff = new float[3][3][3];
-
-	// a static array for rate and rate derivative computations in relax
-	private static final float[] _rDr = new float[2];
+	// strides for indexes i and j of the matrices of each grid order, used
+	// to convert (i, j, k) into the flat index of a grid node
+	private static int[][] _strides;
 
 	// an auxiliry variable
 	private static final DiscreteCoordinate _auxDiscreteCoordinate = new DiscreteCoordinate();
@@ -117,38 +229,34 @@ public class MultigridVariable implements Serializable {
 	public MultigridVariable() throws MultigridSystemNotSetException {
 		if (!_gridIsSet)
 			throw new MultigridSystemNotSetException();
-		_mg = new float[_order][][][];
+		_mg = new PaddedMatrix[_order];
 		for (int i = 0; i < _order; i++) {
-			int n = MultigridUtils.coarserSize(_n, _order - i - 1);
-			int m = MultigridUtils.coarserSize(_m, _order - i - 1);
-			int l = MultigridUtils.coarserSize(_l, _order - i - 1);
 			// with padding for boundary conditions
-			_mg[i] = new float[n + 2][m + 2][l + 2];
+			_mg[i] = new PaddedMatrix(_sizes[i][0], _sizes[i][1], _sizes[i][2]);
 		}
 	}
 
 	/**
-	 * Set the discrete grid properties. The grid size must be of the for n =
-	 * 2^i + 1, where i is an integer. This implementation is for 3D cubic and
-	 * 2D square systems.
+	 * Set the discrete grid properties. The grid sizes must be odd, and are
+	 * best of the form 2^i + 1 or a small odd number times 2^i, plus 1. The
+	 * sizes may differ between directions, in which case the coarser grids
+	 * are semi-coarsened along the longer directions (see
+	 * MultigridUtils.gridSizes). The voxels are cubic, with the side of the
+	 * finest grid spacing along n.
 	 * 
 	 * @param n
 	 *            grid size
+	 * @param m
+	 * @param l
+	 *            1 for 2D systems
 	 * @throws InvalidValueException
-	 *             in case n is not of the form n = 2^i + 1
+	 *             in case a size is not odd or smaller than 3
 	 */
 	static public void setGrid(int n, int m, int l)
 			throws InvalidValueException {
-		// compute orders and check validity of grid
-		int on = MultigridUtils.order(n);
-		int om = MultigridUtils.order(m);
-		// determine the order of the system
-		_order = Math.min(on, om);
-		if (l != 1) {
-			// 3D
-			int ol = MultigridUtils.order(l);
-			_order = Math.min(_order, ol);
-		}
+		// compute the sizes of the grid orders and check validity of grid
+		_sizes = MultigridUtils.gridSizes(n, m, l);
+		_order = _sizes.length;
 		// compute the volume of one finest grid element
 		_referenceSystemSide = _model.referenceSystemSide;
 		_voxelSide = _referenceSystemSide / n;
@@ -157,23 +265,106 @@ public class MultigridVariable implements Serializable {
 		_n = n;
 		_m = m;
 		_l = l;
+		computeStrides();
+		// the workspace of the solvers is allocated for the new grid
+		_workspace = null;
 		// open the lock, so new variables can be created
 		_gridIsSet = true;
 	}
 
 	/**
-	 * Convert continuous coordinate into indexes of the discrete grid
+	 * @param g
+	 *            grid order
+	 * @param d
+	 *            direction (0 for i, 1 for j and 2 for k)
+	 * @return the grid spacing along direction d at grid order g, which may
+	 *         differ between directions in semi-coarsened grids
+	 */
+	static float getGridSpacing(int g, int d) {
+		int finest = _sizes[_order - 1][d];
+		return _referenceSystemSide * (((float) finest - 1) / (_n - 1))
+				/ ((float) _sizes[g][d] - 1);
+	}
+
+	/**
+	 * Compute the strides of the matrices of each grid order (the same as
+	 * those of PaddedMatrix, including planar matrices in 2D)
+	 */
+	private static void computeStrides() {
+		_strides = new int[_order][3];
+		for (int g = 0; g < _order; g++) {
+			int nj = _sizes[g][1] + 2;
+			int nk = _sizes[g][2] + 2;
+			boolean planar = (_l == 1);
+			_strides[g][0] = (planar ? nj : nj * nk);
+			_strides[g][1] = (planar ? 1 : nk);
+			_strides[g][2] = (planar ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Convert continuous coordinate into indexes of the discrete grid. The
+	 * returned object is shared, use snapToDiscrete(ContinuousCoordinate,
+	 * DiscreteCoordinate) or snapToIndex where calls may be concurrent.
 	 * 
 	 * @param c
 	 *            coordinate to converted
 	 * @return contains corresponding indexes in the discrete grid
 	 */
 	public static DiscreteCoordinate snapToDiscrete(ContinuousCoordinate c) {
+		return snapToDiscrete(c, _auxDiscreteCoordinate);
+	}
+
+	/**
+	 * Convert continuous coordinate into indexes of the discrete grid
+	 * 
+	 * @param c
+	 *            coordinate to converted
+	 * @param d
+	 *            discrete coordinate to write the indexes to
+	 * @return d, containing the corresponding indexes in the discrete grid
+	 */
+	public static DiscreteCoordinate snapToDiscrete(ContinuousCoordinate c,
+			DiscreteCoordinate d) {
 		// snap coordinate to grid indexes
-		_auxDiscreteCoordinate.i = snapToDiscreteI(c.x);
-		_auxDiscreteCoordinate.j = snapToDiscreteJ(c.y);
-		_auxDiscreteCoordinate.k = snapToDiscreteJ(c.z);
-		return _auxDiscreteCoordinate;
+		d.i = snapToDiscreteI(c.x);
+		d.j = snapToDiscreteJ(c.y);
+		d.k = snapToDiscreteK(c.z);
+		return d;
+	}
+
+	/**
+	 * Convert continuous coordinate into the flat index of the corresponding
+	 * node of the finest grid
+	 * 
+	 * @param c
+	 *            coordinate to converted
+	 * @return flat index of the node in the matrices of the finest grid
+	 */
+	public static int snapToIndex(ContinuousCoordinate c) {
+		return indexAt(_order - 1, snapToDiscreteI(c.x), snapToDiscreteJ(c.y),
+				snapToDiscreteK(c.z));
+	}
+
+	/**
+	 * Get the flat index of node (i, j, k) in the matrices of grid order g
+	 * 
+	 * @param g
+	 *            grid order
+	 * @param i
+	 * @param j
+	 * @param k
+	 * @return the flat index of the node
+	 */
+	public static int indexAt(int g, int i, int j, int k) {
+		return i * _strides[g][0] + j * _strides[g][1] + k * _strides[g][2];
+	}
+
+	/**
+	 * @return the order of the finest grid
+	 */
+	public static int getFinestLevel() {
+		return _order - 1;
 	}
 
 	public static int snapToDiscreteI(float x) {
@@ -226,27 +417,77 @@ public class MultigridVariable implements Serializable {
 	}
 
 	/**
-	 * Set the value of the present location for retrieval of values
+	 * Set the value of the present location, at the finest grid, for
+	 * retrieval of values
 	 * 
 	 * @param c
 	 */
 	public static void setCurrentLocation(ContinuousCoordinate c) {
 		DiscreteCoordinate d = snapToDiscrete(c);
+		_cursorG = _order - 1;
 		_i = d.i;
 		_j = d.j;
 		_k = d.k;
 	}
 
+	/**
+	 * Set the present location to a grid node given by its grid order and
+	 * flat index (see getCurrentLevel and getCurrentIndex). Does not change
+	 * the grid order of the solvers.
+	 * 
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 */
+	public static void setCurrentLocation(int g, int p) {
+		int si = _strides[g][0];
+		int sj = _strides[g][1];
+		_cursorG = g;
+		_i = p / si;
+		_j = (p % si) / sj;
+		// planar matrices have a single node along k
+		_k = (_strides[g][2] == 0 ? 1 : (p % si) % sj);
+	}
+
+	/**
+	 * @return the grid order of the current location
+	 */
+	public static int getCurrentLevel() {
+		return _cursorG;
+	}
+
+	/**
+	 * @return the flat index of the current location in the matrices of the
+	 *         current grid order
+	 */
+	public static int getCurrentIndex() {
+		return indexAt(_cursorG, _i, _j, _k);
+	}
+
 	/**
 	 * Get the current value
 	 * 
 	 * @return value for current multigrid entry
 	 */
 	public float getValue() {
-		return _mg[_g][_i][_j][_k];
+		return _mg[_cursorG].get(_i, _j, _k);
 		//return _mg[_order - 1][_i][_j][_k]; // armin temporary solution
 	}
 
+	/**
+	 * Get the value at an explicit location
+	 * 
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 * @return value at location (g, p)
+	 */
+	public float getValue(int g, int p) {
+		return _mg[g].data[p];
+	}
+
 	/**
 	 * Gets the value of concentration of this chemical at location c
 	 * 
@@ -255,8 +496,7 @@ public class MultigridVariable implements Serializable {
 	 * @return concentration at c
 	 */
 	public float getValueAt(ContinuousCoordinate c) {
-		DiscreteCoordinate dc = snapToDiscrete(c);
-		return _mg[_order - 1][dc.i][dc.j][dc.k];
+		return _mg[_order - 1].data[snapToIndex(c)];
 	}
 
 	/**
@@ -268,7 +508,7 @@ public class MultigridVariable implements Serializable {
 	 * @return value at location i, j, k in finest grid
 	 */
 	public float getValueAt(int i, int j, int k) {
-		return _mg[_order - 1][i][j][k];
+		return _mg[_order - 1].get(i, j, k);
 	}
 
 	/**
@@ -289,8 +529,7 @@ public class MultigridVariable implements Serializable {
 	 *            value to incrment
 	 */
 	void incrementValueAt(ContinuousCoordinate c, float f) {
-		DiscreteCoordinate dc = snapToDiscrete(c);
-		_mg[_order - 1][dc.i][dc.j][dc.k] += f;
+		_mg[_order - 1].data[snapToIndex(c)] += f;
 	}
 
 	/**
@@ -313,6 +552,44 @@ public class MultigridVariable implements Serializable {
 		}
 	}
 
+	/**
+	 * Prepare the workspace of the solvers for a call to the solvers,
+	 * allocating it if the grid was set since the last call
+	 * 
+	 * @param chem
+	 *            solutes of the call, with compiled rate kernels
+	 * @return the workspace
+	 * @throws MultigridSystemNotSetException
+	 */
+	private static SolverWorkspace prepareWorkspace(SoluteSpecies[] chem)
+			throws MultigridSystemNotSetException {
+		if (_workspace == null)
+			_workspace = new SolverWorkspace();
+		_workspace.prepare(chem);
+		return _workspace;
+	}
+
+	/**
+	 * Solve the reaction and diffusion equations to pseudo-steady state using
+	 * the solver set by setSolver (relaxation by default).
+	 * 
+	 * @param chem
+	 * @param bac
+	 * @param bl
+	 * @throws MultigridSystemNotSetException
+	 */
+	public static void solveDiffusionReaction(SoluteSpecies[] chem,
+			ParticulateSpecies[] bac, BoundaryLayer bl)
+			throws MultigridSystemNotSetException {
+		switch (_solver) {
+		case RELAXATION:
+			solve(chem, bac, bl);
+			break;
+		default:
+			solveMG(chem, bac, bl);
+		}
+	}
+
 	/**
 	 * Solve the reaction and diffusion equations to pseudo- steady state. As a
 	 * final result, the concentrations of chemical species are updated. The
@@ -328,21 +605,155 @@ public class MultigridVariable implements Serializable {
 	 */
 	public static void solveMG(SoluteSpecies[] chem, ParticulateSpecies[] bac,
 			BoundaryLayer bl) throws MultigridSystemNotSetException {
+		_statistics.start(_solver == NEWTONKRYLOV ? NEWTONKRYLOV : MULTIGRID,
+				_order, chem);
+		compileRateKernels(chem);
+		SolverWorkspace w = prepareWorkspace(chem);
 		// two temporary multigrid variables are needed for the
-		// computation, are initialized with 0 allover
-		MultigridVariable itemp = new MultigridVariable();
-		MultigridVariable itau = new MultigridVariable();
-		// create a relative diffusion data, so far it is 1 everywhere
-		RelativeDiffusion relDiff = new RelativeDiffusion();
+		// computation
+		MultigridVariable itemp = w.itemp;
+		MultigridVariable itau = w.itau;
+		// update the boundary layer and the relative diffusion (so far 1
+		// everywhere) where the biomass changed
+		RelativeDiffusion relDiff = w.getRelativeDiffusion(bl);
+		bl.updateBiomassOccupancy(bac);
 		bl.setBoundaryLayer(bac, _boundaryConditions);
-		relDiff.computeValues(bac, bl, _boundaryConditions);
-		// create multigrid copies of biomass and relative
-		// diffusion
+		relDiff.updateValues(bac, bl, _boundaryConditions);
+		// create multigrid copies of biomass
 		for (int i = 0; i < bac.length; i++) {
 			bac[i].updateMultigridCopies();
 		}
-		relDiff.updateMultigridCopies();
 		bl.updateMultigridCopies();
+		relDiff.computeStencils(bl);
+		// the solutes that are not solved directly are solved iteratively
+		SoluteSpecies[] c = (_directLinearSolver ? solveLinearSolutes(chem,
+				relDiff, bl) : chem);
+		if (c != chem)
+			prepareWorkspace(c);
+		if (_solver == NEWTONKRYLOV)
+			w.prepareNewtonKrylov(c.length);
+		// previous solutions are reused or improved only at the finest grid
+		boolean coarser = isSolvedAtCoarserGrids(c);
+		boolean reused = (c.length > 0) && !coarser && (_skipTolerance > 0)
+				&& reusePreviousSolution(c, bac, relDiff, bl, w);
+		boolean warmStart = reused
+				|| ((c.length > 0) && !coarser && _warmStart
+						&& solveFromPreviousSolution(c, relDiff, bl, itemp,
+								itau));
+		if (!warmStart && (c.length > 0)) {
+			// solutes are solved at different grid orders by levels of
+			// their dependencies
+			SoluteDependencies dependencies = ((_scheduleByDependencies
+					|| coarser) ? new SoluteDependencies(c) : null);
+			if ((dependencies == null)
+					|| (dependencies.isFullyCoupled() && !coarser))
+				solveNested(c, relDiff, bl, itemp, itau, _order - 1);
+			else
+				solveByLevels(c, dependencies, relDiff, bl, itemp, itau);
+		}
+		// an unconverged solution is not passed on as if it had converged
+		if (!reused && (c.length > 0) && !_statistics.isConverged())
+			relaxAfterMultigrid(c, relDiff, bl);
+		if (!reused) {
+			for (int i = 0; i < chem.length; i++)
+				chem[i].hasSolution = true;
+			recordSolverInputs(c, bac, w);
+		}
+		_g = _order - 1;
+		if (c != chem)
+			prepareWorkspace(chem);
+		finishStatistics(chem, relDiff, bl, itemp, warmStart, reused);
+	}
+
+	/**
+	 * Relax the solutes at the finest grid order for as many sweeps as the
+	 * relaxation solver (see solve), starting from the solution of the
+	 * multigrid or Newton-Krylov solver, when that solution did not
+	 * converge
+	 * 
+	 * @param c
+	 *            solutes solved iteratively, for which the workspace is
+	 *            prepared
+	 * @param relDiff
+	 * @param bl
+	 */
+	private static void relaxAfterMultigrid(SoluteSpecies[] c,
+			RelativeDiffusion relDiff, BoundaryLayer bl) {
+		_g = _order - 1;
+		for (int i = 0; i < c.length; i++)
+			MultigridUtils.setValues(c[i].rhs._mg[_g], 0.0f);
+		for (int i = 0; i < NRELAX; i++)
+			relax(c, relDiff, bl);
+		_statistics.setRelaxedAfterMultigrid();
+	}
+
+	/**
+	 * Solve directly at the finest grid (see LinearSoluteSolver) the solutes
+	 * whose rates do not depend on any of the solutes being solved, so that
+	 * their equations are linear
+	 * 
+	 * @param c
+	 *            solutes being solved
+	 * @param relDiff
+	 * @param bl
+	 * @return the other solutes, and those for which the direct solver
+	 *         failed, to be solved iteratively with the solutes solved
+	 *         directly fixed
+	 */
+	private static SoluteSpecies[] solveLinearSolutes(SoluteSpecies[] c,
+			RelativeDiffusion relDiff, BoundaryLayer bl) {
+		SoluteSpecies[] remaining = new SoluteSpecies[c.length];
+		int n = 0;
+		for (int i = 0; i < c.length; i++) {
+			boolean linear = true;
+			for (int j = 0; j < c.length; j++)
+				linear &= !c[i].getRateKernel().dependsOn(c[j]);
+			if (linear && _workspace.linearSoluteSolver.solve(c[i], relDiff,
+					bl, _boundaryConditions))
+				// the solution is exact up to round-off
+				c[i].truncationError = 0;
+			else
+				remaining[n++] = c[i];
+		}
+		if (n == c.length)
+			return c;
+		SoluteSpecies[] r = new SoluteSpecies[n];
+		System.arraycopy(remaining, 0, r, 0, n);
+		return r;
+	}
+
+	/**
+	 * @param c
+	 *            solutes
+	 * @return true if some solute is solved at a grid coarser than the
+	 *         finest (see SoluteSpecies.setGridCoarsening)
+	 */
+	private static boolean isSolvedAtCoarserGrids(SoluteSpecies[] c) {
+		for (int i = 0; i < c.length; i++)
+			if (c[i].getFinestGridOrder() < _order - 1)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Solve by nested iteration, starting from the bulk concentrations at the
+	 * coarsest grid, up to grid order top. A solution at a grid coarser than
+	 * the finest is interpolated to the finer grid orders.
+	 * 
+	 * @param chem
+	 * @param relDiff
+	 * @param bl
+	 * @param itemp
+	 *            temporary variable
+	 * @param itau
+	 *            temporary variable
+	 * @param top
+	 *            grid order where the solution is found
+	 * @return true if the solution at grid order top converged
+	 */
+	private static boolean solveNested(SoluteSpecies[] chem,
+			RelativeDiffusion relDiff, BoundaryLayer bl,
+			MultigridVariable itemp, MultigridVariable itau, int top) {
 		// Initialize concentration of all chemicals to value of
 		// bulk concentration
 		for (int i = 0; i < chem.length; i++) {
@@ -351,7 +762,8 @@ public class MultigridVariable implements Serializable {
 		// solve chemical concentrations on coarsest grid
 		solveCoarsest(chem, relDiff, bl);
 		// nested iteration loop
-		for (int outer = 1; outer < _order; outer++) {
+		boolean converged = false;
+		for (int outer = 1; outer <= top; outer++) {
 			_g = outer;
 			for (int i = 0; i < chem.length; i++) {
 				MultigridUtils.interpolateBoundaryLayer(chem[i]._mg[_g],
@@ -359,400 +771,1214 @@ public class MultigridVariable implements Serializable {
 				// set each chemical's r.h.s. to 0
 				MultigridUtils.setValues(chem[i].rhs._mg[_g], 0.0f);
 			}
-			// V-cycle loop
-			for (int v = 0; v < VCYCLES; v++) {
-				// downward stroke of V
-				while (_g > 0) {
-					// pre-smoothing
-					for (int j = 0; j < nPreSteps; j++) {
-						relax(chem, relDiff, bl);
-					}
-					for (int j = 0; j < chem.length; j++) {
-						// restrict uh to uH
-						MultigridUtils.restrictBoundaryLayer(chem[j]._mg[_g],
-								chem[j]._mg[_g - 1], bl._mg[_g - 1],
-								_boundaryConditions);
-						//
-						lop(itemp, chem[j], relDiff, bl);
-						//
-						MultigridUtils.restrictBoundaryLayer(itemp._mg[_g],
-								itemp._mg[_g - 1], bl._mg[_g - 1],
-								_boundaryConditions);
-						// reduce grid value _g temporarily
-						_g--;
-						lop(itau, chem[j], relDiff, bl);
-						MultigridUtils.subtractTo(itau._mg[_g], itemp._mg[_g]);
-						// sum tau to rhs of _g - 1
-						MultigridUtils.restrictBoundaryLayer(
-								chem[j].rhs._mg[_g + 1], chem[j].rhs._mg[_g],
-								bl._mg[_g], _boundaryConditions);
-						MultigridUtils.addTo(chem[j].rhs._mg[_g], itau._mg[_g]);
-						// compute the truncation error for this V-cycle
-						// for all chemicals
-						if (_g + 1 == outer)
-							chem[j].truncationError = ALPHA
-									* MultigridUtils.computeNorm(itau._mg[_g]);
-						// put _g value back for remaining solutes
-						_g++;
-					}
-					// reduce grid value _g for good
-					_g--;
-				}
-				// bottom of V
-				solveCoarsest(chem, relDiff, bl);
-				// upward stroke of V
-				while (_g < outer) {
-					_g++;
-					for (int j = 0; j < chem.length; j++) {
-						MultigridUtils.restrictBoundaryLayer(chem[j]._mg[_g],
-								itemp._mg[_g - 1], bl._mg[_g - 1],
-								_boundaryConditions);
-						MultigridUtils.subtractTo(chem[j]._mg[_g - 1],
-								itemp._mg[_g - 1]);
-						MultigridUtils.interpolateBoundaryLayer(itau._mg[_g],
-								chem[j]._mg[_g - 1], bl._mg[_g],
-								_boundaryConditions);
-						MultigridUtils.addTo(chem[j]._mg[_g], itau._mg[_g]);
-					}
-					truncatePresentSoluteValuesToZero(chem, bl);
-					// post-smoothing
-					for (int j = 0; j < nPosSteps; j++) {
-						relax(chem, relDiff, bl);
-					}
-				}
-				// break the V-cycles if remaining error is dominated
-				// by local truncation error (see p. 884 of Numerical Recipes)
-				boolean breakVCycle = true;
-				for (int i = 0; i < chem.length; i++) {
-					// compute the residue for this solute species
-					lop(itemp, chem[i], relDiff, bl);
-					MultigridUtils.subtractTo(itemp._mg[_g],
-							chem[i].rhs._mg[_g]);
-					float res = MultigridUtils.computeNorm(itemp._mg[_g]);
-					// confirm that criterium is met for each solute
-					if (v > 0) {
-						System.out.println("grid " + _g + "; v " + v + "; "
-								+ chem[i]._name + " res " + res + "; truncerr "
-								+ chem[i].truncationError);
-					}
-					// confirm that criterium is met for each solute
-					if (res > chem[i].truncationError) {
-						breakVCycle = false;
-						break;
-					}
-				}
-				if (breakVCycle)
-					break;
-			}
-		}
-	}
-
-	/**
-	 * Find solution for the coarsest grid. Sets the current grid to coarsest,
-	 * solutes values to 0 and relaxes NSOLVE times.
-	 */
-	private static void solveCoarsest(SoluteSpecies[] c, RelativeDiffusion d,
-			BoundaryLayer bl) {
-		_g = COARSEST;
-		float err = 0;
-		// reset coarsest grid to bulk concentration
-		for (int i = 0; i < c.length; i++) {
-			c[i].setValueCoarsestToBulk();
+			if (outer == _order - 1)
+				converged = solveFinest(chem, relDiff, bl, itemp, itau);
+			else
+				converged = vCycles(chem, relDiff, bl, itemp, itau, outer);
 		}
-		// relax NSOLVE times
-		for (int j = 0; j < NSOLVE; j++) {
-			relax(c, d, bl);
+		_statistics.addSolution(converged);
+		for (int g = top + 1; g < _order; g++) {
+			_g = g;
+			for (int i = 0; i < chem.length; i++)
+				MultigridUtils.interpolateBoundaryLayer(chem[i]._mg[_g],
+						chem[i]._mg[_g - 1], bl._mg[_g], _boundaryConditions);
 		}
+		return converged;
 	}
 
 	/**
-	 * Make sure all solute concentration values for the present are not lower
-	 * than 0
+	 * Solve the levels of the solutes (see SoluteDependencies) one after the
+	 * other by nested iteration, each with the solutes of lower levels fixed
+	 * at their solution. The independent blocks of solutes of a level are
+	 * relaxed concurrently. Each block is solved at the grid order of its
+	 * solute with the finest grid (see SoluteSpecies.setGridCoarsening), the
+	 * blocks of a level at coarser grids first.
 	 * 
-	 * @param c
-	 *            array of the solute species in the system
+	 * @param chem
+	 * @param dependencies
+	 *            dependencies between the solutes in chem
+	 * @param relDiff
 	 * @param bl
-	 *            the boundary layer
+	 * @param itemp
+	 *            temporary variable
+	 * @param itau
+	 *            temporary variable
+	 * @throws MultigridSystemNotSetException
 	 */
-	private static void truncatePresentSoluteValuesToZero(SoluteSpecies[] c,
-			BoundaryLayer bl) {
-		int n = c[0]._mg[_g].length - 2;
-		int m = c[0]._mg[_g][0].length - 2;
-		int l = c[0]._mg[_g][0][0].length - 2;
-		float v;
-		for (_i = 1; _i <= n; _i++) {
-			for (_j = 1; _j <= m; _j++) {
-				for (_k = 1; _k <= l; _k++) {
-					for (int chem = 0; chem < c.length; chem++) {
-						if (bl._mg[_g][_i][_j][_k] < BLTHRESH) {
-							v = c[chem]._mg[_g][_i][_j][_k];
-							c[chem]._mg[_g][_i][_j][_k] = (v < 0 ? 0 : v);
-						}
-					}
-				}
+	private static void solveByLevels(SoluteSpecies[] chem,
+			SoluteDependencies dependencies, RelativeDiffusion relDiff,
+			BoundaryLayer bl, MultigridVariable itemp, MultigridVariable itau)
+			throws MultigridSystemNotSetException {
+		for (int l = 0; l < dependencies.getNumberOfLevels(); l++) {
+			SoluteSpecies[] level = dependencies.getSolutes(l);
+			SoluteSpecies[][] blocks = dependencies.getBlocks(l);
+			// solutes alone in their blocks whose rates do not depend on
+			// themselves are linear once the lower levels are fixed
+			if (_directLinearSolver) {
+				SoluteSpecies[] remaining = solveLinearSolutes(level, relDiff,
+						bl);
+				if (remaining != level)
+					blocks = removeSolved(blocks, remaining);
+			}
+			for (int top = COARSEST; top < _order; top++) {
+				SoluteSpecies[][] b = blocksSolvedAt(blocks, top);
+				if (b.length == 0)
+					continue;
+				SoluteSpecies[] s = solutesOf(b);
+				prepareWorkspace(s).setBlocks(b);
+				solveNested(s, relDiff, bl, itemp, itau, top);
+				// the solutes of higher levels read the solution at all grid
+				// orders
+				for (int i = 0; i < s.length; i++)
+					s[i].updateMultigridCopies();
 			}
 		}
+		prepareWorkspace(chem);
 	}
 
 	/**
-	 * Perform relaxation for concentration of cehmical species at the current
-	 * grid order
-	 * 
-	 * @param c
-	 * @param d
-	 * @param bl
+	 * @param blocks
+	 *            blocks of solutes
+	 * @param g
+	 *            grid order
+	 * @return the blocks whose solute with the finest grid is solved at grid
+	 *         order g
 	 */
-	private static void relax(SoluteSpecies[] c, RelativeDiffusion d,
-			BoundaryLayer bl) {
-		float r, dr;
-		int n = d._mg[_g].length - 2;
-		int m = d._mg[_g][0].length - 2;
-		int l = d._mg[_g][0][0].length - 2;
-		float h = _referenceSystemSide / ((float) n - 1);
-		float h2i = 0.5f / (h * h);
-		// red-black relaxation
-		// iterate through system
-		// isw, jsw and ksw alternate between values 1 and 2
-		int isw = 1;
-		int jsw, ksw;
-		for (int pass = 1; pass <= 2; pass++, isw = 3 - isw) {
-			jsw = isw;
-			for (_i = 1; _i <= n; _i++, jsw = 3 - jsw) {
-				ksw = jsw;
-				for (_j = 1; _j <= m; _j++, ksw = 3 - ksw) {
-					for (_k = ksw; _k <= l; _k += 2) {
-						for (int chem = 0; chem < c.length; chem++) {
-							if (bl._mg[_g][_i][_j][_k] < BLTHRESH) {
-								// Case: Inside boundary layer
-								// Equations must be solved here
-								float[][][] u = c[chem]._mg[_g];
-								//
-								c[chem]
-										.updateValuesForRateAndRateDerivative(_rDr);
-								r = _rDr[0];
-								dr = _rDr[1];
-								// compute diffusivity values
-								// and that of surrounding neighbors
-								float dc = c[chem].getDiffusivity();
-								_diff[0][1][1] = dc * d._mg[_g][_i - 1][_j][_k];
-								_diff[2][1][1] = dc * d._mg[_g][_i + 1][_j][_k];
-								_diff[1][0][1] = dc * d._mg[_g][_i][_j - 1][_k];
-								_diff[1][2][1] = dc * d._mg[_g][_i][_j + 1][_k];
-								_diff[1][1][0] = dc * d._mg[_g][_i][_j][_k - 1];
-								_diff[1][1][2] = dc * d._mg[_g][_i][_j][_k + 1];
-								_diff[1][1][1] = dc * d._mg[_g][_i][_j][_k];
-								// compute L operator
-								float lop = ((_diff[2][1][1] + _diff[1][1][1])
-										* (u[_i + 1][_j][_k] - u[_i][_j][_k])
-										+ (_diff[0][1][1] + _diff[1][1][1])
-										* (u[_i - 1][_j][_k] - u[_i][_j][_k])
-										+ (_diff[1][2][1] + _diff[1][1][1])
-										* (u[_i][_j + 1][_k] - u[_i][_j][_k])
-										+ (_diff[1][0][1] + _diff[1][1][1])
-										* (u[_i][_j - 1][_k] - u[_i][_j][_k])
-										+ (_diff[1][1][2] + _diff[1][1][1])
-										* (u[_i][_j][_k + 1] - u[_i][_j][_k]) + (_diff[1][1][0] + _diff[1][1][1])
-										* (u[_i][_j][_k - 1] - u[_i][_j][_k]))
-										* h2i + r;
-								// compute derivative of L operator
-								float dlop = -h2i
-										* (6.0f * _diff[1][1][1]
-												+ _diff[2][1][1]
-												+ _diff[0][1][1]
-												+ _diff[1][2][1]
-												+ _diff[1][0][1]
-												+ _diff[1][1][2] + _diff[1][1][0])
-										+ dr;
-								// compute residual
-								float res = (lop - c[chem].rhs._mg[_g][_i][_j][_k])
-										/ dlop;
-								// update concentration (test for NaN)
-								if (res != res) {
-									System.out.println("---------------------");
-									System.out.println("Multigrid problem:");
-									System.out.println("_g = " + _g);
-									System.out.println("_i = " + _i);
-									System.out.println("_j = " + _j);
-									System.out.println("_k = " + _k);
-									System.out.println("r = " + r);
-									System.out.println("dr = " + dr);
-									System.out.println("concentration rhs = "
-											+ c[chem].rhs._mg[_g][_i][_j][_k]);
-									System.out.println("dlop = " + dlop);
-									System.out
-											.println("rhs/dlop= "
-													+ (c[chem].rhs._mg[_g][_i][_j][_k] / dlop));
-									System.out.println("solute species:");
-									for (int s = 0; s < c.length; s++) {
-										System.out.println(c[s]._name
-												+ " (local) = "
-												+ c[s]._mg[_g][_i][_j][_k]);
-										System.out.println(c[s]._name
-												+ " (bulk) = "
-												+ c[s].getBulkConcentration());
-									}
-									// particulates:
-									System.out.println("particulate species:");
-									Collection ps = Model.model()
-											.getParticulateSpecies();
-									for (Iterator iter = ps.iterator(); iter
-											.hasNext();) {
-										ParticulateSpecies p = (ParticulateSpecies) iter
-												.next();
-										System.out.println(p._name + " = "
-												+ p._mg[_g][_i][_j][_k]);
-									}
-									System.out.println("---------------------");
-									String str = "NaN generated in multigrid solver "
-											+ "while computing rate for "
-											+ c[chem]._name;
-									throw new ModelRuntimeException(str);
-								}
-								u[_i][_j][_k] -= res;
-								// if negative concentrations, put 0 value
-								u[_i][_j][_k] = (u[_i][_j][_k] < 0 ? 0
-										: u[_i][_j][_k]);
-							}
-						}
-					}
-				}
-			}
-			// refresh the padding elements to enforce
-			// boundary conditions for all solutes
-			for (int i = 0; i < c.length; i++)
-				_boundaryConditions.refreshBoundaryConditions(c[i]._mg[_g]);
+	private static SoluteSpecies[][] blocksSolvedAt(SoluteSpecies[][] blocks,
+			int g) {
+		SoluteSpecies[][] b = new SoluteSpecies[blocks.length][];
+		int n = 0;
+		for (int i = 0; i < blocks.length; i++) {
+			int top = COARSEST;
+			for (int j = 0; j < blocks[i].length; j++)
+				top = Math.max(top, blocks[i][j].getFinestGridOrder());
+			if (top == g)
+				b[n++] = blocks[i];
 		}
+		SoluteSpecies[][] r = new SoluteSpecies[n][];
+		System.arraycopy(b, 0, r, 0, n);
+		return r;
 	}
 
 	/**
-	 * Compute the L-operator
-	 * 
-	 * @param res
-	 * @param c
-	 * @param d
-	 * @param bl
-	 *            boundary layer definition
+	 * @param blocks
+	 *            blocks of solutes
+	 * @return the solutes of the blocks, ordered by block
 	 */
-	private static void lop(MultigridVariable res, SoluteSpecies c,
-			RelativeDiffusion d, BoundaryLayer bl) {
-		int n = d._mg[_g].length - 2;
-		int m = d._mg[_g][0].length - 2;
-		int l_ = d._mg[_g][0][0].length - 2;
-		float h = _referenceSystemSide / ((float) n - 1);
-		float h2i = 0.5f / (h * h);
-		float lop; // temporary variable for L-operator
-		// iterate through system
-		for (_k = 1; _k <= l_; _k++) {
-			for (_j = 1; _j <= m; _j++) {
-				for (_i = 1; _i <= n; _i++)
-					// compute lop only inside boundary layer
-					if (bl._mg[_g][_i][_j][_k] < BLTHRESH) {
-						// for simplification and easier access to
-						// the current solute data:
-						float[][][] u = c._mg[_g];
-						// current rate for this solute
-						float r = c.getRate();
-						// compute diffusivity values
-						// and that of surrounding neighbors
-						float dc = c.getDiffusivity();
-						_diff[0][1][1] = dc * d._mg[_g][_i - 1][_j][_k];
-						_diff[2][1][1] = dc * d._mg[_g][_i + 1][_j][_k];
-						_diff[1][0][1] = dc * d._mg[_g][_i][_j - 1][_k];
-						_diff[1][2][1] = dc * d._mg[_g][_i][_j + 1][_k];
-						_diff[1][1][0] = dc * d._mg[_g][_i][_j][_k - 1];
-						_diff[1][1][2] = dc * d._mg[_g][_i][_j][_k + 1];
-						_diff[1][1][1] = dc * d._mg[_g][_i][_j][_k];
-						// compute L operator
-						lop = ((_diff[2][1][1] + _diff[1][1][1])
-								* (u[_i + 1][_j][_k] - u[_i][_j][_k])
-								+ (_diff[0][1][1] + _diff[1][1][1])
-								* (u[_i - 1][_j][_k] - u[_i][_j][_k])
-								+ (_diff[1][2][1] + _diff[1][1][1])
-								* (u[_i][_j + 1][_k] - u[_i][_j][_k])
-								+ (_diff[1][0][1] + _diff[1][1][1])
-								* (u[_i][_j - 1][_k] - u[_i][_j][_k])
-								+ (_diff[1][1][2] + _diff[1][1][1])
-								* (u[_i][_j][_k + 1] - u[_i][_j][_k]) + (_diff[1][1][0] + _diff[1][1][1])
-								* (u[_i][_j][_k - 1] - u[_i][_j][_k]))
-								* h2i + r;
-						// update concentration (test for NaN)
-						if (lop != lop) {
-							System.out.println("---------------------");
-							System.out
-									.println("Multigrid problem (computing lop):");
-							System.out.println("_g = " + _g);
-							System.out.println("_i = " + _i);
-							System.out.println("_j = " + _j);
-							System.out.println("_k = " + _k);
-							System.out.println("r = " + r);
-							System.out.println("solute species:");
-							Collection ss = Model.model().getSoluteSpecies();
-							for (Iterator iter = ss.iterator(); iter.hasNext();) {
-								SoluteSpecies s = (SoluteSpecies) iter.next();
-								System.out.println(s._name + " = "
-										+ s._mg[_g][_i][_j][_k]);
-							}
-							// particulates:
-							System.out.println("particulate species:");
-							Collection ps = Model.model()
-									.getParticulateSpecies();
-							for (Iterator iter = ps.iterator(); iter.hasNext();) {
-								ParticulateSpecies p = (ParticulateSpecies) iter
-										.next();
-								System.out.println(p._name + " = "
-										+ p._mg[_g][_i][_j][_k]);
-							}
-							System.out.println("---------------------");
-							String str = "NaN generated in multigrid solver "
-									+ "while computing rate for " + c._name;
-							throw new ModelRuntimeException(str);
-						}
-						res._mg[_g][_i][_j][_k] = lop;
-					}
-			}
-		}
-		_boundaryConditions.refreshBoundaryConditions(res._mg[_g]);
+	private static SoluteSpecies[] solutesOf(SoluteSpecies[][] blocks) {
+		int n = 0;
+		for (int i = 0; i < blocks.length; i++)
+			n += blocks[i].length;
+		SoluteSpecies[] s = new SoluteSpecies[n];
+		n = 0;
+		for (int i = 0; i < blocks.length; i++)
+			for (int j = 0; j < blocks[i].length; j++)
+				s[n++] = blocks[i][j];
+		return s;
 	}
 
 	/**
-	 * Solves the reaction-diffusion equation by relaxation. Slower alternative
-	 * to using method solve. NOTE: this method is to be used for testing
-	 * purposes.
+	 * @param blocks
+	 *            blocks of solutes
+	 * @param remaining
+	 *            solutes not yet solved
+	 * @return the blocks with solutes not yet solved
+	 */
+	private static SoluteSpecies[][] removeSolved(SoluteSpecies[][] blocks,
+			SoluteSpecies[] remaining) {
+		SoluteSpecies[][] b = new SoluteSpecies[blocks.length][];
+		int n = 0;
+		for (int i = 0; i < blocks.length; i++)
+			for (int j = 0; j < remaining.length; j++)
+				if (blocks[i][0] == remaining[j]) {
+					b[n++] = blocks[i];
+					break;
+				}
+		SoluteSpecies[][] r = new SoluteSpecies[n][];
+		System.arraycopy(b, 0, r, 0, n);
+		return r;
+	}
+
+	/**
+	 * Reuse the solution of the previous call to the solvers if the problem
+	 * did not change materially since the last full solution: the boundary
+	 * layer is the same and the bulk concentrations and particulate species
+	 * changed by at most the skip-solve tolerance (see
+	 * setSkipSolveTolerance). The previous solution is corrected by a
+	 * relaxation sweep at the finest grid and kept if the residual of every
+	 * solute is below the tolerance relative to the norm of its rates, which
+	 * also catches changes of the rate constants.
 	 * 
 	 * @param chem
 	 * @param bac
+	 * @param relDiff
+	 * @param bl
+	 * @param w
+	 *            workspace of the solvers
+	 * @return true if the previous solution was reused
 	 */
-	public static void solve(SoluteSpecies[] chem,
-			ParticulateSpecies[] bac, BoundaryLayer bl)
-			throws MultigridSystemNotSetException {
+	private static boolean reusePreviousSolution(SoluteSpecies[] chem,
+			ParticulateSpecies[] bac, RelativeDiffusion relDiff,
+			BoundaryLayer bl, SolverWorkspace w) {
+		for (int i = 0; i < chem.length; i++)
+			if (!chem[i].hasSolution)
+				return false;
 		_g = _order - 1;
-		// create a relative diffusion data
-		RelativeDiffusion relDiff = new RelativeDiffusion();
-		bl.setBoundaryLayer(bac, _boundaryConditions);
-		relDiff.computeValues(bac, bl, _boundaryConditions);
-		// Initialize concentration of all solutes to value of
-		// bulk concentration
+		if (!bl.getChanges(_g).isEmpty()
+				|| !w.inputs.isCloseTo(chem, bac, _skipTolerance))
+			return false;
 		for (int i = 0; i < chem.length; i++) {
-			chem[i].resetMultigridCopies();
+			chem[i].setMultigridCopiesFromPreviousSolution(bl);
+			MultigridUtils.setValues(chem[i].rhs._mg[_g], 0.0f);
 		}
-		// iterate for a given number of iterations
-		for (int i = 0; i < 5000; i++)
-			relax(chem, relDiff, bl);
+		relax(chem, relDiff, bl);
+		for (int i = 0; i < chem.length; i++) {
+			float res = computeResidualNorm(w.itemp, chem[i], relDiff, bl);
+			// negated comparison to fail on NaN as well
+			if (!(res <= _skipTolerance * computeRateNorm(chem[i], bl)))
+				return false;
+		}
+		return true;
 	}
 
 	/**
-	 * Return values in finest grid as a matrix in a formatted string
+	 * Record the inputs of a full solution, to be compared with those of the
+	 * next calls to the solvers (only if solutions may be reused)
 	 * 
-	 * @return string output
+	 * @param chem
+	 * @param bac
+	 * @param w
+	 *            workspace of the solvers
 	 */
-	public String finestGridToString() {
-		return gridToString(_order - 1);
+	private static void recordSolverInputs(SoluteSpecies[] chem,
+			ParticulateSpecies[] bac, SolverWorkspace w) {
+		if (_skipTolerance > 0)
+			w.inputs.record(chem, bac);
 	}
 
 	/**
-	 * Return values in finest grid as a array of matrices in formatted strings
+	 * Record the final state of the solutes in the statistics of the present
+	 * call to the solvers and notify the solver listeners. The present grid
+	 * order must be the finest.
 	 * 
-	 * @return array of string output
+	 * @param chem
+	 * @param relDiff
+	 * @param bl
+	 * @param itemp
+	 *            temporary variable
+	 * @param warmStart
+	 *            true if the solution started from the previous solution
+	 * @param reused
+	 *            true if the previous solution was reused
+	 */
+	private static void finishStatistics(SoluteSpecies[] chem,
+			RelativeDiffusion relDiff, BoundaryLayer bl,
+			MultigridVariable itemp, boolean warmStart, boolean reused) {
+		for (int i = 0; i < chem.length; i++) {
+			float res = computeResidualNorm(itemp, chem[i], relDiff, bl);
+			// the relaxation solver does not estimate truncation errors
+			float truncerr = (_statistics.getSolver() == MULTIGRID
+					? chem[i].truncationError : Float.NaN);
+			_statistics.setSolute(i, res, truncerr, computeRateNorm(chem[i],
+					bl));
+		}
+		_statistics.finish(bl, warmStart, reused);
+		if (_solverListeners != null)
+			for (Iterator iter = _solverListeners.iterator(); iter.hasNext();)
+				((SolverListener) iter.next()).solved(_statistics);
+	}
+
+	/**
+	 * Solve on the finest grid by V-cycles, starting from the solution of
+	 * the previous call to the solver instead of the nested iteration. Fails
+	 * if some solute has no previous solution or if the residual of some
+	 * solute grows during the V-cycles (e.g. after a large change of the
+	 * biofilm), in which case the solver must start over from the bulk
+	 * concentrations.
+	 * 
+	 * @param chem
+	 * @param relDiff
+	 * @param bl
+	 * @param itemp
+	 *            temporary variable
+	 * @param itau
+	 *            temporary variable
+	 * @return true if a solution was found
+	 */
+	private static boolean solveFromPreviousSolution(SoluteSpecies[] chem,
+			RelativeDiffusion relDiff, BoundaryLayer bl,
+			MultigridVariable itemp, MultigridVariable itau) {
+		for (int i = 0; i < chem.length; i++)
+			if (!chem[i].hasSolution)
+				return false;
+		_g = _order - 1;
+		float[] res = _workspace.getSoluteValues();
+		for (int i = 0; i < chem.length; i++) {
+			chem[i].setMultigridCopiesFromPreviousSolution(bl);
+			MultigridUtils.setValues(chem[i].rhs._mg[_g], 0.0f);
+			res[i] = computeResidualNorm(itemp, chem[i], relDiff, bl);
+		}
+		_statistics.addSolution(solveFinest(chem, relDiff, bl, itemp, itau));
+		for (int i = 0; i < chem.length; i++) {
+			// negated comparison to fail on NaN as well
+			if (!(computeResidualNorm(itemp, chem[i], relDiff, bl) <= res[i])) {
+				_statistics.setWarmStartDiverged(chem[i]);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Solve at the finest grid, the present grid order, starting from the
+	 * present concentrations: by Newton-Krylov if the solver is NEWTONKRYLOV,
+	 * falling back to V-cycles if it fails (see
+	 * SolverStatistics.getNewtonFailures), or else by V-cycles.
+	 * 
+	 * @param chem
+	 * @param relDiff
+	 * @param bl
+	 * @param itemp
+	 *            temporary variable
+	 * @param itau
+	 *            temporary variable
+	 * @return true if the solution converged
+	 */
+	private static boolean solveFinest(SoluteSpecies[] chem,
+			RelativeDiffusion relDiff, BoundaryLayer bl,
+			MultigridVariable itemp, MultigridVariable itau) {
+		if (_solver == NEWTONKRYLOV) {
+			NewtonKrylov nk = _workspace.getNewtonKrylov();
+			boolean converged = nk.solve(chem, _workspace.getKernels(),
+					_workspace.getCache(), relDiff, bl);
+			_statistics.addNewtonIterations(nk.getNewtonIterations(), nk
+					.getKrylovIterations(), converged);
+			if (converged)
+				return true;
+			// not converged, continue with V-cycles
+		}
+		return vCycles(chem, relDiff, bl, itemp, itau, _order - 1);
+	}
+
+	/**
+	 * Perform V-cycles down from grid order outer until the solution of
+	 * every solute converges or the maximum number of V-cycles is reached.
+	 * The present grid order must be outer.
+	 * 
+	 * @param chem
+	 * @param relDiff
+	 * @param bl
+	 * @param itemp
+	 *            temporary variable
+	 * @param itau
+	 *            temporary variable
+	 * @param outer
+	 *            grid order where V-cycles start
+	 * @return true if the solution converged before the maximum number of
+	 *         V-cycles
+	 */
+	private static boolean vCycles(SoluteSpecies[] chem,
+			RelativeDiffusion relDiff, BoundaryLayer bl,
+			MultigridVariable itemp, MultigridVariable itau, int outer) {
+		for (int v = 0; v < nVCycles; v++) {
+			// downward stroke of V
+			while (_g > 0) {
+				// pre-smoothing
+				for (int j = 0; j < nPreSteps; j++) {
+					relax(chem, relDiff, bl);
+				}
+				// restrict uh to uH for all solutes before computing tau,
+				// as the rates of each solute depend on the others.
+				// Restriction covers the points outside the boundary
+				// layer, which are the Dirichlet values of the coarser
+				// grid
+				for (int j = 0; j < chem.length; j++) {
+					MultigridUtils.restrict(chem[j]._mg[_g],
+							chem[j]._mg[_g - 1], _boundaryConditions);
+				}
+				for (int j = 0; j < chem.length; j++) {
+					// temporary values outside the boundary layer are
+					// kept at 0
+					MultigridUtils.setValues(itemp._mg[_g], 0.0f);
+					MultigridUtils.setValues(itemp._mg[_g - 1], 0.0f);
+					MultigridUtils.setValues(itau._mg[_g - 1], 0.0f);
+					//
+					lop(itemp, chem[j], relDiff, bl);
+					//
+					MultigridUtils.restrictBoundaryLayer(itemp._mg[_g],
+							itemp._mg[_g - 1], bl._mg[_g - 1],
+							_boundaryConditions);
+					// reduce grid value _g temporarily
+					_g--;
+					lop(itau, chem[j], relDiff, bl);
+					MultigridUtils.subtractTo(itau._mg[_g], itemp._mg[_g]);
+					// sum tau to rhs of _g - 1
+					MultigridUtils.setValues(chem[j].rhs._mg[_g], 0.0f);
+					MultigridUtils.restrictBoundaryLayer(
+							chem[j].rhs._mg[_g + 1], chem[j].rhs._mg[_g],
+							bl._mg[_g], _boundaryConditions);
+					MultigridUtils.addTo(chem[j].rhs._mg[_g], itau._mg[_g]);
+					// compute the truncation error for this V-cycle
+					// for all chemicals
+					if (_g + 1 == outer)
+						chem[j].truncationError = ALPHA
+								* MultigridUtils.computeNorm(itau._mg[_g]);
+					// put _g value back for remaining solutes
+					_g++;
+				}
+				// reduce grid value _g for good
+				_g--;
+			}
+			// bottom of V
+			solveCoarsest(chem, relDiff, bl);
+			// upward stroke of V
+			while (_g < outer) {
+				_g++;
+				for (int j = 0; j < chem.length; j++) {
+					// coarse grid correction uH - R(uh), which is 0
+					// outside the boundary layer
+					MultigridUtils.restrict(chem[j]._mg[_g],
+							itemp._mg[_g - 1], _boundaryConditions);
+					MultigridUtils.subtractTo(chem[j]._mg[_g - 1],
+							itemp._mg[_g - 1]);
+					MultigridUtils.setValues(itau._mg[_g], 0.0f);
+					MultigridUtils.interpolateBoundaryLayer(itau._mg[_g],
+							chem[j]._mg[_g - 1], bl._mg[_g], relDiff
+									.getFaces(_g), _boundaryConditions);
+					// damp the correction (see setCorrectionDamping)
+					if (_correctionDamping != 1)
+						MultigridUtils.multiplyBy(itau._mg[_g],
+								_correctionDamping);
+					MultigridUtils.addTo(chem[j]._mg[_g], itau._mg[_g]);
+				}
+				truncatePresentSoluteValuesToZero(chem, bl);
+				// post-smoothing
+				for (int j = 0; j < nPosSteps; j++) {
+					relax(chem, relDiff, bl);
+				}
+			}
+			// break the V-cycles if remaining error is dominated
+			// by local truncation error (see p. 884 of Numerical Recipes)
+			// and is small compared to the reaction rates
+			boolean breakVCycle = true;
+			for (int i = 0; i < chem.length; i++) {
+				float res = computeResidualNorm(itemp, chem[i], relDiff, bl);
+				// confirm that criterium is met for each solute
+				if (res > chem[i].truncationError
+						|| res > chem[i].getSolverTolerance()
+								* computeRateNorm(chem[i], bl)) {
+					breakVCycle = false;
+					break;
+				}
+			}
+			if (breakVCycle) {
+				_statistics.addVCycles(outer, v + 1);
+				return true;
+			}
+		}
+		_statistics.addVCycles(outer, nVCycles);
+		return false;
+	}
+
+	/**
+	 * Compute the norm of the residual of a solute in the present grid order
+	 * 
+	 * @param itemp
+	 *            temporary variable, overwritten with the residual
+	 * @param c
+	 * @param relDiff
+	 * @param bl
+	 * @return the norm of the residual
+	 */
+	private static float computeResidualNorm(MultigridVariable itemp,
+			SoluteSpecies c, RelativeDiffusion relDiff, BoundaryLayer bl) {
+		MultigridUtils.setValues(itemp._mg[_g], 0.0f);
+		lop(itemp, c, relDiff, bl);
+		MultigridUtils.subtractTo(itemp._mg[_g], c.rhs._mg[_g]);
+		return MultigridUtils.computeNorm(itemp._mg[_g]);
+	}
+
+	/**
+	 * Find solution for the coarsest grid. Sets the current grid to coarsest,
+	 * solutes values to bulk concentration and solves directly by Newton's
+	 * method (see CoarsestGridSolver). If the direct solver fails, starts
+	 * over from the bulk concentrations and relaxes NSOLVE times.
+	 */
+	private static void solveCoarsest(SoluteSpecies[] c, RelativeDiffusion d,
+			BoundaryLayer bl) {
+		_g = COARSEST;
+		// reset coarsest grid to bulk concentration
+		for (int i = 0; i < c.length; i++) {
+			c[i].setValueCoarsestToBulk();
+		}
+		// if the direct solver fails, relax a few times to get closer to the
+		// solution and try again, up to NSOLVE relaxations
+		for (int j = 0; j < NSOLVE; j += NRECOVER) {
+			long start = System.nanoTime();
+			boolean solved = _workspace.coarsestGridSolver.solve(c,
+					_workspace.getKernels(), _workspace.getCache(), d, bl);
+			_statistics.addTime(COARSEST, System.nanoTime() - start);
+			if (solved)
+				return;
+			for (int k = 0; k < NRECOVER; k++) {
+				relax(c, d, bl);
+			}
+		}
+	}
+
+	/**
+	 * Make sure all solute concentration values for the present are not lower
+	 * than 0
+	 * 
+	 * @param c
+	 *            array of the solute species in the system
+	 * @param bl
+	 *            the boundary layer
+	 */
+	private static void truncatePresentSoluteValuesToZero(SoluteSpecies[] c,
+			BoundaryLayer bl) {
+		int[] runs = bl.getActiveVoxels(_g).getRuns();
+		float v;
+		for (int chem = 0; chem < c.length; chem++) {
+			PaddedMatrix um = c[chem]._mg[_g];
+			float[] u = um.data;
+			for (int q = 0; q < runs.length; q += ActiveVoxels.RUN) {
+				for (int p = runs[q]; p <= runs[q + 1]; p++) {
+					v = u[p];
+					u[p] = (v < 0 ? 0 : v);
+				}
+			}
+			_boundaryConditions.refreshBoundaryConditions(um);
+		}
+	}
+
+	/**
+	 * Compile the rate kernels of the solutes, so that they reflect the
+	 * present values of the rate constants
+	 * 
+	 * @param c
+	 *            solute species
+	 */
+	private static void compileRateKernels(SoluteSpecies[] c) {
+		for (int i = 0; i < c.length; i++)
+			c[i].compileRateKernel();
+	}
+
+	/**
+	 * Compute the rate of the solute of a kernel at location (g, p), with
+	 * the factor values shared through a cache for that kernel alone
+	 * 
+	 * @param kernel
+	 * @param cache
+	 * @param g
+	 * @param p
+	 * @return the rate
+	 */
+	private static float rate(RateKernel kernel, FactorCache cache, int g,
+			int p) {
+		if (cache.isEmpty())
+			return kernel.getRate(g, p);
+		cache.moveTo();
+		return cache.getRate(0, g, p);
+	}
+
+	/**
+	 * Compute the norm of the reaction rates of a solute inside the boundary
+	 * layer at the current grid order
+	 * 
+	 * @param c
+	 *            solute species
+	 * @param bl
+	 *            boundary layer definition
+	 * @return the norm of the rates of c
+	 */
+	private static float computeRateNorm(SoluteSpecies c, BoundaryLayer bl) {
+		PaddedMatrix b = bl._mg[_g];
+		int[] runs = bl.getActiveVoxels(_g).getRuns();
+		RateKernel kernel = c.getRateKernel();
+		FactorCache cache = _workspace.getCache(c);
+		float norm = 0;
+		for (int q = 0; q < runs.length; q += ActiveVoxels.RUN) {
+			for (int p = runs[q]; p <= runs[q + 1]; p++)
+				norm += ExtraMath.sq(rate(kernel, cache, _g, p));
+		}
+		return (float) Math.sqrt(norm);
+	}
+
+	/**
+	 * Perform relaxation for concentration of cehmical species at the current
+	 * grid order, visiting only the nodes inside the boundary layer. The nodes
+	 * of each color of the red-black ordering are independent of each other,
+	 * so each color pass may be split into slabs of runs of nodes that are
+	 * relaxed concurrently (see setNumberOfThreads). The result is the same
+	 * as that of a serial sweep.
+	 * 
+	 * @param c
+	 * @param d
+	 * @param bl
+	 */
+	private static void relax(SoluteSpecies[] c, RelativeDiffusion d,
+			BoundaryLayer bl) {
+		long start = System.nanoTime();
+		ActiveVoxels active = bl.getActiveVoxels(_g);
+		// kernels and factor cache of the solutes (c are the solutes the
+		// workspace was prepared for)
+		RateKernel[] kernels = _workspace.getKernels();
+		FactorCache cache = _workspace.getCache();
+		boolean parallel = (_nThreads > 1)
+				&& (active.getNumberOfVoxels() >= PARALLELTHRESHOLD);
+		// independent blocks of solutes are relaxed concurrently where there
+		// are too few nodes to split them
+		boolean parallelBlocks = !parallel && (_nThreads > 1)
+				&& (_workspace.getNumberOfBlocks() > 1)
+				&& (active.getNumberOfVoxels() >= BLOCKTHRESHOLD);
+		// red-black relaxation
+		// isw alternates between values 1 and 2
+		int isw = 1;
+		for (int pass = 1; pass <= 2; pass++, isw = 3 - isw) {
+			int[] runs = active.getRuns(isw);
+			int n = runs.length / ActiveVoxels.RUN;
+			if (parallel)
+				relaxInParallel(c, kernels, cache, d, runs, n);
+			else if (parallelBlocks)
+				relaxBlocksInParallel(d, runs, n);
+			else
+				relaxSlab(c, kernels, cache, _workspace.getCoupling(),
+						_workspace.rDr, _workspace.jacobian,
+						_workspace.residuals, _workspace.diagonal, d, runs,
+						_g, 0, n);
+			// refresh the padding elements to enforce
+			// boundary conditions for all solutes
+			for (int i = 0; i < c.length; i++)
+				_boundaryConditions.refreshBoundaryConditions(c[i]._mg[_g]);
+		}
+		_statistics.addSweep(_g, System.nanoTime() - start);
+	}
+
+	/**
+	 * Relax the runs of nodes of one color at the current grid order,
+	 * splitting them in slabs relaxed concurrently by the threads of the
+	 * pool. The tasks of the slabs are reused for every pass.
+	 * 
+	 * @param c
+	 * @param kernels
+	 *            rate kernels of the solutes
+	 * @param cache
+	 *            factor cache for the kernels, or null
+	 * @param d
+	 * @param runs
+	 *            runs of the nodes of the color of the pass
+	 * @param n
+	 *            number of runs
+	 */
+	private static void relaxInParallel(SoluteSpecies[] c,
+			RateKernel[] kernels, FactorCache cache, RelativeDiffusion d,
+			int[] runs, int n) {
+		int slabs = 4 * _nThreads;
+		if ((_slabs == null) || (_slabs.length != slabs)) {
+			_slabs = new RelaxSlab[slabs];
+			for (int s = 0; s < slabs; s++)
+				_slabs[s] = new RelaxSlab();
+			_pass = new RelaxPass(_slabs);
+		}
+		for (int s = 0; s < slabs; s++) {
+			_slabs[s].reinitialize();
+			_slabs[s].set(c, kernels, cache, _workspace.getCoupling(), d,
+					runs, _g, (int) ((long) n * s / slabs),
+					(int) ((long) n * (s + 1) / slabs));
+		}
+		_pass.reinitialize();
+		getPool().invoke(_pass);
+	}
+
+	/**
+	 * Relax the runs of nodes of one color at the current grid order,
+	 * relaxing the independent blocks of solutes of the workspace
+	 * concurrently by the threads of the pool. The tasks of the blocks are
+	 * reused for every pass.
+	 * 
+	 * @param d
+	 * @param runs
+	 *            runs of the nodes of the color of the pass
+	 * @param n
+	 *            number of runs
+	 */
+	private static void relaxBlocksInParallel(RelativeDiffusion d,
+			int[] runs, int n) {
+		int blocks = _workspace.getNumberOfBlocks();
+		if ((_blockSlabs == null) || (_blockSlabs.length != blocks)) {
+			_blockSlabs = new RelaxSlab[blocks];
+			for (int b = 0; b < blocks; b++)
+				_blockSlabs[b] = new RelaxSlab();
+			_blockPass = new RelaxPass(_blockSlabs);
+		}
+		for (int b = 0; b < blocks; b++) {
+			_blockSlabs[b].reinitialize();
+			_blockSlabs[b].set(_workspace.getBlock(b), _workspace
+					.getBlockKernels(b), _workspace.getBlockCache(b),
+					_workspace.getBlockCoupling(b), d, runs, _g, 0, n);
+		}
+		_blockPass.reinitialize();
+		getPool().invoke(_blockPass);
+	}
+
+	/**
+	 * Relax the nodes of runs [from, to) of a list of runs of nodes of one
+	 * color at grid order g (see ActiveVoxels). Only reads and writes state
+	 * at the nodes of the runs and reads their neighbours, so slabs of runs
+	 * of the same color can be relaxed concurrently.
+	 * 
+	 * @param c
+	 * @param kernels
+	 *            rate kernels of the solutes
+	 * @param cache
+	 *            factor cache for the kernels (used only by the calling
+	 *            thread), or null
+	 * @param coupled
+	 *            coupled[i][j] true if the rate of solute i depends on j,
+	 *            or null (see SolverWorkspace.getCoupling)
+	 * @param rDr
+	 *            buffer for the rate and rate derivative (used only by the
+	 *            calling thread)
+	 * @param jacobian
+	 *            buffer for the Jacobian of the coupled relaxation, c.length
+	 *            by c.length (used only by the calling thread)
+	 * @param residuals
+	 *            buffer for the residuals of the coupled relaxation
+	 * @param diagonal
+	 *            buffer for the diagonal steps of the coupled relaxation
+	 * @param d
+	 * @param runs
+	 *            runs of the nodes of the color of the pass
+	 * @param g
+	 *            grid order
+	 * @param from
+	 *            first run of the slab
+	 * @param to
+	 *            run after the last run of the slab
+	 */
+	private static void relaxSlab(SoluteSpecies[] c, RateKernel[] kernels,
+			FactorCache cache, boolean[][] coupled, float[] rDr,
+			double[][] jacobian, double[] residuals, double[] diagonal,
+			RelativeDiffusion d, int[] runs, int g, int from, int to) {
+		if (_coupledRelaxation && (coupled != null)) {
+			relaxSlabCoupled(c, kernels, cache, coupled, rDr, jacobian,
+					residuals, diagonal, d, runs, g, from, to);
+			return;
+		}
+		float r, dr;
+		PaddedMatrix dg = d._mg[g];
+		int si = dg.si;
+		int sj = dg.sj;
+		Stencil stencil = d.getStencil(g);
+		float[] cf = stencil.coefficients;
+		int size = stencil.size;
+		boolean planar = dg.isPlanar();
+		// iterate through the runs of the slab, the nodes of a run are 2
+		// apart along k
+		for (int q = from * ActiveVoxels.RUN; q < to * ActiveVoxels.RUN;
+				q += ActiveVoxels.RUN) {
+			for (int p = runs[q]; p <= runs[q + 1]; p += 2) {
+				int pc = p * size;
+				if (cache != null)
+					cache.moveTo();
+				for (int chem = 0; chem < c.length; chem++) {
+					float[] u = c[chem]._mg[g].data;
+					//
+					if (cache == null)
+						kernels[chem].updateValuesForRateAndRateDerivative(
+								rDr, g, p);
+					else
+						cache.updateValuesForRateAndRateDerivative(chem,
+								rDr, g, p);
+					r = rDr[0];
+					dr = rDr[1];
+					float dc = c[chem].getDiffusivity();
+					// compute L operator
+					float lop = dc * diffusion(cf, pc, u, p, si, sj, planar)
+							+ r;
+					// compute derivative of L operator
+					float dlop = dr - dc * cf[pc + Stencil.DIAGONAL];
+					// compute residual
+					float res = (lop - c[chem].rhs._mg[g].data[p])
+							/ dlop;
+					// update concentration (test for NaN)
+					if (res != res) {
+						System.out.println("---------------------");
+						System.out.println("Multigrid problem:");
+						System.out.println("g = " + g);
+						System.out.println("i = " + dg.getI(p));
+						System.out.println("j = " + dg.getJ(p));
+						System.out.println("k = " + dg.getK(p));
+						System.out.println("r = " + r);
+						System.out.println("dr = " + dr);
+						System.out.println("concentration rhs = "
+								+ c[chem].rhs._mg[g].data[p]);
+						System.out.println("dlop = " + dlop);
+						System.out.println("rhs/dlop= "
+								+ (c[chem].rhs._mg[g].data[p] / dlop));
+						System.out.println("solute species:");
+						for (int s = 0; s < c.length; s++) {
+							System.out.println(c[s]._name
+									+ " (local) = "
+									+ c[s]._mg[g].data[p]);
+							System.out.println(c[s]._name
+									+ " (bulk) = "
+									+ c[s].getBulkConcentration());
+						}
+						// particulates:
+						System.out.println("particulate species:");
+						Collection ps = Model.model()
+								.getParticulateSpecies();
+						for (Iterator iter = ps.iterator(); iter
+								.hasNext();) {
+							ParticulateSpecies sp = (ParticulateSpecies) iter
+									.next();
+							System.out.println(sp._name + " = "
+									+ sp._mg[g].data[p]);
+						}
+						System.out.println("---------------------");
+						String str = "NaN generated in multigrid solver "
+								+ "while computing rate for "
+								+ c[chem]._name;
+						throw new ModelRuntimeException(str);
+					}
+					u[p] -= res;
+					// if negative concentrations, put 0 value
+					u[p] = (u[p] < 0 ? 0 : u[p]);
+					// factors depending on this solute must be
+					// evaluated again for the remaining solutes
+					if (cache != null)
+						cache.soluteChanged(chem);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Relax the nodes of runs [from, to) as relaxSlab, but updating all
+	 * solutes at a node together: the Newton step of the L-operators of the
+	 * solutes at the node is solved with the derivatives of the rate of each
+	 * solute in respect to the others (block Gauss-Seidel), so that strongly
+	 * coupled solutes converge together. The residuals of all solutes are
+	 * computed before any of them is updated, so the Jacobian has the
+	 * derivatives of the rate of each solute in respect to every other
+	 * solute its rate depends on (see SolverWorkspace.getCoupling).
+	 * 
+	 * @param c
+	 * @param kernels
+	 *            rate kernels of the solutes
+	 * @param cache
+	 *            factor cache for the kernels (used only by the calling
+	 *            thread), or null
+	 * @param coupled
+	 *            coupled[i][j] true if the rate of solute i depends on j
+	 * @param rDr
+	 *            buffer for the rate and rate derivative (used only by the
+	 *            calling thread)
+	 * @param jacobian
+	 *            buffer for the Jacobian of the L-operators at a node,
+	 *            c.length by c.length (used only by the calling thread)
+	 * @param res
+	 *            buffer for the residuals of the L-operators at a node
+	 * @param diagonal
+	 *            buffer for the steps with the diagonal alone
+	 * @param d
+	 * @param runs
+	 *            runs of the nodes of the color of the pass
+	 * @param g
+	 *            grid order
+	 * @param from
+	 *            first run of the slab
+	 * @param to
+	 *            run after the last run of the slab
+	 */
+	private static void relaxSlabCoupled(SoluteSpecies[] c,
+			RateKernel[] kernels, FactorCache cache, boolean[][] coupled,
+			float[] rDr, double[][] jacobian, double[] res,
+			double[] diagonal, RelativeDiffusion d, int[] runs, int g,
+			int from, int to) {
+		int n = c.length;
+		PaddedMatrix dg = d._mg[g];
+		int si = dg.si;
+		int sj = dg.sj;
+		Stencil stencil = d.getStencil(g);
+		float[] cf = stencil.coefficients;
+		int size = stencil.size;
+		boolean planar = dg.isPlanar();
+		for (int q = from * ActiveVoxels.RUN; q < to * ActiveVoxels.RUN;
+				q += ActiveVoxels.RUN) {
+			for (int p = runs[q]; p <= runs[q + 1]; p += 2) {
+				int pc = p * size;
+				if (cache != null)
+					cache.moveTo();
+				for (int i = 0; i < n; i++) {
+					if (cache == null)
+						kernels[i].updateValuesForRateAndRateDerivative(rDr,
+								g, p);
+					else
+						cache.updateValuesForRateAndRateDerivative(i, rDr, g,
+								p);
+					float dc = c[i].getDiffusivity();
+					float lop = dc
+							* diffusion(cf, pc, c[i]._mg[g].data, p, si, sj,
+									planar) + rDr[0];
+					res[i] = lop - c[i].rhs._mg[g].data[p];
+					jacobian[i][i] = rDr[1] - dc * cf[pc + Stencil.DIAGONAL];
+					for (int j = 0; j < n; j++) {
+						if (!coupled[i][j])
+							continue;
+						if (cache == null)
+							kernels[i].updateValuesForRateAndRateDerivative(
+									c[j], rDr, g, p);
+						else
+							cache.updateValuesForRateAndRateDerivative(i, c[j],
+									rDr, g, p);
+						jacobian[i][j] = rDr[1];
+					}
+				}
+				solveNewtonStep(jacobian, res, coupled, diagonal);
+				for (int i = 0; i < n; i++) {
+					float[] u = c[i]._mg[g].data;
+					// test for NaN
+					if (res[i] != res[i])
+						throw new ModelRuntimeException(
+								"NaN generated in multigrid solver while"
+										+ " relaxing " + c[i]._name
+										+ " at i = " + dg.getI(p) + ", j = "
+										+ dg.getJ(p) + ", k = " + dg.getK(p));
+					u[p] -= res[i];
+					// if negative concentrations, put 0 value
+					u[p] = (u[p] < 0 ? 0 : u[p]);
+				}
+				if (cache != null)
+					for (int i = 0; i < n; i++)
+						cache.soluteChanged(i);
+			}
+		}
+	}
+
+	/**
+	 * Solve the Newton step of the solutes at a node by Gaussian elimination
+	 * with partial pivoting. If the Jacobian is singular, each solute is
+	 * updated with its own derivative alone, as in relaxSlab.
+	 * 
+	 * @param jacobian
+	 *            Jacobian of the L-operators, only the diagonal and the
+	 *            coupled entries are set, overwritten
+	 * @param res
+	 *            residuals of the L-operators, overwritten with the step
+	 * @param coupled
+	 *            coupled[i][j] true if the rate of solute i depends on j
+	 * @param diagonal
+	 *            buffer for the steps with the diagonal alone
+	 */
+	private static void solveNewtonStep(double[][] jacobian, double[] res,
+			boolean[][] coupled, double[] diagonal) {
+		int n = coupled.length;
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				if ((i != j) && !coupled[i][j])
+					jacobian[i][j] = 0;
+		// the diagonal step, in case the elimination fails
+		for (int i = 0; i < n; i++)
+			diagonal[i] = res[i] / jacobian[i][i];
+		for (int k = 0; k < n; k++) {
+			int pivot = k;
+			for (int i = k + 1; i < n; i++)
+				if (Math.abs(jacobian[i][k]) > Math.abs(jacobian[pivot][k]))
+					pivot = i;
+			if (jacobian[pivot][k] == 0) {
+				System.arraycopy(diagonal, 0, res, 0, n);
+				return;
+			}
+			double[] row = jacobian[pivot];
+			jacobian[pivot] = jacobian[k];
+			jacobian[k] = row;
+			double t = res[pivot];
+			res[pivot] = res[k];
+			res[k] = t;
+			for (int i = k + 1; i < n; i++) {
+				double l = jacobian[i][k] / row[k];
+				if (l == 0)
+					continue;
+				for (int j = k; j < n; j++)
+					jacobian[i][j] -= l * row[j];
+				res[i] -= l * res[k];
+			}
+		}
+		for (int k = n - 1; k >= 0; k--) {
+			double s = res[k];
+			for (int j = k + 1; j < n; j++)
+				s -= jacobian[k][j] * res[j];
+			res[k] = s / jacobian[k][k];
+		}
+	}
+
+	/**
+	 * Compute the diffusion term of the L-operator of a solute at node p,
+	 * not yet multiplied by the diffusivity of the solute. For planar
+	 * matrices (2D) the neighbours along k are not visited.
+	 * 
+	 * @param cf
+	 *            stencil coefficients
+	 * @param pc
+	 *            position of the coefficients of node p
+	 * @param u
+	 *            values of the solute
+	 * @param p
+	 *            position of the node
+	 * @param si
+	 *            stride for index i
+	 * @param sj
+	 *            stride for index j
+	 * @param planar
+	 *            true for planar matrices
+	 * @return the diffusion term
+	 */
+	static float diffusion(float[] cf, int pc, float[] u, int p,
+			int si, int sj, boolean planar) {
+		float up = u[p];
+		float t = cf[pc + Stencil.XM] * (u[p - si] - up)
+				+ cf[pc + Stencil.XP] * (u[p + si] - up)
+				+ cf[pc + Stencil.YM] * (u[p - sj] - up)
+				+ cf[pc + Stencil.YP] * (u[p + sj] - up);
+		if (planar)
+			return t;
+		return t + cf[pc + Stencil.ZM] * (u[p - 1] - up)
+				+ cf[pc + Stencil.ZP] * (u[p + 1] - up);
+	}
+
+	/**
+	 * Fork-join task relaxing a slab of runs of nodes of one color pass. The
+	 * task keeps its own factor cache and rate and coupled relaxation
+	 * buffers, so that it can be reused for every pass without allocating
+	 * memory.
+	 */
+	private static class RelaxSlab extends RecursiveAction {
+		private SoluteSpecies[] _c;
+
+		private RateKernel[] _kernels;
+
+		private boolean[][] _coupled;
+
+		// the cache of the solvers and the copy used by this task
+		private FactorCache _shared;
+
+		private FactorCache _cache;
+
+		// rate and rate derivative
+		private final float[] _rDr = new float[2];
+
+		// Jacobian, residuals and diagonal steps of the coupled relaxation
+		private double[][] _jacobian = new double[0][0];
+
+		private double[] _res = new double[0];
+
+		private double[] _diagonal = new double[0];
+
+		private RelativeDiffusion _d;
+
+		private int[] _runs;
+
+		private int _level;
+
+		private int _from;
+
+		private int _to;
+
+		/**
+		 * Set the slab to relax in the next run of the task
+		 * 
+		 * @param c
+		 * @param kernels
+		 * @param cache
+		 *            factor cache of the solvers, or null
+		 * @param coupled
+		 *            coupled[i][j] true if the rate of solute i depends on
+		 *            j, or null
+		 * @param d
+		 * @param runs
+		 * @param g
+		 * @param from
+		 *            first run of the slab
+		 * @param to
+		 *            run after the last run of the slab
+		 */
+		void set(SoluteSpecies[] c, RateKernel[] kernels, FactorCache cache,
+				boolean[][] coupled, RelativeDiffusion d, int[] runs, int g,
+				int from, int to) {
+			if (cache != _shared) {
+				// a new set of kernels
+				_shared = cache;
+				_cache = (cache == null ? null : new FactorCache(cache));
+			}
+			if (_jacobian.length != c.length) {
+				_jacobian = new double[c.length][c.length];
+				_res = new double[c.length];
+				_diagonal = new double[c.length];
+			}
+			_c = c;
+			_kernels = kernels;
+			_coupled = coupled;
+			_d = d;
+			_runs = runs;
+			_level = g;
+			_from = from;
+			_to = to;
+		}
+
+		protected void compute() {
+			relaxSlab(_c, _kernels, _cache, _coupled, _rDr, _jacobian, _res,
+					_diagonal, _d, _runs, _level, _from, _to);
+		}
+	}
+
+	/**
+	 * Fork-join task running the tasks of the slabs of a color pass
+	 */
+	private static class RelaxPass extends RecursiveAction {
+		private final RelaxSlab[] _tasks;
+
+		RelaxPass(RelaxSlab[] tasks) {
+			_tasks = tasks;
+		}
+
+		protected void compute() {
+			invokeAll(_tasks);
+		}
+	}
+
+	/**
+	 * Compute the L-operator
+	 * 
+	 * @param res
+	 * @param c
+	 * @param d
+	 * @param bl
+	 *            boundary layer definition
+	 */
+	private static void lop(MultigridVariable res, SoluteSpecies c,
+			RelativeDiffusion d, BoundaryLayer bl) {
+		long start = System.nanoTime();
+		PaddedMatrix dg = d._mg[_g];
+		int[] runs = bl.getActiveVoxels(_g).getRuns();
+		// for simplification and easier access to
+		// the current solute data:
+		float[] u = c._mg[_g].data;
+		float[] out = res._mg[_g].data;
+		int si = dg.si;
+		int sj = dg.sj;
+		Stencil stencil = d.getStencil(_g);
+		float[] cf = stencil.coefficients;
+		int size = stencil.size;
+		boolean planar = dg.isPlanar();
+		float dc = c.getDiffusivity();
+		RateKernel kernel = c.getRateKernel();
+		FactorCache cache = _workspace.getCache(c);
+		float lop; // temporary variable for L-operator
+		// iterate through the nodes inside the boundary layer
+		for (int q = 0; q < runs.length; q += ActiveVoxels.RUN) {
+			for (int p = runs[q]; p <= runs[q + 1]; p++) {
+				int pc = p * size;
+				// current rate for this solute
+				float r = rate(kernel, cache, _g, p);
+				// compute L operator
+				lop = dc * diffusion(cf, pc, u, p, si, sj, planar) + r;
+				// update concentration (test for NaN)
+				if (lop != lop) {
+					System.out.println("---------------------");
+					System.out
+							.println("Multigrid problem (computing lop):");
+					System.out.println("_g = " + _g);
+					System.out.println("i = " + dg.getI(p));
+					System.out.println("j = " + dg.getJ(p));
+					System.out.println("k = " + dg.getK(p));
+					System.out.println("r = " + r);
+					System.out.println("solute species:");
+					Collection ss = Model.model().getSoluteSpecies();
+					for (Iterator iter = ss.iterator(); iter.hasNext();) {
+						SoluteSpecies s = (SoluteSpecies) iter.next();
+						System.out.println(s._name + " = "
+								+ s._mg[_g].data[p]);
+					}
+					// particulates:
+					System.out.println("particulate species:");
+					Collection ps = Model.model()
+							.getParticulateSpecies();
+					for (Iterator iter = ps.iterator(); iter.hasNext();) {
+						ParticulateSpecies sp = (ParticulateSpecies) iter
+								.next();
+						System.out.println(sp._name + " = "
+								+ sp._mg[_g].data[p]);
+					}
+					System.out.println("---------------------");
+					String str = "NaN generated in multigrid solver "
+							+ "while computing rate for " + c._name;
+					throw new ModelRuntimeException(str);
+				}
+				out[p] = lop;
+			}
+		}
+		_boundaryConditions.refreshBoundaryConditions(res._mg[_g]);
+		_statistics.addTime(_g, System.nanoTime() - start);
+	}
+
+	/**
+	 * Solves the reaction-diffusion equation by relaxation. Slower alternative
+	 * to using method solveMG. NOTE: this method is to be used for testing
+	 * purposes.
+	 * 
+	 * @param chem
+	 * @param bac
+	 */
+	public static void solve(SoluteSpecies[] chem,
+			ParticulateSpecies[] bac, BoundaryLayer bl)
+			throws MultigridSystemNotSetException {
+		_statistics.start(RELAXATION, _order, chem);
+		_g = _order - 1;
+		compileRateKernels(chem);
+		SolverWorkspace w = prepareWorkspace(chem);
+		// update the boundary layer and the relative diffusion where the
+		// biomass changed
+		RelativeDiffusion relDiff = w.getRelativeDiffusion(bl);
+		bl.updateBiomassOccupancy(bac);
+		bl.setBoundaryLayer(bac, _boundaryConditions);
+		relDiff.updateValues(bac, bl, _boundaryConditions);
+		bl.updateMultigridCopies();
+		relDiff.computeStencils(bl);
+		// Initialize concentration of all solutes to value of
+		// bulk concentration, or to the previous solution
+		boolean warm = _warmStart;
+		for (int i = 0; i < chem.length; i++)
+			warm &= chem[i].hasSolution;
+		for (int i = 0; i < chem.length; i++) {
+			if (warm)
+				chem[i].setMultigridCopiesFromPreviousSolution(bl);
+			else
+				chem[i].resetMultigridCopies();
+		}
+		// iterate for a given number of iterations
+		for (int i = 0; i < NRELAX; i++)
+			relax(chem, relDiff, bl);
+		for (int i = 0; i < chem.length; i++)
+			chem[i].hasSolution = true;
+		finishStatistics(chem, relDiff, bl, w.itemp, warm, false);
+	}
+
+	/**
+	 * Return values in finest grid as a matrix in a formatted string
+	 * 
+	 * @return string output
+	 */
+	public String finestGridToString() {
+		return gridToString(_order - 1);
+	}
+
+	/**
+	 * Return values in finest grid as a array of matrices in formatted strings
+	 * 
+	 * @return array of string output
 	 */
 	public String[] gridsToStrings() {
 		String[] out = new String[_order];
@@ -774,7 +2000,7 @@ public class MultigridVariable implements Serializable {
 	/**
 	 * @return the value of the finest grid
 	 */
-	public float[][][] getFinestGrid() {
+	public PaddedMatrix getFinestGrid() {
 		return _mg[_order - 1];
 	}
 
@@ -838,6 +2064,338 @@ public class MultigridVariable implements Serializable {
 		nPosSteps = npos;
 	}
 
+	/**
+	 * Set the maximum number of V-cycles performed at each level of the nested
+	 * iteration. V-cycles stop earlier if the residual of every solute is
+	 * below both its truncation error and its tolerance.
+	 * 
+	 * @param n
+	 *            maximum number of V-cycles
+	 */
+	public static void setMaximumVCycles(int n) {
+		if (n < 1)
+			throw new InvalidValueException("maximum number of V-cycles ("
+					+ n + ") must be at least 1");
+		nVCycles = n;
+	}
+
+	/**
+	 * Set the damping factor of the coarse grid correction of the V-cycles.
+	 * Undamped V-cycles do not converge in the QS scenarios (2 pre and 20
+	 * post smoothing steps): the residual of the inducer on the finest grid
+	 * decreases by less than a factor 2 per cycle and that of the substrate
+	 * alternates between two values, as the coarse grids overestimate part
+	 * of the correction. Damping, on the other hand, limits the reduction of
+	 * the residual of linear solutes to a factor 1 / (1 - f) per cycle. With
+	 * the QS scenarios (2D with 33 and 65 nodes, 160 iterations, and 3D with
+	 * 17 nodes) a factor of 0.6 converged in every solve, whereas 0.5 failed
+	 * to converge in a third of the solves of the 65 node grid and 0.9
+	 * already failed in a third of the first 30. Default is 0.6. A solution
+	 * that does not converge within the maximum number of V-cycles is
+	 * relaxed further as by the relaxation solver (see
+	 * SolverStatistics.isRelaxedAfterMultigrid).
+	 * 
+	 * @param f
+	 *            damping factor, in ]0, 1], 1 for no damping
+	 * @throws InvalidValueException
+	 *             if f is not in ]0, 1]
+	 */
+	public static void setCorrectionDamping(float f) {
+		if (!((f > 0) && (f <= 1)))
+			throw new InvalidValueException("correction damping (" + f
+					+ ") must be in ]0, 1]");
+		_correctionDamping = f;
+	}
+
+	/**
+	 * @return the damping factor of the coarse grid correction
+	 */
+	public static float getCorrectionDamping() {
+		return _correctionDamping;
+	}
+
+	/**
+	 * Set the number of threads used to relax the grids. With 1 thread the
+	 * relaxation is done serially in the calling thread. Default is the
+	 * number of available processors.
+	 * 
+	 * @param n
+	 *            number of threads
+	 */
+	public static synchronized void setNumberOfThreads(int n) {
+		if (n < 1)
+			throw new InvalidValueException("number of threads (" + n
+					+ ") must be at least 1");
+		if ((_pool != null) && (_pool.getParallelism() != n)) {
+			_pool.shutdown();
+			_pool = null;
+		}
+		_nThreads = n;
+	}
+
+	/**
+	 * @return the number of threads used to relax the grids
+	 */
+	public static int getNumberOfThreads() {
+		return _nThreads;
+	}
+
+	/**
+	 * @return the pool of threads used for relaxation
+	 */
+	private static synchronized ForkJoinPool getPool() {
+		if (_pool == null)
+			_pool = new ForkJoinPool(_nThreads);
+		return _pool;
+	}
+
+	/**
+	 * Set whether the solvers start from the solution of their previous call
+	 * instead of the bulk concentrations. Since the biofilm changes little
+	 * between iterations, the multigrid solver then skips the nested
+	 * iteration and goes straight to V-cycles on the finest grid; it falls
+	 * back to a start from the bulk concentrations if the residual grows
+	 * (see SolverStatistics.getWarmStartDivergedSolute). Default is false.
+	 * 
+	 * @param b
+	 *            true to start from the previous solution
+	 */
+	public static void setWarmStart(boolean b) {
+		_warmStart = b;
+	}
+
+	/**
+	 * @return true if the solvers start from the previous solution
+	 */
+	public static boolean isWarmStart() {
+		return _warmStart;
+	}
+
+	/**
+	 * Set whether the multigrid solver solves the solutes by levels of
+	 * their dependencies (see SoluteDependencies) when it starts from the
+	 * bulk concentrations. Solutes whose rates depend on each other are
+	 * solved together, after the solutes they depend on, which are then
+	 * held fixed, and blocks of solutes that do not depend on each other are
+	 * relaxed in parallel. The dependencies are found from the factors and
+	 * catalysts of the reactions, so factors must override
+	 * ProcessFactor.dependsOn for solutes to be decoupled. Default is false,
+	 * solving all solutes together.
+	 * 
+	 * @param b
+	 *            true to solve by levels of dependencies
+	 */
+	public static void setScheduleByDependencies(boolean b) {
+		_scheduleByDependencies = b;
+	}
+
+	/**
+	 * @return true if the multigrid solver solves by levels of dependencies
+	 */
+	public static boolean isScheduleByDependencies() {
+		return _scheduleByDependencies;
+	}
+
+	/**
+	 * Set whether relaxation updates all the solutes at a node together, by
+	 * a Newton step with the derivatives of the rate of each solute in
+	 * respect to the others (block Gauss-Seidel), instead of each solute
+	 * with the derivative of its own rate only. Fewer V-cycles are needed
+	 * for solutes whose rates are strongly coupled, at a higher cost per
+	 * relaxation sweep. Default is false.
+	 * 
+	 * @param b
+	 *            true to relax the solutes at a node together
+	 */
+	public static void setCoupledRelaxation(boolean b) {
+		_coupledRelaxation = b;
+	}
+
+	/**
+	 * @return true if relaxation updates the solutes at a node together
+	 */
+	public static boolean isCoupledRelaxation() {
+		return _coupledRelaxation;
+	}
+
+	/**
+	 * Set whether the norms of the residuals and truncation errors, which
+	 * decide when the V-cycles stop, are summed in independent partial sums
+	 * that the processor can pipeline (see MultigridUtils.computeNorm),
+	 * instead of in a single sum, whose additions must be done one after the
+	 * other. The norms are
+	 * rounded differently, so that the number of V-cycles, and the
+	 * solutions, may change slightly. Default is false.
+	 * 
+	 * @param b
+	 *            true to sum the norms in partial sums
+	 */
+	public static void setPartialSumNorms(boolean b) {
+		_partialSumNorms = b;
+	}
+
+	/**
+	 * @return true if norms are summed in partial sums
+	 */
+	public static boolean isPartialSumNorms() {
+		return _partialSumNorms;
+	}
+
+	/**
+	 * Set whether the multigrid and Newton-Krylov solvers solve directly the
+	 * solutes whose rates do not depend on any solute being solved (e.g.
+	 * solutes produced with zero order kinetics). Their equations are linear,
+	 * and are solved at the finest grid by a banded LU decomposition (see
+	 * LinearSoluteSolver) before the other solutes, which are then solved
+	 * iteratively with them fixed. With setScheduleByDependencies, solutes
+	 * that are linear once the lower levels are solved are solved directly
+	 * as well. Grids too large for the decomposition (most 3D grids) and
+	 * solutions with negative concentrations fall back to the iterative
+	 * solvers. Default is false.
+	 * 
+	 * @param b
+	 *            true to solve linear solutes directly
+	 */
+	public static void setDirectSolverForLinearSolutes(boolean b) {
+		_directLinearSolver = b;
+	}
+
+	/**
+	 * @return true if linear solutes are solved directly
+	 */
+	public static boolean isDirectSolverForLinearSolutes() {
+		return _directLinearSolver;
+	}
+
+	/**
+	 * Set the tolerance for reusing the previous solution of the multigrid
+	 * solver. While the boundary layer stays the same and the bulk
+	 * concentrations and particulate species change by at most this
+	 * fraction since the last full solution, the previous solution is
+	 * corrected by a single relaxation sweep and reused if the residual of
+	 * every solute stays below this fraction of the norm of its rates.
+	 * Default is 0, solving at every call.
+	 * 
+	 * @param tol
+	 *            relative tolerance, 0 to always solve
+	 * @throws InvalidValueException
+	 *             if tol is negative
+	 */
+	public static void setSkipSolveTolerance(float tol) {
+		if (!(tol >= 0))
+			throw new InvalidValueException("skip-solve tolerance (" + tol
+					+ ") must not be negative");
+		_skipTolerance = tol;
+	}
+
+	/**
+	 * @return the tolerance for reusing the previous solution
+	 */
+	public static float getSkipSolveTolerance() {
+		return _skipTolerance;
+	}
+
+	/**
+	 * @return the statistics of the last call to the solvers, updated in
+	 *         place by every call
+	 */
+	public static SolverStatistics getSolverStatistics() {
+		return _statistics;
+	}
+
+	/**
+	 * Add a listener to be notified at the end of every call to the solvers
+	 * 
+	 * @param l
+	 *            the listener to add
+	 */
+	public static void addSolverListener(SolverListener l) {
+		if (_solverListeners == null)
+			_solverListeners = new ArrayList();
+		_solverListeners.add(l);
+	}
+
+	/**
+	 * Remove a listener added with addSolverListener
+	 * 
+	 * @param l
+	 *            the listener to remove
+	 */
+	public static void removeSolverListener(SolverListener l) {
+		if (_solverListeners != null)
+			_solverListeners.remove(l);
+	}
+
+	/**
+	 * Set the solver used by solveDiffusionReaction. Default is RELAXATION.
+	 * The solutions of MULTIGRID and NEWTONKRYLOV that do not converge are
+	 * relaxed further at the finest grid as by RELAXATION.
+	 * 
+	 * @param s
+	 *            MULTIGRID, NEWTONKRYLOV or RELAXATION
+	 */
+	public static void setSolver(int s) {
+		if ((s != MULTIGRID) & (s != NEWTONKRYLOV) & (s != RELAXATION))
+			throw new InvalidValueException("solver (" + s + ") not valid");
+		_solver = s;
+	}
+
+	/**
+	 * @return the solver used by solveDiffusionReaction
+	 */
+	public static int getSolver() {
+		return _solver;
+	}
+
+	/**
+	 * Set the coarse grid operators of the multigrid solvers for a type of
+	 * boundary conditions. GEOMETRIC operators (the default) are computed
+	 * from the relative diffusion restricted to each grid order. ALGEBRAIC
+	 * operators are built from the diffusion at the faces of the finer grid
+	 * orders, and corrections are interpolated weighted by it, so that walls
+	 * of near-zero diffusion such as carriers (see
+	 * BoundaryConditions.isCarrier) are kept at the coarser grids and the
+	 * V-cycles converge independently of their shape.
+	 * 
+	 * @param bc
+	 *            a class of boundary conditions
+	 * @param o
+	 *            GEOMETRIC or ALGEBRAIC
+	 */
+	public static void setCoarseGridOperators(Class bc, int o) {
+		if ((o != GEOMETRIC) & (o != ALGEBRAIC))
+			throw new InvalidValueException("coarse grid operators (" + o
+					+ ") not valid");
+		_coarseGridOperators.put(bc, Integer.valueOf(o));
+	}
+
+	/**
+	 * @param bc
+	 *            a class of boundary conditions
+	 * @return the coarse grid operators used with boundary conditions of
+	 *         class bc, or of its closest superclass for which they were set,
+	 *         GEOMETRIC or ALGEBRAIC
+	 */
+	public static int getCoarseGridOperators(Class bc) {
+		for (Class c = bc; c != null; c = c.getSuperclass()) {
+			Integer o = (Integer) _coarseGridOperators.get(c);
+			if (o != null)
+				return o.intValue();
+		}
+		return GEOMETRIC;
+	}
+
+	/**
+	 * @return true if the coarse grid operators for the present boundary
+	 *         conditions are ALGEBRAIC
+	 */
+	static boolean hasAlgebraicCoarseGridOperators() {
+		if (_boundaryConditions == null)
+			return false;
+		Class bc = _boundaryConditions.getClass();
+		return (getCoarseGridOperators(bc) == ALGEBRAIC);
+	}
+
 	/**
 	 * Impose a profile for a solute species, such as in the case of the oxygen
 	 * profile imposed in the Laspidou model
@@ -846,11 +2404,11 @@ public class MultigridVariable implements Serializable {
 	 * @param lambda
 	 */
 	public static void imposeProfile(SoluteSpecies chem, float lambda) {
-		float[][][] profile = chem._mg[_order - 1];
+		PaddedMatrix profile = chem._mg[_order - 1];
 		float cbulk = chem.getBulkConcentration();
-		int n = profile.length;
-		int m = profile[0].length;
-		int l = profile[0][0].length;
+		int n = profile.ni;
+		int m = profile.nj;
+		int l = profile.nk;
 		// find the boundary layer height
 		int h = (int) (_model.getCurrentBiofilmHeight() / _voxelSide) + 1;
 		for (int i = 0; i < n; i++) {
@@ -860,7 +2418,7 @@ public class MultigridVariable implements Serializable {
 					* cbulk;
 			for (int j = 0; j < m; j++)
 				for (int k = 0; k < l; k++)
-					profile[i][j][k] = v;
+					profile.set(i, j, k, v);
 		}
 	}
 
@@ -880,7 +2438,7 @@ public class MultigridVariable implements Serializable {
 			for (int j = 1; j < _m + 1; j++)
 				for (int k = 1; k < _l + 1; k++)
 					for (int sp = 0; sp < bac.length; sp++)
-						if (bac[sp]._mg[_order - 1][i + 1][j + 1][k + 1] > 0) {
+						if (bac[sp]._mg[_order - 1].get(i + 1, j + 1, k + 1) > 0) {
 							n++;
 							break;
 						}
@@ -939,9 +2497,18 @@ public class MultigridVariable implements Serializable {
 		_i = os.readInt();
 		_j = os.readInt();
 		_k = os.readInt();
+		// the indexes are those of the finest grid
+		_cursorG = _order - 1;
 		_gridIsSet = os.readBoolean();
 		_boundaryConditions = (BoundaryConditions) (os.readObject());
 		_model = (Model) (os.readObject());
+		try {
+			_sizes = MultigridUtils.gridSizes(_n, _m, _l);
+		} catch (InvalidValueException e) {
+			throw new ModelRuntimeException(e.toString());
+		}
+		computeStrides();
+		_workspace = null;
 	}
 
 	/**
@@ -0,0 +1,740 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+import nl.tudelft.bt.model.exceptions.MultigridSystemNotSetException;
+import nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions;
+import nl.tudelft.bt.model.multigrid.boundary_layers.BoundaryLayer;
+import nl.tudelft.bt.model.reaction.FactorCache;
+import nl.tudelft.bt.model.reaction.RateKernel;
+
+/**
+ * Jacobian-free Newton-Krylov solver of the reaction-diffusion equations at
+ * the finest grid, used instead of the V-cycles at the finest grid when the
+ * solver is MultigridVariable.NEWTONKRYLOV. Each Newton step solves
+ * 
+ * <pre>
+ * J du = -F(u)
+ * </pre>
+ * 
+ * for all solutes at once, where F is the L-operator of the solutes (the
+ * right hand side at the finest grid is 0). The linear systems are solved by
+ * BiCGStab, computing the products J v from the diffusion stencil and a
+ * finite difference of the rates, so that the Jacobian of the rates,
+ * including the coupling between solutes, is never formed. BiCGStab is
+ * right-preconditioned by one linear multigrid V-cycle per solute, for the
+ * diffusion operator plus the derivative of the rate of the solute in
+ * respect to itself (only where negative, so that the smoother stays
+ * stable). Steps are damped by a backtracking line search and concentrations
+ * are kept non-negative.
+ * <p>
+ * Where rates are almost discontinuous in the concentrations (e.g. steps of
+ * quorum sensing regulation), point-wise Newton relaxation needs many sweeps
+ * to converge, while the Newton steps here act on the whole grid at once.
+ */
+class NewtonKrylov {
+	// maximum number of Newton iterations
+	private static final int NEWTONITERATIONS = 20;
+
+	// maximum number of BiCGStab iterations per Newton iteration
+	private static final int KRYLOVITERATIONS = 30;
+
+	// reduction of the norm of F required from BiCGStab (inexact Newton)
+	private static final float FORCING = 0.05f;
+
+	// maximum number of times a Newton step is halved
+	private static final int LINESEARCH = 6;
+
+	// relative decrease of the squared norm of F required to accept a step,
+	// times the length of the step
+	private static final float SUFFICIENTDECREASE = 1e-4f;
+
+	// relative change of the concentrations for the finite differences of
+	// the rates, about the square root of the precision of floats
+	private static final float PERTURBATION = 3e-4f;
+
+	// smoothing sweeps of the preconditioner, before and after the coarse
+	// grid correction and at the coarsest grid
+	private static final int PRESTEPS = 2;
+
+	private static final int POSTSTEPS = 2;
+
+	private static final int COARSESTSTEPS = 20;
+
+	// number of solutes the solver was allocated for and of the present call
+	private final int _solutes;
+
+	private int _n;
+
+	private final int _finest;
+
+	// vectors at the finest grid, one matrix per solute: the concentrations
+	// before a Newton step, F, the rates and the Newton step
+	private final PaddedMatrix[] _u0;
+
+	private final PaddedMatrix[] _f;
+
+	private final PaddedMatrix[] _rates;
+
+	private final PaddedMatrix[] _du;
+
+	// vectors of BiCGStab
+	private final PaddedMatrix[] _r;
+
+	private final PaddedMatrix[] _rhat;
+
+	private final PaddedMatrix[] _p;
+
+	private final PaddedMatrix[] _v;
+
+	private final PaddedMatrix[] _s;
+
+	private final PaddedMatrix[] _t;
+
+	// preconditioned _p and _s
+	private final PaddedMatrix[] _y;
+
+	private final PaddedMatrix[] _z;
+
+	// per solute, at all grid orders: correction, right hand side and rate
+	// derivative of the preconditioner
+	private final MultigridVariable[] _e;
+
+	private final MultigridVariable[] _rhs;
+
+	private final MultigridVariable[] _dr;
+
+	// residuals of the preconditioner, shared by the solutes
+	private final MultigridVariable _residual;
+
+	// norms of F and of the rates of each solute
+	private final float[] _fNorm;
+
+	private final float[] _rateNorm;
+
+	// rate and rate derivative
+	private final float[] _rDr = new float[2];
+
+	// iterations of the last call to solve
+	private int _newtonIterations;
+
+	private int _krylovIterations;
+
+	/**
+	 * Allocate the solver for the present grid
+	 * 
+	 * @param solutes
+	 *            number of solutes
+	 * @throws MultigridSystemNotSetException
+	 */
+	NewtonKrylov(int solutes) throws MultigridSystemNotSetException {
+		_solutes = solutes;
+		_residual = new MultigridVariable();
+		_finest = _residual._mg.length - 1;
+		_u0 = vectors();
+		_f = vectors();
+		_rates = vectors();
+		_du = vectors();
+		_r = vectors();
+		_rhat = vectors();
+		_p = vectors();
+		_v = vectors();
+		_s = vectors();
+		_t = vectors();
+		_y = vectors();
+		_z = vectors();
+		_e = new MultigridVariable[solutes];
+		_rhs = new MultigridVariable[solutes];
+		_dr = new MultigridVariable[solutes];
+		for (int i = 0; i < solutes; i++) {
+			_e[i] = new MultigridVariable();
+			_rhs[i] = new MultigridVariable();
+			_dr[i] = new MultigridVariable();
+		}
+		_fNorm = new float[solutes];
+		_rateNorm = new float[solutes];
+	}
+
+	/**
+	 * @return a vector at the finest grid, 0 everywhere
+	 */
+	private PaddedMatrix[] vectors() {
+		PaddedMatrix f = _residual._mg[_finest];
+		PaddedMatrix[] v = new PaddedMatrix[_solutes];
+		for (int i = 0; i < _solutes; i++)
+			v[i] = new PaddedMatrix(f.getN(), f.getM(), f.getL());
+		return v;
+	}
+
+	/**
+	 * @return the maximum number of solutes the solver was allocated for
+	 */
+	int getNumberOfSolutes() {
+		return _solutes;
+	}
+
+	/**
+	 * @return the number of Newton iterations of the last call to solve
+	 */
+	int getNewtonIterations() {
+		return _newtonIterations;
+	}
+
+	/**
+	 * @return the number of BiCGStab iterations of the last call to solve
+	 */
+	int getKrylovIterations() {
+		return _krylovIterations;
+	}
+
+	/**
+	 * Solve the reaction-diffusion equations at the finest grid, starting
+	 * from the present concentrations of the solutes. The solution converges
+	 * when the norm of F of every solute is below the solver tolerance of
+	 * the solute times the norm of its rates, as for the V-cycles.
+	 * 
+	 * @param c
+	 *            solute species, at most as many as the solver was
+	 *            allocated for
+	 * @param kernels
+	 *            rate kernels of the solutes
+	 * @param cache
+	 *            factor cache for the kernels, or null
+	 * @param d
+	 *            relative diffusion
+	 * @param bl
+	 *            boundary layer
+	 * @return true if the solution converged, false if it did not within
+	 *         the maximum number of Newton iterations or if a step could not
+	 *         decrease the norm of F
+	 */
+	boolean solve(SoluteSpecies[] c, RateKernel[] kernels, FactorCache cache,
+			RelativeDiffusion d, BoundaryLayer bl) {
+		_n = c.length;
+		_newtonIterations = 0;
+		_krylovIterations = 0;
+		int[] runs = bl.getActiveVoxels(_finest).getRuns();
+		float merit = evaluate(c, kernels, cache, d, runs);
+		for (int it = 0; it < NEWTONITERATIONS; it++) {
+			if (converged(c))
+				return true;
+			// negated comparison to fail on NaN as well
+			if (!(merit < Float.POSITIVE_INFINITY))
+				return false;
+			_newtonIterations++;
+			restrictRateDerivatives(bl);
+			for (int i = 0; i < _n; i++)
+				copy(c[i]._mg[_finest], _u0[i]);
+			// right hand side of the linear system
+			for (int i = 0; i < _n; i++) {
+				float[] f = _f[i].data;
+				float[] b = _r[i].data;
+				for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+					for (int p = runs[q]; p <= runs[q + 1]; p++)
+						b[p] = -f[p];
+			}
+			solveLinearSystem(c, kernels, cache, d, bl, runs, FORCING
+					* (float) Math.sqrt(merit));
+			// line search
+			float lambda = 1;
+			for (int h = 0;; h++) {
+				step(c, runs, lambda);
+				float m = evaluate(c, kernels, cache, d, runs);
+				if (m < (1 - SUFFICIENTDECREASE * lambda) * merit) {
+					merit = m;
+					break;
+				}
+				if (h == LINESEARCH) {
+					// no descent, keep the concentrations before the step
+					for (int i = 0; i < _n; i++)
+						copy(_u0[i], c[i]._mg[_finest]);
+					evaluate(c, kernels, cache, d, runs);
+					return false;
+				}
+				lambda *= 0.5f;
+			}
+		}
+		return converged(c);
+	}
+
+	/**
+	 * @param c
+	 * @return true if the norm of F of every solute is below its tolerance
+	 */
+	private boolean converged(SoluteSpecies[] c) {
+		for (int i = 0; i < _n; i++)
+			if (!(_fNorm[i] <= c[i].getSolverTolerance() * _rateNorm[i]))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Set the concentrations to those before the Newton step plus lambda
+	 * times the step, not lower than 0
+	 * 
+	 * @param c
+	 * @param runs
+	 *            runs of the nodes inside the boundary layer
+	 * @param lambda
+	 */
+	private void step(SoluteSpecies[] c, int[] runs, float lambda) {
+		BoundaryConditions bc = MultigridVariable._boundaryConditions;
+		for (int i = 0; i < _n; i++) {
+			float[] u = c[i]._mg[_finest].data;
+			float[] u0 = _u0[i].data;
+			float[] du = _du[i].data;
+			for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+				for (int p = runs[q]; p <= runs[q + 1]; p++) {
+					float v = u0[p] + lambda * du[p];
+					u[p] = (v < 0 ? 0 : v);
+				}
+			bc.refreshBoundaryConditions(c[i]._mg[_finest]);
+		}
+	}
+
+	/**
+	 * Compute F, the rates and the derivative of the rate of each solute in
+	 * respect to itself at the present concentrations
+	 * 
+	 * @param c
+	 * @param kernels
+	 * @param cache
+	 * @param d
+	 * @param runs
+	 *            runs of the nodes inside the boundary layer
+	 * @return the squared norm of F
+	 */
+	private float evaluate(SoluteSpecies[] c, RateKernel[] kernels,
+			FactorCache cache, RelativeDiffusion d, int[] runs) {
+		for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+			for (int p = runs[q]; p <= runs[q + 1]; p++) {
+				if (cache != null)
+					cache.moveTo();
+				for (int i = 0; i < _n; i++) {
+					if (cache == null)
+						kernels[i].updateValuesForRateAndRateDerivative(_rDr,
+								_finest, p);
+					else
+						cache.updateValuesForRateAndRateDerivative(i, _rDr,
+								_finest, p);
+					_rates[i].data[p] = _rDr[0];
+					_dr[i]._mg[_finest].data[p] = _rDr[1];
+				}
+			}
+		double merit = 0;
+		for (int i = 0; i < _n; i++) {
+			float[] f = _f[i].data;
+			float[] r = _rates[i].data;
+			for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+				for (int p = runs[q]; p <= runs[q + 1]; p++)
+					f[p] = r[p];
+			addDiffusion(c[i], c[i]._mg[_finest], d, runs, _f[i]);
+			double fNorm = 0;
+			double rateNorm = 0;
+			for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+				for (int p = runs[q]; p <= runs[q + 1]; p++) {
+					fNorm += (double) f[p] * f[p];
+					rateNorm += (double) r[p] * r[p];
+				}
+			_fNorm[i] = (float) Math.sqrt(fNorm);
+			_rateNorm[i] = (float) Math.sqrt(rateNorm);
+			merit += fNorm;
+		}
+		return (float) merit;
+	}
+
+	/**
+	 * Compute out = J v, the diffusion term from the stencil and the rate
+	 * term as a finite difference of the rates around the concentrations of
+	 * the present Newton step (_u0)
+	 * 
+	 * @param c
+	 * @param kernels
+	 * @param cache
+	 * @param d
+	 * @param runs
+	 *            runs of the nodes inside the boundary layer
+	 * @param v
+	 * @param out
+	 */
+	private void applyJacobian(SoluteSpecies[] c, RateKernel[] kernels,
+			FactorCache cache, RelativeDiffusion d, int[] runs,
+			PaddedMatrix[] v, PaddedMatrix[] out) {
+		BoundaryConditions bc = MultigridVariable._boundaryConditions;
+		// perturbation of PERTURBATION relative to the concentrations of
+		// the solute where v changes most
+		float ratio = 0;
+		for (int i = 0; i < _n; i++) {
+			float scale = Math.max(maxAbs(_u0[i], runs), 1e-6f);
+			ratio = Math.max(ratio, maxAbs(v[i], runs) / scale);
+		}
+		if (ratio == 0) {
+			for (int i = 0; i < _n; i++)
+				MultigridUtils.setValues(out[i], 0);
+			return;
+		}
+		float epsilon = PERTURBATION / ratio;
+		for (int i = 0; i < _n; i++) {
+			float[] u = c[i]._mg[_finest].data;
+			float[] u0 = _u0[i].data;
+			float[] w = v[i].data;
+			for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+				for (int p = runs[q]; p <= runs[q + 1]; p++)
+					u[p] = u0[p] + epsilon * w[p];
+			bc.refreshBoundaryConditions(c[i]._mg[_finest]);
+		}
+		for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+			for (int p = runs[q]; p <= runs[q + 1]; p++) {
+				if (cache != null)
+					cache.moveTo();
+				for (int i = 0; i < _n; i++)
+					out[i].data[p] = (cache == null ? kernels[i].getRate(
+							_finest, p) : cache.getRate(i, _finest, p));
+			}
+		for (int i = 0; i < _n; i++)
+			copy(_u0[i], c[i]._mg[_finest]);
+		for (int i = 0; i < _n; i++) {
+			float[] o = out[i].data;
+			float[] r = _rates[i].data;
+			// rate term first, the diffusion term is added below
+			for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+				for (int p = runs[q]; p <= runs[q + 1]; p++)
+					o[p] = (o[p] - r[p]) / epsilon;
+			addDiffusion(c[i], v[i], d, runs, out[i]);
+		}
+	}
+
+	/**
+	 * Add the diffusion term of the L-operator of a solute for the values of
+	 * a matrix to another matrix
+	 * 
+	 * @param c
+	 *            solute species
+	 * @param u
+	 *            values at the finest grid
+	 * @param d
+	 * @param runs
+	 *            runs of the nodes inside the boundary layer
+	 * @param out
+	 *            matrix to add the diffusion term to
+	 */
+	private void addDiffusion(SoluteSpecies c, PaddedMatrix u,
+			RelativeDiffusion d, int[] runs, PaddedMatrix out) {
+		Stencil stencil = d.getStencil(_finest);
+		float[] cf = stencil.coefficients;
+		int size = stencil.size;
+		boolean planar = u.isPlanar();
+		float dc = c.getDiffusivity();
+		float[] v = u.data;
+		float[] o = out.data;
+		for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+			for (int p = runs[q]; p <= runs[q + 1]; p++)
+				o[p] += dc
+						* MultigridVariable.diffusion(cf, p * size, v, p, u.si,
+								u.sj, planar);
+	}
+
+	/**
+	 * Solve J du = b approximately by BiCGStab, right-preconditioned by a
+	 * multigrid V-cycle, starting from du = 0. b is given in _r.
+	 * 
+	 * @param c
+	 * @param kernels
+	 * @param cache
+	 * @param d
+	 * @param bl
+	 * @param runs
+	 *            runs of the nodes inside the boundary layer
+	 * @param tolerance
+	 *            norm of the residual at which to stop
+	 */
+	private void solveLinearSystem(SoluteSpecies[] c, RateKernel[] kernels,
+			FactorCache cache, RelativeDiffusion d, BoundaryLayer bl,
+			int[] runs, float tolerance) {
+		for (int i = 0; i < _n; i++) {
+			MultigridUtils.setValues(_du[i], 0);
+			MultigridUtils.setValues(_p[i], 0);
+			MultigridUtils.setValues(_v[i], 0);
+			copy(_r[i], _rhat[i]);
+		}
+		double rho = 1;
+		double alpha = 1;
+		double omega = 1;
+		for (int it = 0; it < KRYLOVITERATIONS; it++) {
+			_krylovIterations++;
+			double rhoNew = dot(_rhat, _r, runs);
+			if (rhoNew == 0)
+				return;
+			double beta = (rhoNew / rho) * (alpha / omega);
+			// p = r + beta * (p - omega * v)
+			for (int i = 0; i < _n; i++) {
+				float[] p = _p[i].data;
+				float[] r = _r[i].data;
+				float[] v = _v[i].data;
+				for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+					for (int x = runs[q]; x <= runs[q + 1]; x++)
+						p[x] = (float) (r[x] + beta * (p[x] - omega * v[x]));
+			}
+			precondition(c, d, bl, _p, _y);
+			applyJacobian(c, kernels, cache, d, runs, _y, _v);
+			double rv = dot(_rhat, _v, runs);
+			if (rv == 0)
+				return;
+			alpha = rhoNew / rv;
+			// s = r - alpha * v, du = du + alpha * y
+			axpy(_r, -alpha, _v, _s, runs);
+			axpy(_du, alpha, _y, _du, runs);
+			if (Math.sqrt(dot(_s, _s, runs)) <= tolerance)
+				return;
+			precondition(c, d, bl, _s, _z);
+			applyJacobian(c, kernels, cache, d, runs, _z, _t);
+			double tt = dot(_t, _t, runs);
+			if (tt == 0)
+				return;
+			omega = dot(_t, _s, runs) / tt;
+			// du = du + omega * z, r = s - omega * t
+			axpy(_du, omega, _z, _du, runs);
+			axpy(_s, -omega, _t, _r, runs);
+			if ((Math.sqrt(dot(_r, _r, runs)) <= tolerance) || (omega == 0))
+				return;
+			rho = rhoNew;
+		}
+	}
+
+	/**
+	 * Apply the preconditioner, one linear V-cycle per solute from the
+	 * finest grid
+	 * 
+	 * @param c
+	 * @param d
+	 * @param bl
+	 * @param in
+	 *            vector to precondition
+	 * @param out
+	 *            vector to write the result to
+	 */
+	private void precondition(SoluteSpecies[] c, RelativeDiffusion d,
+			BoundaryLayer bl, PaddedMatrix[] in, PaddedMatrix[] out) {
+		for (int i = 0; i < _n; i++) {
+			copy(in[i], _rhs[i]._mg[_finest]);
+			vCycle(c[i], i, d, bl, _finest);
+			copy(_e[i]._mg[_finest], out[i]);
+		}
+	}
+
+	/**
+	 * Linear V-cycle for the correction of a solute from grid order g, for
+	 * the right hand side in _rhs, starting from a correction of 0
+	 * 
+	 * @param c
+	 * @param solute
+	 *            index of the solute
+	 * @param d
+	 * @param bl
+	 * @param g
+	 *            grid order
+	 */
+	private void vCycle(SoluteSpecies c, int solute, RelativeDiffusion d,
+			BoundaryLayer bl, int g) {
+		BoundaryConditions bc = MultigridVariable._boundaryConditions;
+		PaddedMatrix[] e = _e[solute]._mg;
+		PaddedMatrix[] rhs = _rhs[solute]._mg;
+		PaddedMatrix[] res = _residual._mg;
+		MultigridUtils.setValues(e[g], 0);
+		if (g == MultigridVariable.COARSEST) {
+			smooth(c, solute, d, bl, g, COARSESTSTEPS);
+			return;
+		}
+		smooth(c, solute, d, bl, g, PRESTEPS);
+		// restrict the residual, which is 0 outside the boundary layer
+		residual(c, solute, d, bl, g);
+		MultigridUtils.setValues(rhs[g - 1], 0);
+		MultigridUtils.restrictBoundaryLayer(res[g], rhs[g - 1], bl._mg[g - 1],
+				bc);
+		vCycle(c, solute, d, bl, g - 1);
+		// coarse grid correction
+		MultigridUtils.setValues(res[g], 0);
+		MultigridUtils.interpolateBoundaryLayer(res[g], e[g - 1], bl._mg[g],
+				d.getFaces(g), bc);
+		MultigridUtils.addTo(e[g], res[g]);
+		smooth(c, solute, d, bl, g, POSTSTEPS);
+	}
+
+	/**
+	 * Red-black Gauss-Seidel sweeps of the linear system of the
+	 * preconditioner for a solute at grid order g
+	 * 
+	 * @param c
+	 * @param solute
+	 *            index of the solute
+	 * @param d
+	 * @param bl
+	 * @param g
+	 *            grid order
+	 * @param sweeps
+	 *            number of sweeps
+	 */
+	private void smooth(SoluteSpecies c, int solute, RelativeDiffusion d,
+			BoundaryLayer bl, int g, int sweeps) {
+		PaddedMatrix em = _e[solute]._mg[g];
+		float[] e = em.data;
+		float[] rhs = _rhs[solute]._mg[g].data;
+		float[] dr = _dr[solute]._mg[g].data;
+		Stencil stencil = d.getStencil(g);
+		float[] cf = stencil.coefficients;
+		int size = stencil.size;
+		boolean planar = em.isPlanar();
+		int si = em.si;
+		int sj = em.sj;
+		float dc = c.getDiffusivity();
+		ActiveVoxels active = bl.getActiveVoxels(g);
+		SolverStatistics statistics = MultigridVariable.getSolverStatistics();
+		for (int sweep = 0; sweep < sweeps; sweep++) {
+			long start = System.nanoTime();
+			for (int color = 1; color <= 2; color++) {
+				int[] runs = active.getRuns(color);
+				for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+					for (int p = runs[q]; p <= runs[q + 1]; p += 2) {
+						int pc = p * size;
+						float neighbours = cf[pc + Stencil.XM] * e[p - si]
+								+ cf[pc + Stencil.XP] * e[p + si]
+								+ cf[pc + Stencil.YM] * e[p - sj]
+								+ cf[pc + Stencil.YP] * e[p + sj];
+						if (!planar)
+							neighbours += cf[pc + Stencil.ZM] * e[p - 1]
+									+ cf[pc + Stencil.ZP] * e[p + 1];
+						float diagonal = dc * cf[pc + Stencil.DIAGONAL]
+								- Math.min(dr[p], 0);
+						e[p] = (dc * neighbours - rhs[p]) / diagonal;
+					}
+				MultigridVariable._boundaryConditions
+						.refreshBoundaryConditions(em);
+			}
+			statistics.addSweep(g, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Compute the residual of the linear system of the preconditioner for a
+	 * solute at grid order g into _residual
+	 * 
+	 * @param c
+	 * @param solute
+	 *            index of the solute
+	 * @param d
+	 * @param bl
+	 * @param g
+	 *            grid order
+	 */
+	private void residual(SoluteSpecies c, int solute, RelativeDiffusion d,
+			BoundaryLayer bl, int g) {
+		PaddedMatrix em = _e[solute]._mg[g];
+		float[] e = em.data;
+		float[] rhs = _rhs[solute]._mg[g].data;
+		float[] dr = _dr[solute]._mg[g].data;
+		float[] out = _residual._mg[g].data;
+		Stencil stencil = d.getStencil(g);
+		float[] cf = stencil.coefficients;
+		int size = stencil.size;
+		boolean planar = em.isPlanar();
+		float dc = c.getDiffusivity();
+		MultigridUtils.setValues(_residual._mg[g], 0);
+		int[] runs = bl.getActiveVoxels(g).getRuns();
+		for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+			for (int p = runs[q]; p <= runs[q + 1]; p++) {
+				float ae = dc
+						* MultigridVariable.diffusion(cf, p * size, e, p,
+								em.si, em.sj, planar) + Math.min(dr[p], 0)
+						* e[p];
+				out[p] = rhs[p] - ae;
+			}
+		MultigridVariable._boundaryConditions
+				.refreshBoundaryConditions(_residual._mg[g]);
+	}
+
+	/**
+	 * Restrict the rate derivatives of the solutes from the finest grid to
+	 * the coarser grids, for the preconditioner
+	 * 
+	 * @param bl
+	 */
+	private void restrictRateDerivatives(BoundaryLayer bl) {
+		BoundaryConditions bc = MultigridVariable._boundaryConditions;
+		for (int i = 0; i < _n; i++) {
+			PaddedMatrix[] dr = _dr[i]._mg;
+			bc.refreshBoundaryConditions(dr[_finest]);
+			for (int g = _finest; g > MultigridVariable.COARSEST; g--) {
+				MultigridUtils.setValues(dr[g - 1], 0);
+				MultigridUtils.restrictBoundaryLayer(dr[g], dr[g - 1],
+						bl._mg[g - 1], bc);
+			}
+		}
+	}
+
+	/**
+	 * Copy the values of a matrix to another of the same size
+	 * 
+	 * @param from
+	 * @param to
+	 */
+	private static void copy(PaddedMatrix from, PaddedMatrix to) {
+		System.arraycopy(from.data, 0, to.data, 0, from.data.length);
+	}
+
+	/**
+	 * @param a
+	 * @param runs
+	 *            runs of the nodes inside the boundary layer
+	 * @return the maximum absolute value of a inside the boundary layer
+	 */
+	private static float maxAbs(PaddedMatrix a, int[] runs) {
+		float[] v = a.data;
+		float max = 0;
+		for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+			for (int p = runs[q]; p <= runs[q + 1]; p++)
+				max = Math.max(max, Math.abs(v[p]));
+		return max;
+	}
+
+	/**
+	 * @param a
+	 * @param b
+	 * @param runs
+	 *            runs of the nodes inside the boundary layer
+	 * @return the dot product of vectors a and b inside the boundary layer
+	 */
+	private double dot(PaddedMatrix[] a, PaddedMatrix[] b, int[] runs) {
+		double sum = 0;
+		for (int i = 0; i < _n; i++) {
+			float[] x = a[i].data;
+			float[] y = b[i].data;
+			for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+				for (int p = runs[q]; p <= runs[q + 1]; p++)
+					sum += (double) x[p] * y[p];
+		}
+		return sum;
+	}
+
+	/**
+	 * Compute out = x + alpha * y inside the boundary layer (out may be x)
+	 * 
+	 * @param x
+	 * @param alpha
+	 * @param y
+	 * @param out
+	 * @param runs
+	 *            runs of the nodes inside the boundary layer
+	 */
+	private void axpy(PaddedMatrix[] x, double alpha, PaddedMatrix[] y,
+			PaddedMatrix[] out, int[] runs) {
+		for (int i = 0; i < _n; i++) {
+			float[] a = x[i].data;
+			float[] b = y[i].data;
+			float[] o = out[i].data;
+			for (int q = 0; q < runs.length; q += ActiveVoxels.RUN)
+				for (int p = runs[q]; p <= runs[q + 1]; p++)
+					o[p] = (float) (a[p] + alpha * b[p]);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A 3D matrix of floats with padding elements, stored as a single contiguous
+ * array. Entries are indexed as in a float[n + 2][m + 2][l + 2] matrix, where
+ * indexes 0 and n + 1 (m + 1, l + 1) are the padding elements used to enforce
+ * the boundary conditions. Entry (i, j, k) is stored at position i * si + j *
+ * sj + k * sk of data, so that neighbours of an entry at position p are found
+ * at p +- si, p +- sj and p +- sk. Matrices of the same size share the same
+ * positions, which allows kernels to walk several matrices with one index.
+ * <p>
+ * Matrices with l = 1 (2D systems) are planar: only the plane k = 1 is
+ * stored (sk = 0, sj = 1), and the padding planes k = 0 and k = 2 read as the
+ * values of plane k = 1, as the boundary conditions along k would set them.
+ * Writes to the padding planes are ignored.
+ */
+public class PaddedMatrix implements Serializable {
+	// the values, including padding
+	public final float[] data;
+
+	// sizes including padding
+	public final int ni;
+
+	public final int nj;
+
+	public final int nk;
+
+	// strides for indexes i and j (stride for k is 1)
+	public final int si;
+
+	public final int sj;
+
+	// stride for index k, 0 for planar matrices
+	public final int sk;
+
+	/**
+	 * Allocate a matrix with n x m x l core entries plus padding, initialized
+	 * with 0
+	 * 
+	 * @param n
+	 * @param m
+	 * @param l
+	 */
+	public PaddedMatrix(int n, int m, int l) {
+		ni = n + 2;
+		nj = m + 2;
+		nk = l + 2;
+		if (l == 1) {
+			// planar
+			sk = 0;
+			sj = 1;
+		} else {
+			sk = 1;
+			sj = nk;
+		}
+		si = nj * (sk == 0 ? 1 : nk);
+		data = new float[ni * si];
+	}
+
+	/**
+	 * @return true if only the plane k = 1 is stored (2D systems)
+	 */
+	public boolean isPlanar() {
+		return sk == 0;
+	}
+
+	/**
+	 * @return number of core entries along i (excluding padding)
+	 */
+	public int getN() {
+		return ni - 2;
+	}
+
+	/**
+	 * @return number of core entries along j (excluding padding)
+	 */
+	public int getM() {
+		return nj - 2;
+	}
+
+	/**
+	 * @return number of core entries along k (excluding padding)
+	 */
+	public int getL() {
+		return nk - 2;
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @param k
+	 * @return the position of entry (i, j, k) in data
+	 */
+	public int index(int i, int j, int k) {
+		return i * si + j * sj + k * sk;
+	}
+
+	/**
+	 * @param p
+	 *            position in data
+	 * @return index i of the entry at position p
+	 */
+	public int getI(int p) {
+		return p / si;
+	}
+
+	/**
+	 * @param p
+	 *            position in data
+	 * @return index j of the entry at position p
+	 */
+	public int getJ(int p) {
+		return (p % si) / sj;
+	}
+
+	/**
+	 * @param p
+	 *            position in data
+	 * @return index k of the entry at position p (1 for planar matrices)
+	 */
+	public int getK(int p) {
+		return (sk == 0 ? 1 : (p % si) % sj);
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @param k
+	 * @return the value of entry (i, j, k)
+	 */
+	public float get(int i, int j, int k) {
+		return data[i * si + j * sj + k * sk];
+	}
+
+	/**
+	 * Set the value of entry (i, j, k). For planar matrices, only entries of
+	 * plane k = 1 are set.
+	 * 
+	 * @param i
+	 * @param j
+	 * @param k
+	 * @param v
+	 *            value to set
+	 */
+	public void set(int i, int j, int k, float v) {
+		if ((sk == 0) && (k != 1))
+			return;
+		data[i * si + j * sj + k * sk] = v;
+	}
+
+	/**
+	 * Copy the values, including padding, to a new jagged array
+	 * 
+	 * @return a float[n + 2][m + 2][l + 2] matrix with the values
+	 */
+	public float[][][] toArray() {
+		float[][][] a = new float[ni][nj][nk];
+		for (int i = 0; i < ni; i++)
+			for (int j = 0; j < nj; j++) {
+				if (sk == 0)
+					Arrays.fill(a[i][j], data[i * si + j * sj]);
+				else
+					System.arraycopy(data, i * si + j * sj, a[i][j], 0, nk);
+			}
+		return a;
+	}
+}
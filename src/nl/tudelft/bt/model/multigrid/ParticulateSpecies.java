@@ -69,8 +69,7 @@ public class ParticulateSpecies extends Species {
 	 * @return net gorwth rate at position [1/h]
 	 */
 	public float getSpecificRate(ContinuousCoordinate c) {
-		setCurrentLocation(c);
-		return _processes.getSpecificRate();
+		return _processes.getSpecificRate(_order - 1, snapToIndex(c));
 	}
 
 	/**
@@ -133,12 +132,13 @@ public class ParticulateSpecies extends Species {
 	 * @return
 	 */
 	private String finestRateToString() {
-		_g = _order - 1;
+		int g = _order - 1;
 		StringBuffer out = new StringBuffer();
-		for (_k = 1; _k <= _l; _k++) {
-			for (_i = _n; _i >= 1; _i--) {
-				for (_j = 1; _j <= _m; _j++) {
-					out.append(_processes.getSpecificRate());
+		for (int k = 1; k <= _l; k++) {
+			for (int i = _n; i >= 1; i--) {
+				for (int j = 1; j <= _m; j++) {
+					out.append(_processes.getSpecificRate(g, indexAt(g, i, j,
+							k)));
 					out.append(", ");
 				}
 				out.append("\n");
@@ -270,7 +270,7 @@ public class ParticulateSpecies extends Species {
 		float[][] m = MultigridUtils.readSquareMatrixFromFile(f);
 		for (int i = _n; i >= 1; i--) {
 			for (int j = 1; j <= _m; j++) {
-				_mg[_order - 1][i][j][1] = m[i - 1][j - 1];
+				_mg[_order - 1].set(i, j, 1, m[i - 1][j - 1]);
 			}
 		}
 		//
@@ -10,6 +10,19 @@ import nl.tudelft.bt.model.multigrid.boundary_layers.BoundaryLayer;
  * @author Joao Xavier (j.xavier@tnw.tudelft.nl)
  */
 public class RelativeDiffusion extends MultigridVariable { 
+	// coefficients of the diffusion stencil at each grid order
+	private Stencil[] _stencils;
+
+	// tiles where the values changed at the last update, at each grid order
+	private DirtyTiles[] _changes;
+
+	// tiles where the stencils must be computed again, at each grid order
+	private DirtyTiles[] _stencilChanges;
+
+	// relative diffusion at the faces of each grid order, null unless the
+	// coarse grid operators are algebraic
+	private FaceDiffusion _faces;
+
 	/**
 	 * @throws MultigridSystemNotSetException
 	 */
@@ -28,17 +41,148 @@ public class RelativeDiffusion extends MultigridVariable {
 	protected void computeValues(ParticulateSpecies[] bac, BoundaryLayer bl,
 			BoundaryConditions bc) {
 		//set the value of the finner grid
-		float[][][] d = _mg[_order - 1];
-		MultigridUtils.setValues(d, 1.0f);
-		for (int i = 0; i < d.length; i++)
-			for (int j = 0; j < d[i].length; j++)
-				for (int k = 0; k < d[i][j].length; k++)
-					// if inside carrier, relative diffusivity should be
-					// very close to 0
-					if (bc.isCarrier(i, j, k)) {
-						d[i][j][k] = 1.0e-20f;
-					}
+		PaddedMatrix d = _mg[_order - 1];
+		for (int i = 0; i < d.ni; i++)
+			for (int j = 0; j < d.nj; j++)
+				for (int k = 0; k < d.nk; k++)
+					d.set(i, j, k, computeValueAt(bac, bl, bc, i, j, k));
 		//update corser grid copies
 		updateMultigridCopies();
+		if (_changes == null) {
+			_changes = new DirtyTiles[_order];
+			for (int g = 0; g < _order; g++)
+				_changes[g] = new DirtyTiles(_mg[g].getN(), _mg[g].getM(),
+						_mg[g].getL());
+		}
+		for (int g = 0; g < _order; g++)
+			_changes[g].markAll();
+	}
+
+	/**
+	 * Compute the relative diffusion at a node of the finest grid
+	 * 
+	 * @param bac
+	 * @param bl
+	 * @param bc
+	 * @param i
+	 * @param j
+	 * @param k
+	 * @return the relative diffusion at (i, j, k)
+	 */
+	private float computeValueAt(ParticulateSpecies[] bac, BoundaryLayer bl,
+			BoundaryConditions bc, int i, int j, int k) {
+		// if inside carrier, relative diffusivity should be
+		// very close to 0
+		return (bc.isCarrier(i, j, k) ? 1.0e-20f : 1.0f);
+	}
+
+	/**
+	 * Update the values only inside the tiles where the occupancy by biomass
+	 * changed (see BoundaryLayer.updateBiomassOccupancy), and their coarser
+	 * grid copies. Values are computed everywhere at the first call or if
+	 * most tiles changed.
+	 * 
+	 * @param bac
+	 * @param bl
+	 * @param bc
+	 */
+	void updateValues(ParticulateSpecies[] bac, BoundaryLayer bl,
+			BoundaryConditions bc) {
+		int f = _order - 1;
+		DirtyTiles changed = bl.getBiomassChanges();
+		if ((_changes == null) || (changed == null)
+				|| changed.isMostlyMarked()) {
+			computeValues(bac, bl, bc);
+			return;
+		}
+		PaddedMatrix d = _mg[f];
+		int[] box = new int[6];
+		for (int t = 0; t < changed.getNumberOfTiles(); t++) {
+			if (!changed.isMarked(t))
+				continue;
+			changed.getTile(t, box);
+			for (int i = box[0] + 1; i <= box[1] + 1; i++)
+				for (int j = box[2] + 1; j <= box[3] + 1; j++)
+					for (int k = box[4] + 1; k <= box[5] + 1; k++)
+						d.set(i, j, k, computeValueAt(bac, bl, bc, i, j, k));
+		}
+		_changes[f].clear();
+		_changes[f].markAll(changed);
+		for (int g = f; g > COARSEST; g--) {
+			_changes[g - 1].clear();
+			_changes[g].restrictTo(_changes[g - 1]);
+			MultigridUtils.restrict(_mg[g], _mg[g - 1], _changes[g - 1],
+					_boundaryConditions);
+		}
+	}
+
+	/**
+	 * Compute the coefficients of the diffusion stencil inside the boundary
+	 * layer at every grid order. Must be called after the values and the
+	 * boundary layer copies are updated. After the first call, coefficients
+	 * are only computed again inside the tiles where the relative diffusion
+	 * or the boundary layer changed. With algebraic coarse grid operators
+	 * (see MultigridVariable.setCoarseGridOperators), the coefficients are
+	 * computed from the relative diffusion at the faces, which is computed
+	 * again at every grid order, with all the coefficients, whenever the
+	 * relative diffusion changed.
+	 * 
+	 * @param bl
+	 */
+	void computeStencils(BoundaryLayer bl) {
+		boolean algebraic = hasAlgebraicCoarseGridOperators();
+		if ((_stencils == null) || (algebraic != (_faces != null))) {
+			_faces = (algebraic ? new FaceDiffusion(_mg) : null);
+			if (algebraic)
+				_faces.compute(_mg);
+			_stencils = new Stencil[_order];
+			_stencilChanges = new DirtyTiles[_order];
+			for (int g = 0; g < _order; g++) {
+				_stencils[g] = new Stencil(_mg[g], bl.getActiveVoxels(g), g,
+						getFaces(g));
+				_stencilChanges[g] = new DirtyTiles(_mg[g].getN(), _mg[g]
+						.getM(), _mg[g].getL());
+			}
+			return;
+		}
+		if (algebraic && !_changes[_order - 1].isEmpty()) {
+			_faces.compute(_mg);
+			for (int g = 0; g < _order; g++)
+				_stencils[g].update(_mg[g], bl.getActiveVoxels(g), g, null,
+						getFaces(g));
+			return;
+		}
+		for (int g = 0; g < _order; g++) {
+			DirtyTiles t = _stencilChanges[g];
+			t.clear();
+			t.markAll(_changes[g]);
+			t.markAll(bl.getChanges(g));
+			if (t.isEmpty())
+				continue;
+			// coefficients depend on the neighbours
+			t.dilate(1);
+			_stencils[g].update(_mg[g], bl.getActiveVoxels(g), g, t,
+					getFaces(g));
+		}
+	}
+
+	/**
+	 * @param g
+	 *            grid order
+	 * @return the relative diffusion at the faces of grid order g, per
+	 *         direction, or null unless the coarse grid operators are
+	 *         algebraic
+	 */
+	float[][] getFaces(int g) {
+		return (_faces == null ? null : _faces.getFaces(g));
+	}
+
+	/**
+	 * @param g
+	 *            grid order
+	 * @return the coefficients of the diffusion stencil at grid order g
+	 */
+	Stencil getStencil(int g) {
+		return _stencils[g];
 	}
-}
\ No newline at end of file
+}
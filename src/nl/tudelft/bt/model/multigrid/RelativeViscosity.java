@@ -38,16 +38,16 @@ public class RelativeViscosity extends MultigridVariable {
 			particulates[p++] = (ParticulateSpecies) iter.next();
 		}
 		//set the value of the finner grid
-		float[][][] d = _mg[_order - 1];
+		PaddedMatrix d = _mg[_order - 1];
 		MultigridUtils.setValues(d, 1.0f);
-		for (int i = 0; i < d.length; i++)
-			for (int j = 0; j < d[i].length; j++)
-				for (int k = 0; k < d[i][j].length; k++)
+		for (int i = 0; i < d.ni; i++)
+			for (int j = 0; j < d.nj; j++)
+				for (int k = 0; k < d.nk; k++)
 					// if inside carrier or biofilm, relative diffusivity should
 					// be very high (0 velocity flux)
 					if (bc.isCarrier(i, j, k)
 							| hasBiomass(particulates, i, j, k)) {
-						d[i][j][k] = 1.0e20f;
+						d.set(i, j, k, 1.0e20f);
 					}
 		//update corser grid copies
 		updateMultigridCopies();
@@ -65,7 +65,7 @@ public class RelativeViscosity extends MultigridVariable {
 	private boolean hasBiomass(ParticulateSpecies[] particulates, int i, int j,
 			int k) {
 		for (int index = 0; index < particulates.length; index++) {
-			if (particulates[index]._mg[_order - 1][i][j][k] > 0)
+			if (particulates[index]._mg[_order - 1].get(i, j, k) > 0)
 				return true;
 		}
 		return false;
@@ -0,0 +1,148 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+import nl.tudelft.bt.model.reaction.RateKernel;
+
+/**
+ * The dependencies between the solutes of a call to the solvers, taken from
+ * their compiled rate kernels (see RateKernel.dependsOn). Solutes whose
+ * rates depend on each other, directly or through other solutes, form a
+ * block that must be solved together. Blocks are assigned levels in
+ * topological order: the solutes of a block depend only on solutes of its
+ * own block and of lower levels, so the levels can be solved one after the
+ * other, and the blocks of a level, which do not depend on each other,
+ * independently.
+ */
+class SoluteDependencies {
+	// blocks of solutes of each level
+	private final SoluteSpecies[][][] _blocks;
+
+	// solutes of each level, ordered by block
+	private final SoluteSpecies[][] _levels;
+
+	/**
+	 * Find the dependencies between solutes
+	 * 
+	 * @param c
+	 *            solute species, with compiled rate kernels
+	 */
+	SoluteDependencies(SoluteSpecies[] c) {
+		int n = c.length;
+		// transitive closure of "the rate of i depends on solute j"
+		boolean[][] reach = new boolean[n][n];
+		for (int i = 0; i < n; i++) {
+			RateKernel k = c[i].getRateKernel();
+			for (int j = 0; j < n; j++)
+				reach[i][j] = (i == j) || k.dependsOn(c[j]);
+		}
+		for (int m = 0; m < n; m++)
+			for (int i = 0; i < n; i++)
+				if (reach[i][m])
+					for (int j = 0; j < n; j++)
+						reach[i][j] |= reach[m][j];
+		// blocks are the strongly connected components, numbered by their
+		// first solute
+		int[] block = new int[n];
+		int nBlocks = 0;
+		for (int i = 0; i < n; i++) {
+			block[i] = -1;
+			for (int j = 0; j < i; j++)
+				if (reach[i][j] && reach[j][i]) {
+					block[i] = block[j];
+					break;
+				}
+			if (block[i] < 0)
+				block[i] = nBlocks++;
+		}
+		int[] level = new int[nBlocks];
+		int nLevels = 0;
+		for (int i = 0; i < n; i++) {
+			level[block[i]] = levelOf(i, reach);
+			nLevels = Math.max(nLevels, level[block[i]] + 1);
+		}
+		_blocks = new SoluteSpecies[nLevels][][];
+		_levels = new SoluteSpecies[nLevels][];
+		for (int l = 0; l < nLevels; l++) {
+			int blocksInLevel = 0;
+			int solutesInLevel = 0;
+			for (int b = 0; b < nBlocks; b++)
+				if (level[b] == l)
+					blocksInLevel++;
+			_blocks[l] = new SoluteSpecies[blocksInLevel][];
+			int k = 0;
+			for (int b = 0; b < nBlocks; b++) {
+				if (level[b] != l)
+					continue;
+				int size = 0;
+				for (int i = 0; i < n; i++)
+					if (block[i] == b)
+						size++;
+				SoluteSpecies[] s = new SoluteSpecies[size];
+				size = 0;
+				for (int i = 0; i < n; i++)
+					if (block[i] == b)
+						s[size++] = c[i];
+				_blocks[l][k++] = s;
+				solutesInLevel += s.length;
+			}
+			_levels[l] = new SoluteSpecies[solutesInLevel];
+			int i = 0;
+			for (int b = 0; b < blocksInLevel; b++)
+				for (int j = 0; j < _blocks[l][b].length; j++)
+					_levels[l][i++] = _blocks[l][b][j];
+		}
+	}
+
+	/**
+	 * @param i
+	 *            a solute
+	 * @param reach
+	 *            transitive closure of the dependencies
+	 * @return the level of the block of solute i, the length of the longest
+	 *         chain of other blocks it depends on
+	 */
+	private static int levelOf(int i, boolean[][] reach) {
+		int l = 0;
+		// solutes i depends on but that do not depend on i are in blocks
+		// of lower levels
+		for (int j = 0; j < reach.length; j++)
+			if (reach[i][j] && !reach[j][i])
+				l = Math.max(l, levelOf(j, reach) + 1);
+		return l;
+	}
+
+	/**
+	 * @return the number of levels
+	 */
+	int getNumberOfLevels() {
+		return _levels.length;
+	}
+
+	/**
+	 * @param l
+	 *            level
+	 * @return the solutes of level l, ordered by block
+	 */
+	SoluteSpecies[] getSolutes(int l) {
+		return _levels[l];
+	}
+
+	/**
+	 * @param l
+	 *            level
+	 * @return the blocks of solutes of level l
+	 */
+	SoluteSpecies[][] getBlocks(int l) {
+		return _blocks[l];
+	}
+
+	/**
+	 * @return true if all solutes form a single block, so that nothing is
+	 *         gained by solving them by levels
+	 */
+	boolean isFullyCoupled() {
+		return (_levels.length == 1) && (_blocks[0].length == 1);
+	}
+}
@@ -2,8 +2,11 @@ package nl.tudelft.bt.model.multigrid;
 
 import nl.tudelft.bt.model.apps.output.VariableSeries;
 import nl.tudelft.bt.model.bulkconcentrations.BulkConcentration;
+import nl.tudelft.bt.model.exceptions.InvalidValueException;
 import nl.tudelft.bt.model.exceptions.MultigridSystemNotSetException;
+import nl.tudelft.bt.model.multigrid.boundary_layers.BoundaryLayer;
 import nl.tudelft.bt.model.reaction.NetReaction;
+import nl.tudelft.bt.model.reaction.RateKernel;
 import nl.tudelft.bt.model.timeconstraint.TimeStepConstraint;
 
 /**
@@ -20,8 +23,26 @@ public class SoluteSpecies extends Species {
 
 	private NetReaction _processes;
 
+	// the net reaction compiled for use by the solvers
+	private transient RateKernel _rateKernel;
+
 	protected float truncationError; // used in MG
 
+	// true if _mg holds the solution of a previous call to a solver, used
+	// for warm starts
+	protected transient boolean hasSolution;
+
+	// default relative tolerance for the multigrid solver
+	private static final float DEFAULTSOLVERTOLERANCE = 1e-4f;
+
+	// residual norm, relative to the norm of the reaction rates, below which
+	// V-cycles may stop for this solute
+	private float _solverTolerance = DEFAULTSOLVERTOLERANCE;
+
+	// number of grid orders below the finest at which the solvers solve this
+	// solute
+	private int _gridCoarsening = 0;
+
 	/**
 	 * Create a chemical species
 	 * 
@@ -112,6 +133,26 @@ public class SoluteSpecies extends Species {
 		}
 	}
 
+	/**
+	 * Prepare the solution of the previous call to a solver as the initial
+	 * guess of the next: values outside the (possibly moved) boundary layer
+	 * are set to the present bulk concentration and the finest grid is
+	 * restricted to the coarser grids.
+	 * 
+	 * @param bl
+	 *            the present boundary layer
+	 */
+	void setMultigridCopiesFromPreviousSolution(BoundaryLayer bl) {
+		float bulk = _bulkConcentration.getValue();
+		float[] u = _mg[_order - 1].data;
+		float[] bld = bl._mg[_order - 1].data;
+		for (int p = 0; p < u.length; p++)
+			if (bld[p] >= BLTHRESH)
+				u[p] = bulk;
+		_boundaryConditions.refreshBoundaryConditions(_mg[_order - 1]);
+		updateMultigridCopies();
+	}
+
 	/**
 	 * Set value of coarsest grid to the bulk concnetration
 	 */
@@ -124,6 +165,24 @@ public class SoluteSpecies extends Species {
 	 */
 	public void setProcesses(NetReaction stoichiometry) {
 		_processes = stoichiometry;
+		_rateKernel = null;
+	}
+
+	/**
+	 * Compile the net reaction of this solute into the rate kernel used by
+	 * the solvers. Must be called again if the rate constants change.
+	 */
+	public void compileRateKernel() {
+		_rateKernel = _processes.compileKernel(this);
+	}
+
+	/**
+	 * @return the rate kernel of this solute (compiled if it was not yet)
+	 */
+	public RateKernel getRateKernel() {
+		if (_rateKernel == null)
+			compileRateKernel();
+		return _rateKernel;
 	}
 
 	/**
@@ -136,6 +195,62 @@ public class SoluteSpecies extends Species {
 	}
 
 
+	/**
+	 * Set the tolerance of the multigrid solver for this solute. V-cycles stop
+	 * when the norm of the residual is below both the truncation error and
+	 * the norm of the reaction rates multiplied by this tolerance. Default is
+	 * 1e-4.
+	 * 
+	 * @param tol
+	 *            tolerance relative to the norm of the reaction rates
+	 */
+	public void setSolverTolerance(float tol) {
+		_solverTolerance = tol;
+	}
+
+	/**
+	 * @return the relative tolerance of the multigrid solver
+	 */
+	public float getSolverTolerance() {
+		return _solverTolerance;
+	}
+
+	/**
+	 * Set the number of grid orders below the finest at which the multigrid
+	 * solver solves this solute, each doubling the grid spacing. Solutes
+	 * that diffuse fast have smooth concentration fields, which a coarser
+	 * grid resolves at a fraction of the cost. The solution is interpolated
+	 * to the finer grid orders, where the rates of the other solutes are
+	 * computed. The boundary layer is also resolved by the coarser grid, so
+	 * it should be several of its spacings thick. Solutes whose rates depend
+	 * on each other are solved at the finest of their grids. Default is 0,
+	 * solving at the finest grid.
+	 * 
+	 * @param n
+	 *            number of grid orders below the finest
+	 */
+	public void setGridCoarsening(int n) {
+		if (n < 0)
+			throw new InvalidValueException("grid coarsening (" + n
+					+ ") must be positive or zero");
+		_gridCoarsening = n;
+	}
+
+	/**
+	 * @return the number of grid orders below the finest at which this solute
+	 *         is solved
+	 */
+	public int getGridCoarsening() {
+		return _gridCoarsening;
+	}
+
+	/**
+	 * @return the grid order at which this solute is solved
+	 */
+	int getFinestGridOrder() {
+		return Math.max(_order - 1 - _gridCoarsening, COARSEST);
+	}
+
 	/**
 	 * Compute the global biofilm convertion rate, if not yet computed
 	 * 
@@ -144,11 +259,11 @@ public class SoluteSpecies extends Species {
 	 */
 	public float computeGlobalRateFromDiffusionReaction() {
 		float r = 0;
-		_g = _order - 1;
-		for (_k = 1; _k <= _l; _k++) {
-			for (_i = _n; _i >= 1; _i--) {
-				for (_j = 1; _j <= _m; _j++) {
-					r += getRate();
+		int g = _order - 1;
+		for (int k = 1; k <= _l; k++) {
+			for (int i = _n; i >= 1; i--) {
+				for (int j = 1; j <= _m; j++) {
+					r += getRate(g, indexAt(g, i, j, k));
 				}
 			}
 		}
@@ -179,6 +294,18 @@ public class SoluteSpecies extends Species {
 		return _processes.getRate();
 	}
 
+	/**
+	 * Get the net rate at location (g, p)
+	 * 
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 * @return net rate [g/um^3/h]
+	 */
+	public float getRate(int g, int p) {
+		return _processes.getRate(g, p);
+	}
 
 	/**
 	 * Update the array with values of the rate and rate derivative
@@ -188,6 +315,21 @@ public class SoluteSpecies extends Species {
 	public void updateValuesForRateAndRateDerivative(float [] rDr) {
 		_processes.updateValuesForRateAndRateDerivative(this, rDr);
 	}
+
+	/**
+	 * Update the array with values of the rate and rate derivative at
+	 * location (g, p)
+	 * 
+	 * @param rDr
+	 *            [rate, rateDerivative]
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 */
+	public void updateValuesForRateAndRateDerivative(float[] rDr, int g, int p) {
+		_processes.updateValuesForRateAndRateDerivative(this, rDr, g, p);
+	}
 	
 	/**
 	 * Return a formatted string with rate for this chemical
@@ -195,12 +337,12 @@ public class SoluteSpecies extends Species {
 	 * @return
 	 */
 	private String finestRateToString() {
-		_g = _order - 1;
+		int g = _order - 1;
 		StringBuffer out = new StringBuffer();
-		for (_k = 1; _k <= _l; _k++) {
-			for (_i = _n; _i >= 1; _i--) {
-				for (_j = 1; _j <= _m; _j++) {
-					out.append(getRate());
+		for (int k = 1; k <= _l; k++) {
+			for (int i = _n; i >= 1; i--) {
+				for (int j = 1; j <= _m; j++) {
+					out.append(getRate(g, indexAt(g, i, j, k)));
 					out.append(", ");
 				}
 				out.append("\n");
@@ -0,0 +1,111 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+/**
+ * A fingerprint of the inputs of the solvers that change between iterations:
+ * the bulk concentrations of the solutes and the particulate species at the
+ * finest grid. Compared to the present inputs, it tells whether the
+ * reaction-diffusion problem changed materially since the solution it was
+ * recorded for (see MultigridVariable.setSkipSolveTolerance).
+ */
+class SolverInputs {
+	private SoluteSpecies[] _solutes;
+
+	private ParticulateSpecies[] _particulates;
+
+	private float[] _bulk = new float[0];
+
+	// finest grid values of each particulate species and their norm
+	private float[][] _biomass = new float[0][];
+
+	private float[] _biomassNorm = new float[0];
+
+	/**
+	 * Record the present inputs
+	 * 
+	 * @param c
+	 *            solute species
+	 * @param b
+	 *            particulate species
+	 */
+	void record(SoluteSpecies[] c, ParticulateSpecies[] b) {
+		_solutes = c;
+		_particulates = b;
+		if (_bulk.length != c.length)
+			_bulk = new float[c.length];
+		for (int i = 0; i < c.length; i++)
+			_bulk[i] = c[i].getBulkConcentration();
+		if (_biomass.length != b.length) {
+			_biomass = new float[b.length][];
+			_biomassNorm = new float[b.length];
+		}
+		for (int i = 0; i < b.length; i++) {
+			float[] v = b[i]._mg[b[i]._mg.length - 1].data;
+			if ((_biomass[i] == null) || (_biomass[i].length != v.length))
+				_biomass[i] = new float[v.length];
+			System.arraycopy(v, 0, _biomass[i], 0, v.length);
+			double norm = 0;
+			for (int p = 0; p < v.length; p++)
+				norm += (double) v[p] * v[p];
+			_biomassNorm[i] = (float) Math.sqrt(norm);
+		}
+	}
+
+	/**
+	 * Check if the present inputs are close to the recorded ones: the bulk
+	 * concentration of every solute may change by at most tolerance times
+	 * its recorded value, and the norm of the change of every particulate
+	 * species by at most tolerance times its recorded norm. Using norms,
+	 * particles moving to a neighbouring voxel in a large biofilm do not
+	 * count as a material change.
+	 * 
+	 * @param c
+	 *            solute species
+	 * @param b
+	 *            particulate species
+	 * @param tolerance
+	 *            relative tolerance
+	 * @return true if the inputs are for the same species and close to the
+	 *         recorded ones
+	 */
+	boolean isCloseTo(SoluteSpecies[] c, ParticulateSpecies[] b,
+			float tolerance) {
+		if ((_solutes == null) || !sameSpecies(_solutes, c)
+				|| !sameSpecies(_particulates, b))
+			return false;
+		for (int i = 0; i < c.length; i++) {
+			float v = c[i].getBulkConcentration();
+			if (!(Math.abs(v - _bulk[i]) <= tolerance * Math.abs(_bulk[i])))
+				return false;
+		}
+		for (int i = 0; i < b.length; i++) {
+			float[] v = b[i]._mg[b[i]._mg.length - 1].data;
+			float[] v0 = _biomass[i];
+			double change = 0;
+			for (int p = 0; p < v.length; p++) {
+				double d = v[p] - v0[p];
+				change += d * d;
+			}
+			// negated comparison to fail on NaN as well
+			if (!(Math.sqrt(change) <= tolerance * _biomassNorm[i]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param a
+	 * @param b
+	 * @return true if a and b hold the same species in the same order
+	 */
+	private static boolean sameSpecies(Species[] a, Species[] b) {
+		if (a.length != b.length)
+			return false;
+		for (int i = 0; i < a.length; i++)
+			if (a[i] != b[i])
+				return false;
+		return true;
+	}
+}
@@ -0,0 +1,18 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+/**
+ * Listener notified at the end of every call to the solvers of the
+ * reaction-diffusion equations (see MultigridVariable.addSolverListener)
+ */
+public interface SolverListener {
+	/**
+	 * Called when the solvers found the concentrations of the solutes
+	 * 
+	 * @param s
+	 *            statistics of the call, updated in place by the next call
+	 */
+	public void solved(SolverStatistics s);
+}
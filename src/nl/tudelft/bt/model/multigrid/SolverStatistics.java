@@ -0,0 +1,434 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+import nl.tudelft.bt.model.multigrid.boundary_layers.BoundaryLayer;
+
+/**
+ * Statistics of the last call to the solvers of the reaction-diffusion
+ * equations: wall time, V-cycles, relaxation sweeps and active voxels per grid
+ * order, and the final residual of each solute. Grid orders go from 0
+ * (coarsest) to getNumberOfGridOrders() - 1 (finest) and solutes are indexed
+ * in the order they were passed to the solver.
+ * <p>
+ * The same object is updated in place by every call to the solvers (see
+ * MultigridVariable.getSolverStatistics and SolverListener), so values must
+ * be copied to be kept past the next call.
+ */
+public class SolverStatistics {
+	private int _solver;
+
+	private boolean _warmStart;
+
+	private boolean _reused;
+
+	// true if the solutions of all groups of solutes converged, counting
+	// the solutions found so far
+	private boolean _converged;
+
+	private int _solutions;
+
+	// true if the unconverged solution was relaxed further at the finest grid
+	private boolean _relaxed;
+
+	// solute whose residual grew during the warm start, null if none
+	private SoluteSpecies _diverged;
+
+	private long _start;
+
+	// Newton and BiCGStab iterations of the Newton-Krylov solver
+	private int _newtonIterations;
+
+	private int _krylovIterations;
+
+	// calls to the Newton-Krylov solver that did not converge
+	private int _newtonFailures;
+
+	// wall time of the whole call [ns]
+	private long _wallTime;
+
+	// per grid order: wall time relaxing and computing the L-operator [ns],
+	// relaxation sweeps, V-cycles started there and active voxels
+	private long[] _levelTime = new long[0];
+
+	private int[] _sweeps = new int[0];
+
+	private int[] _vCycles = new int[0];
+
+	private int[] _activeVoxels = new int[0];
+
+	// per solute, at the end of the call
+	private SoluteSpecies[] _solutes = new SoluteSpecies[0];
+
+	private float[] _residual = new float[0];
+
+	private float[] _truncationError = new float[0];
+
+	private float[] _rateNorm = new float[0];
+
+	/**
+	 * Start the statistics of a call to the solvers
+	 * 
+	 * @param solver
+	 *            MultigridVariable.MULTIGRID, NEWTONKRYLOV or RELAXATION
+	 * @param order
+	 *            number of grid orders
+	 * @param c
+	 *            solutes
+	 */
+	void start(int solver, int order, SoluteSpecies[] c) {
+		_start = System.nanoTime();
+		_solver = solver;
+		_warmStart = false;
+		_reused = false;
+		_converged = false;
+		_solutions = 0;
+		_relaxed = false;
+		_diverged = null;
+		_wallTime = 0;
+		_newtonIterations = 0;
+		_krylovIterations = 0;
+		_newtonFailures = 0;
+		if (_sweeps.length != order) {
+			_levelTime = new long[order];
+			_sweeps = new int[order];
+			_vCycles = new int[order];
+			_activeVoxels = new int[order];
+		}
+		for (int g = 0; g < order; g++) {
+			_levelTime[g] = 0;
+			_sweeps[g] = 0;
+			_vCycles[g] = 0;
+			_activeVoxels[g] = 0;
+		}
+		if (_residual.length != c.length) {
+			_residual = new float[c.length];
+			_truncationError = new float[c.length];
+			_rateNorm = new float[c.length];
+		}
+		_solutes = c;
+	}
+
+	/**
+	 * Add a relaxation sweep at a grid order
+	 * 
+	 * @param g
+	 * @param time
+	 *            wall time of the sweep [ns]
+	 */
+	void addSweep(int g, long time) {
+		_sweeps[g]++;
+		_levelTime[g] += time;
+	}
+
+	/**
+	 * Add the wall time of the computation of an L-operator
+	 * 
+	 * @param g
+	 * @param time
+	 *            [ns]
+	 */
+	void addTime(int g, long time) {
+		_levelTime[g] += time;
+	}
+
+	/**
+	 * Add the V-cycles started at a grid order
+	 * 
+	 * @param g
+	 * @param n
+	 *            number of V-cycles
+	 */
+	void addVCycles(int g, int n) {
+		_vCycles[g] += n;
+	}
+
+	/**
+	 * Add the solution of a group of solutes at the finest grid order they
+	 * are solved at (all the solutes, or a group of solutes of the same
+	 * dependency level and grid order)
+	 * 
+	 * @param converged
+	 *            true if the V-cycles stopped because the solution converged
+	 *            or the Newton-Krylov solver converged
+	 */
+	void addSolution(boolean converged) {
+		_converged = (_solutions == 0 ? converged : _converged && converged);
+		_solutions++;
+	}
+
+	/**
+	 * Set that the solution did not converge and was relaxed further at the
+	 * finest grid, as by the relaxation solver
+	 */
+	void setRelaxedAfterMultigrid() {
+		_relaxed = true;
+	}
+
+	/**
+	 * Add the iterations of the Newton-Krylov solver at the finest grid
+	 * 
+	 * @param newton
+	 *            number of Newton iterations
+	 * @param krylov
+	 *            number of BiCGStab iterations
+	 * @param converged
+	 *            true if the solution converged
+	 */
+	void addNewtonIterations(int newton, int krylov, boolean converged) {
+		_newtonIterations += newton;
+		_krylovIterations += krylov;
+		if (!converged)
+			_newtonFailures++;
+	}
+
+	/**
+	 * Set the solute whose residual grew during the warm start, after which
+	 * the solver started over from the bulk concentrations. The solution of
+	 * the warm start is discarded.
+	 * 
+	 * @param c
+	 */
+	void setWarmStartDiverged(SoluteSpecies c) {
+		_diverged = c;
+		_converged = false;
+		_solutions = 0;
+	}
+
+	/**
+	 * Set the final state of a solute
+	 * 
+	 * @param s
+	 *            index of the solute
+	 * @param residual
+	 *            norm of the residual at the finest grid
+	 * @param truncationError
+	 *            estimate of the truncation error, NaN if not estimated
+	 * @param rateNorm
+	 *            norm of the reaction rates at the finest grid
+	 */
+	void setSolute(int s, float residual, float truncationError,
+			float rateNorm) {
+		_residual[s] = residual;
+		_truncationError[s] = truncationError;
+		_rateNorm[s] = rateNorm;
+	}
+
+	/**
+	 * Finish the statistics of a call to the solvers
+	 * 
+	 * @param bl
+	 *            boundary layer of the call
+	 * @param warmStart
+	 *            true if the solution started from the previous solution
+	 * @param reused
+	 *            true if the previous solution was reused, only corrected
+	 *            by a relaxation sweep
+	 */
+	void finish(BoundaryLayer bl, boolean warmStart, boolean reused) {
+		_warmStart = warmStart;
+		_reused = reused;
+		for (int g = 0; g < _activeVoxels.length; g++)
+			_activeVoxels[g] = bl.getActiveVoxels(g).getNumberOfVoxels();
+		_wallTime = System.nanoTime() - _start;
+	}
+
+	/**
+	 * @return the solver used, MultigridVariable.MULTIGRID, NEWTONKRYLOV or
+	 *         RELAXATION
+	 */
+	public int getSolver() {
+		return _solver;
+	}
+
+	/**
+	 * @return true if the solver started from the solution of the previous
+	 *         call (see MultigridVariable.setWarmStart)
+	 */
+	public boolean isWarmStart() {
+		return _warmStart;
+	}
+
+	/**
+	 * @return true if the problem had not changed materially since the last
+	 *         solution, which was reused (see
+	 *         MultigridVariable.setSkipSolveTolerance)
+	 */
+	public boolean isReused() {
+		return _reused;
+	}
+
+	/**
+	 * @return true if the solutions of all groups of solutes at the finest
+	 *         grid order they are solved at converged: their V-cycles met
+	 *         the convergence criteria before the maximum number of
+	 *         V-cycles, or the Newton-Krylov solver converged. Always false
+	 *         for the relaxation solver.
+	 */
+	public boolean isConverged() {
+		return _converged;
+	}
+
+	/**
+	 * @return true if the solution of the multigrid or Newton-Krylov solver
+	 *         did not converge (see isConverged) and was then relaxed at the
+	 *         finest grid for as many sweeps as the relaxation solver
+	 */
+	public boolean isRelaxedAfterMultigrid() {
+		return _relaxed;
+	}
+
+	/**
+	 * @return the solute whose residual grew during the warm start, after
+	 *         which the solver started over from the bulk concentrations
+	 *         (see MultigridVariable.setWarmStart), or null if the warm start
+	 *         did not diverge
+	 */
+	public SoluteSpecies getWarmStartDivergedSolute() {
+		return _diverged;
+	}
+
+	/**
+	 * @return the wall time of the call [ms]
+	 */
+	public float getWallTime() {
+		return _wallTime * 1e-6f;
+	}
+
+	/**
+	 * @return the number of grid orders
+	 */
+	public int getNumberOfGridOrders() {
+		return _sweeps.length;
+	}
+
+	/**
+	 * @param g
+	 *            grid order
+	 * @return the wall time spent relaxing and computing L-operators at grid
+	 *         order g [ms]
+	 */
+	public float getWallTime(int g) {
+		return _levelTime[g] * 1e-6f;
+	}
+
+	/**
+	 * @param g
+	 *            grid order
+	 * @return the number of relaxation sweeps at grid order g
+	 */
+	public int getSweeps(int g) {
+		return _sweeps[g];
+	}
+
+	/**
+	 * @return the number of relaxation sweeps at all grid orders
+	 */
+	public int getSweeps() {
+		int n = 0;
+		for (int g = 0; g < _sweeps.length; g++)
+			n += _sweeps[g];
+		return n;
+	}
+
+	/**
+	 * @param g
+	 *            grid order
+	 * @return the number of V-cycles started at grid order g (nested
+	 *         iteration and warm start)
+	 */
+	public int getVCycles(int g) {
+		return _vCycles[g];
+	}
+
+	/**
+	 * @return the number of V-cycles at all grid orders
+	 */
+	public int getVCycles() {
+		int n = 0;
+		for (int g = 0; g < _vCycles.length; g++)
+			n += _vCycles[g];
+		return n;
+	}
+
+	/**
+	 * @return the number of Newton iterations of the Newton-Krylov solver
+	 */
+	public int getNewtonIterations() {
+		return _newtonIterations;
+	}
+
+	/**
+	 * @return the number of BiCGStab iterations of the Newton-Krylov solver,
+	 *         each applying the multigrid preconditioner twice
+	 */
+	public int getKrylovIterations() {
+		return _krylovIterations;
+	}
+
+	/**
+	 * @return the number of times the Newton-Krylov solver did not converge
+	 *         and the solver continued with V-cycles
+	 */
+	public int getNewtonFailures() {
+		return _newtonFailures;
+	}
+
+	/**
+	 * @param g
+	 *            grid order
+	 * @return the number of voxels inside the boundary layer at grid order g
+	 */
+	public int getActiveVoxels(int g) {
+		return _activeVoxels[g];
+	}
+
+	/**
+	 * @return the solutes of the call
+	 */
+	public SoluteSpecies[] getSolutes() {
+		return _solutes;
+	}
+
+	/**
+	 * @param c
+	 *            a solute
+	 * @return the index of c in the solutes of the call, -1 if not found
+	 */
+	public int indexOf(SoluteSpecies c) {
+		for (int s = 0; s < _solutes.length; s++)
+			if (_solutes[s] == c)
+				return s;
+		return -1;
+	}
+
+	/**
+	 * @param s
+	 *            index of the solute
+	 * @return the norm of the final residual at the finest grid
+	 */
+	public float getResidual(int s) {
+		return _residual[s];
+	}
+
+	/**
+	 * @param s
+	 *            index of the solute
+	 * @return the estimate of the truncation error of the last V-cycle, NaN
+	 *         for the relaxation and Newton-Krylov solvers
+	 */
+	public float getTruncationError(int s) {
+		return _truncationError[s];
+	}
+
+	/**
+	 * @param s
+	 *            index of the solute
+	 * @return the norm of the reaction rates at the finest grid, to which
+	 *         the residual is compared (see SoluteSpecies.getSolverTolerance)
+	 */
+	public float getRateNorm(int s) {
+		return _rateNorm[s];
+	}
+}
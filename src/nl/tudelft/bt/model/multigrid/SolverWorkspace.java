@@ -0,0 +1,308 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+import nl.tudelft.bt.model.exceptions.ModelRuntimeException;
+import nl.tudelft.bt.model.exceptions.MultigridSystemNotSetException;
+import nl.tudelft.bt.model.multigrid.boundary_layers.BoundaryLayer;
+import nl.tudelft.bt.model.reaction.FactorCache;
+import nl.tudelft.bt.model.reaction.RateKernel;
+
+/**
+ * Scratch state of the solvers for the present grid (see
+ * MultigridVariable.setGrid), allocated once and reset in place at every call
+ * to the solvers, so that the solve loops allocate no memory in steady state.
+ * Holds the temporary multigrid variables, the relative diffusion, the
+ * direct solvers of the coarsest grid and of linear solutes and, for
+ * the solutes of the present call (see prepare), their rate kernels with the
+ * factor caches used to evaluate them.
+ */
+class SolverWorkspace {
+	// temporary variables of the multigrid solver, their values are set where
+	// used
+	final MultigridVariable itemp;
+
+	final MultigridVariable itau;
+
+	// direct solver at the coarsest grid
+	final CoarsestGridSolver coarsestGridSolver;
+
+	// direct solver of solutes with linear equations at the finest grid
+	final LinearSoluteSolver linearSoluteSolver = new LinearSoluteSolver();
+
+	// inputs of the last full solution (see MultigridVariable.solveMG)
+	final SolverInputs inputs = new SolverInputs();
+
+	// relative diffusion and the boundary layer it was computed for
+	private RelativeDiffusion _relativeDiffusion;
+
+	private BoundaryLayer _boundaryLayer;
+
+	// solutes of the present call and their rate kernels
+	private SoluteSpecies[] _solutes;
+
+	private RateKernel[] _kernels;
+
+	// cache for the kernels of all solutes, null if no factor value can be
+	// reused
+	private FactorCache _cache;
+
+	// cache for the kernel of each solute alone
+	private FactorCache[] _soluteCaches;
+
+	// pairs of solutes where the rate of one depends on the other, null if
+	// none (see computeCoupling)
+	private boolean[][] _coupling;
+
+	// rate and rate derivative, for the thread calling the solvers
+	final float[] rDr = new float[2];
+
+	// Jacobian, residuals and diagonal steps of the coupled relaxation of
+	// the solutes at a node, for the thread calling the solvers
+	double[][] jacobian = new double[0][0];
+
+	double[] residuals = new double[0];
+
+	double[] diagonal = new double[0];
+
+	// independent blocks of the solutes (see SoluteDependencies) with their
+	// kernels and caches, null if the solutes are not split in blocks
+	private SoluteSpecies[][] _blocks;
+
+	private RateKernel[][] _blockKernels;
+
+	private FactorCache[] _blockCaches;
+
+	private boolean[][][] _blockCouplings;
+
+	// a value per solute, e.g. residual norms
+	private float[] _soluteValues = new float[0];
+
+	// Newton-Krylov solver, allocated when first used
+	private NewtonKrylov _newtonKrylov;
+
+	/**
+	 * Allocate the workspace for the present grid
+	 * 
+	 * @throws MultigridSystemNotSetException
+	 */
+	SolverWorkspace() throws MultigridSystemNotSetException {
+		itemp = new MultigridVariable();
+		itau = new MultigridVariable();
+		coarsestGridSolver = new CoarsestGridSolver(
+				itemp._mg[MultigridVariable.COARSEST]);
+	}
+
+	/**
+	 * Set the solutes of a call to the solvers, after their rate kernels are
+	 * compiled. Builds the factor caches for the kernels and finds the
+	 * solutes whose rates depend on other solutes.
+	 * 
+	 * @param c
+	 *            solute species
+	 */
+	void prepare(SoluteSpecies[] c) {
+		_solutes = c;
+		// caches keep a reference to the array of kernels, so a new one is
+		// needed for every set of kernels
+		_kernels = new RateKernel[c.length];
+		for (int i = 0; i < c.length; i++)
+			_kernels[i] = c[i].getRateKernel();
+		_cache = new FactorCache(_kernels);
+		// without reusable factor values, kernels are used directly
+		if (_cache.isEmpty())
+			_cache = null;
+		if ((_soluteCaches == null) || (_soluteCaches.length != c.length))
+			_soluteCaches = new FactorCache[c.length];
+		for (int i = 0; i < c.length; i++)
+			_soluteCaches[i] = new FactorCache(
+					new RateKernel[] { _kernels[i] });
+		if (_soluteValues.length != c.length)
+			_soluteValues = new float[c.length];
+		_coupling = computeCoupling(c, _kernels);
+		if (jacobian.length != c.length) {
+			jacobian = new double[c.length][c.length];
+			residuals = new double[c.length];
+			diagonal = new double[c.length];
+		}
+		_blocks = null;
+	}
+
+	/**
+	 * Split the solutes of the present call in blocks that do not depend on
+	 * each other, which may be relaxed concurrently. Builds the kernels,
+	 * factor caches and couplings of each block.
+	 * 
+	 * @param blocks
+	 *            blocks of the prepared solutes, in the same order
+	 */
+	void setBlocks(SoluteSpecies[][] blocks) {
+		_blocks = blocks;
+		_blockKernels = new RateKernel[blocks.length][];
+		_blockCaches = new FactorCache[blocks.length];
+		_blockCouplings = new boolean[blocks.length][][];
+		for (int b = 0; b < blocks.length; b++) {
+			_blockKernels[b] = new RateKernel[blocks[b].length];
+			for (int i = 0; i < blocks[b].length; i++)
+				_blockKernels[b][i] = blocks[b][i].getRateKernel();
+			_blockCaches[b] = new FactorCache(_blockKernels[b]);
+			if (_blockCaches[b].isEmpty())
+				_blockCaches[b] = null;
+			_blockCouplings[b] = computeCoupling(blocks[b],
+					_blockKernels[b]);
+		}
+	}
+
+	/**
+	 * @return the number of independent blocks of solutes, 1 if the solutes
+	 *         are not split
+	 */
+	int getNumberOfBlocks() {
+		return (_blocks == null ? 1 : _blocks.length);
+	}
+
+	/**
+	 * @param b
+	 *            block
+	 * @return the solutes of block b
+	 */
+	SoluteSpecies[] getBlock(int b) {
+		return _blocks[b];
+	}
+
+	/**
+	 * @param b
+	 *            block
+	 * @return the rate kernels of the solutes of block b
+	 */
+	RateKernel[] getBlockKernels(int b) {
+		return _blockKernels[b];
+	}
+
+	/**
+	 * @param b
+	 *            block
+	 * @return the factor cache for the kernels of block b, or null
+	 */
+	FactorCache getBlockCache(int b) {
+		return _blockCaches[b];
+	}
+
+	/**
+	 * @param b
+	 *            block
+	 * @return the pairs of solutes of block b where the rate of one depends
+	 *         on the other (see computeCoupling), or null if there are none
+	 */
+	boolean[][] getBlockCoupling(int b) {
+		return _blockCouplings[b];
+	}
+
+	/**
+	 * @return the rate kernels of the solutes, in the order of the solutes
+	 */
+	RateKernel[] getKernels() {
+		return _kernels;
+	}
+
+	/**
+	 * @return the pairs of solutes where the rate of one depends on the
+	 *         other (see computeCoupling), or null if there are none
+	 */
+	boolean[][] getCoupling() {
+		return _coupling;
+	}
+
+	/**
+	 * @return the factor cache for the kernels of all solutes (used only by
+	 *         the thread calling the solvers), or null
+	 */
+	FactorCache getCache() {
+		return _cache;
+	}
+
+	/**
+	 * @param c
+	 *            one of the solutes of the present call
+	 * @return the factor cache for the kernel of c alone
+	 */
+	FactorCache getCache(SoluteSpecies c) {
+		for (int i = 0; i < _solutes.length; i++)
+			if (_solutes[i] == c)
+				return _soluteCaches[i];
+		throw new ModelRuntimeException("solute " + c._name
+				+ " not prepared for the solvers");
+	}
+
+	/**
+	 * Allocate the Newton-Krylov solver for a number of solutes, if not
+	 * allocated for at least as many yet
+	 * 
+	 * @param solutes
+	 *            number of solutes
+	 * @throws MultigridSystemNotSetException
+	 */
+	void prepareNewtonKrylov(int solutes)
+			throws MultigridSystemNotSetException {
+		if ((_newtonKrylov == null)
+				|| (_newtonKrylov.getNumberOfSolutes() < solutes))
+			_newtonKrylov = new NewtonKrylov(solutes);
+	}
+
+	/**
+	 * @return the Newton-Krylov solver (see prepareNewtonKrylov)
+	 */
+	NewtonKrylov getNewtonKrylov() {
+		return _newtonKrylov;
+	}
+
+	/**
+	 * @return an array with a value per solute, contents are undefined
+	 */
+	float[] getSoluteValues() {
+		return _soluteValues;
+	}
+
+	/**
+	 * Find the pairs of different solutes where the rate of one depends on
+	 * the other
+	 * 
+	 * @param c
+	 * @param kernels
+	 *            rate kernels of the solutes
+	 * @return coupled[i][j] true if the rate of solute i depends on solute
+	 *         j, i != j, null if there are no such pairs
+	 */
+	private static boolean[][] computeCoupling(SoluteSpecies[] c,
+			RateKernel[] kernels) {
+		int n = c.length;
+		boolean[][] coupled = new boolean[n][n];
+		boolean any = false;
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++) {
+				coupled[i][j] = (i != j) && kernels[i].dependsOn(c[j]);
+				any |= coupled[i][j];
+			}
+		return (any ? coupled : null);
+	}
+
+	/**
+	 * Get the relative diffusion for a boundary layer. The same relative
+	 * diffusion is used while the boundary layer is the same, so that it is
+	 * updated only where the biomass changed between two calls to the
+	 * solvers.
+	 * 
+	 * @param bl
+	 * @return the relative diffusion
+	 * @throws MultigridSystemNotSetException
+	 */
+	RelativeDiffusion getRelativeDiffusion(BoundaryLayer bl)
+			throws MultigridSystemNotSetException {
+		if ((_relativeDiffusion == null) || (_boundaryLayer != bl)) {
+			_relativeDiffusion = new RelativeDiffusion();
+			_boundaryLayer = bl;
+		}
+		return _relativeDiffusion;
+	}
+}
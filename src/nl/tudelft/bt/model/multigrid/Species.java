@@ -25,4 +25,15 @@ public abstract class Species extends MultigridVariable {
 		return getValue() * _voxelVolume;
 	}
 
+	/**
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 * @return the total mass of solute in grid node (g, p)
+	 */
+	public float getTotalMassInPresentVoxel(int g, int p) {
+		return getValue(g, p) * _voxelVolume;
+	}
+
 }
@@ -0,0 +1,139 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid;
+
+/**
+ * Coefficients of the 7-point diffusion stencil at the nodes of a grid order,
+ * for a given relative diffusion. The coefficient of a neighbour combines the
+ * relative diffusivities of the node and of the neighbour and the grid
+ * spacing, so that the L-operator of a solute with diffusivity dc at node p
+ * is
+ * 
+ * <pre>
+ * dc * sum(coefficient[n] * (u[n] - u[p])) + r
+ * </pre>
+ * 
+ * and its derivative is -dc * diagonal + dr. The relative diffusion at the
+ * face between two nodes is the mean of their relative diffusion, or is
+ * given per face (see FaceDiffusion). The coefficients are the same
+ * for every solute and are computed only for the nodes inside the boundary
+ * layer. Coefficients of node p are stored at positions p * size + DIAGONAL
+ * to p * size + size - 1 of coefficients. For planar matrices (2D) there are
+ * no neighbours along k and size is 5 instead of 7.
+ */
+class Stencil {
+	// offsets of the sum of the coefficients and of the coefficients of the
+	// neighbours at i - 1, i + 1, j - 1, j + 1, k - 1 and k + 1
+	static final int DIAGONAL = 0;
+
+	static final int XM = 1;
+
+	static final int XP = 2;
+
+	static final int YM = 3;
+
+	static final int YP = 4;
+
+	static final int ZM = 5;
+
+	static final int ZP = 6;
+
+	// number of coefficients per node
+	final int size;
+
+	final float[] coefficients;
+
+	/**
+	 * Compute the coefficients at the nodes inside the boundary layer
+	 * 
+	 * @param d
+	 *            matrix of the relative diffusion at grid order g
+	 * @param active
+	 *            nodes inside the boundary layer at grid order g
+	 * @param g
+	 *            grid order
+	 * @param faces
+	 *            relative diffusion at the faces of grid order g, per
+	 *            direction, or null to compute it from d
+	 */
+	Stencil(PaddedMatrix d, ActiveVoxels active, int g, float[][] faces) {
+		size = (d.isPlanar() ? 5 : 7);
+		coefficients = new float[d.data.length * size];
+		update(d, active, g, null, faces);
+	}
+
+	/**
+	 * Compute the coefficients again at the nodes inside the boundary layer
+	 * that are in the marked tiles
+	 * 
+	 * @param d
+	 *            matrix of the relative diffusion at grid order g
+	 * @param active
+	 *            nodes inside the boundary layer at grid order g
+	 * @param g
+	 *            grid order
+	 * @param tiles
+	 *            tiles of grid order g to update, null to update all nodes
+	 * @param faces
+	 *            relative diffusion at the faces of grid order g, per
+	 *            direction, or null to compute it from d
+	 */
+	void update(PaddedMatrix d, ActiveVoxels active, int g, DirtyTiles tiles,
+			float[][] faces) {
+		float[] dd = d.data;
+		int si = d.si;
+		int sj = d.sj;
+		int sk = d.sk;
+		// spacings may differ between directions in semi-coarsened grids
+		float hi = MultigridVariable.getGridSpacing(g, 0);
+		float hj = MultigridVariable.getGridSpacing(g, 1);
+		float hk = (size == 7 ? MultigridVariable.getGridSpacing(g, 2) : 1);
+		float h2i = 0.5f / (hi * hi);
+		float h2j = 0.5f / (hj * hj);
+		float h2k = 0.5f / (hk * hk);
+		if ((tiles != null) && tiles.isMostlyMarked())
+			tiles = null;
+		float[] c = coefficients;
+		int[] runs = active.getRuns();
+		for (int q = 0; q < runs.length; q += ActiveVoxels.RUN) {
+			for (int p = runs[q]; p <= runs[q + 1]; p++) {
+				int i = d.getI(p);
+				int j = d.getJ(p);
+				int k = d.getK(p);
+				if ((tiles != null) && !tiles.isMarkedAt(i - 1, j - 1, k - 1))
+					continue;
+				int s = p * size;
+				// twice the relative diffusion at the faces
+				float xm, xp, ym, yp;
+				if (faces == null) {
+					float dcc = dd[p];
+					xm = dd[p - si] + dcc;
+					xp = dd[p + si] + dcc;
+					ym = dd[p - sj] + dcc;
+					yp = dd[p + sj] + dcc;
+				} else {
+					xm = 2 * faces[0][p - si];
+					xp = 2 * faces[0][p];
+					ym = 2 * faces[1][p - sj];
+					yp = 2 * faces[1][p];
+				}
+				c[s + XM] = xm * h2i;
+				c[s + XP] = xp * h2i;
+				c[s + YM] = ym * h2j;
+				c[s + YP] = yp * h2j;
+				c[s + DIAGONAL] = c[s + XM] + c[s + XP] + c[s + YM]
+						+ c[s + YP];
+				if (size == 7) {
+					float zm = (faces == null ? dd[p - sk] + dd[p]
+							: 2 * faces[2][p - sk]);
+					float zp = (faces == null ? dd[p + sk] + dd[p]
+							: 2 * faces[2][p]);
+					c[s + ZM] = zm * h2k;
+					c[s + ZP] = zp * h2k;
+					c[s + DIAGONAL] += c[s + ZM] + c[s + ZP];
+				}
+			}
+		}
+	}
+}
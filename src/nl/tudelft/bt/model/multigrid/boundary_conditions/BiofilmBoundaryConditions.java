@@ -5,6 +5,8 @@ package nl.tudelft.bt.model.multigrid.boundary_conditions;
 
 import java.io.Serializable;
 
+import nl.tudelft.bt.model.multigrid.PaddedMatrix;
+
 /**
  * Implements boundary conditions for a planar biofilm type of morphology
  * where bottom is zero-flux border, sides are cyclic borders and top is
@@ -20,29 +22,39 @@ public class BiofilmBoundaryConditions
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions#refreshBoundaryConditions(float[][][])
+	 * @see nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions#refreshBoundaryConditions(nl.tudelft.bt.model.multigrid.PaddedMatrix)
 	 */
-	public void refreshBoundaryConditions(float[][][] u) {
-		int l = u[0][0].length - 2;
-		int m = u[0].length - 2;
-		int n = u.length - 2;
+	public void refreshBoundaryConditions(PaddedMatrix u) {
+		int l = u.getL();
+		int m = u.getM();
+		int n = u.getN();
+		float[] d = u.data;
+		int si = u.si;
+		int sj = u.sj;
+		int sk = u.sk;
 
 		for (int i = 1; i <= n; i++) {
-			for (int j = 1; j <= m; j++) {
-				// cyclic borders (sides)
-				u[i][j][0] = u[i][j][l];
-				u[i][j][l + 1] = u[i][j][1];
+			// planar matrices have no padding along k
+			if (!u.isPlanar()) {
+				for (int j = 1; j <= m; j++) {
+					// cyclic borders (sides)
+					int p = i * si + j * sj;
+					d[p] = d[p + l];
+					d[p + l + 1] = d[p + 1];
+				}
 			}
 			for (int k = 1; k <= l; k++) {
 				// cyclic borders (sides)
-				u[i][0][k] = u[i][m][k];
-				u[i][m + 1][k] = u[i][1][k];
+				int p = i * si + k * sk;
+				d[p] = d[p + m * sj];
+				d[p + (m + 1) * sj] = d[p + sj];
 			}
 		}
 		for (int j = 1; j <= m; j++) {
 			for (int k = 1; k <= l; k++) {
 				// zero flux borders (bottom)
-				u[0][j][k] = u[1][j][k];
+				int p = j * sj + k * sk;
+				d[p] = d[p + si];
 				//top is constant value, so it is not changed here
 				//u[n + 1][j][k] = u[n][j][k];
 			}
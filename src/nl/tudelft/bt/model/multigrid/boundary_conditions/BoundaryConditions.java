@@ -3,6 +3,8 @@
  */
 package nl.tudelft.bt.model.multigrid.boundary_conditions;
 
+import nl.tudelft.bt.model.multigrid.PaddedMatrix;
+
 /**
  * Interface for the boundary conditions to be used in the multigrid method
  * 
@@ -14,7 +16,7 @@ public interface BoundaryConditions {
 	 * 
 	 * @param u a 3D matrix to update boundary conditions in.
 	 */
-	public void refreshBoundaryConditions(float u[][][]);
+	public void refreshBoundaryConditions(PaddedMatrix u);
 	/**
 	 * Implements the shape of the substratum carrier for the multigrid
 	 * computation
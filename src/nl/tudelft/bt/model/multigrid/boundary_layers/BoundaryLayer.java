@@ -1,7 +1,11 @@
 package nl.tudelft.bt.model.multigrid.boundary_layers;
 
 import nl.tudelft.bt.model.exceptions.MultigridSystemNotSetException;
+import nl.tudelft.bt.model.multigrid.ActiveVoxels;
+import nl.tudelft.bt.model.multigrid.DirtyTiles;
+import nl.tudelft.bt.model.multigrid.MultigridUtils;
 import nl.tudelft.bt.model.multigrid.MultigridVariable;
+import nl.tudelft.bt.model.multigrid.PaddedMatrix;
 import nl.tudelft.bt.model.multigrid.ParticulateSpecies;
 import nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions;
 
@@ -11,6 +15,23 @@ import nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions;
  * @author Joao Xavier (j.xavier@tnw.tudelft.nl)
  */
 abstract public class BoundaryLayer extends MultigridVariable {
+	// voxels inside the boundary layer at each grid order
+	private ActiveVoxels[] _active;
+
+	// tiles where the boundary layer changed at the last update of the
+	// multigrid copies, at each grid order
+	private DirtyTiles[] _changes;
+
+	// the boundary layer in the finest grid at the last update of the
+	// multigrid copies
+	private float[] _previous;
+
+	// occupancy of the finest grid by biomass at the last call to
+	// updateBiomassOccupancy and the tiles where it changed
+	private boolean[][][] _biomass;
+
+	private DirtyTiles _biomassChanges;
+
 	/**
 	 * New boundary layer object
 	 * 
@@ -22,7 +43,9 @@ abstract public class BoundaryLayer extends MultigridVariable {
 
 	/**
 	 * Compute the value of the boundary layer based on biomass
-	 * composition and the boundary conditions
+	 * composition and the boundary conditions. Implementations may update
+	 * only the tiles where the occupancy by biomass changed, as found by the
+	 * last call to updateBiomassOccupancy.
 	 * 
 	 * @param b
 	 * @param bc
@@ -30,6 +53,135 @@ abstract public class BoundaryLayer extends MultigridVariable {
 	public abstract void setBoundaryLayer(ParticulateSpecies[] b,
 			BoundaryConditions bc);
 
+	/**
+	 * Find the voxels of the finest grid occupied by biomass and mark the
+	 * tiles where the occupancy changed since the last call (all tiles at
+	 * the first call). Must be called before setBoundaryLayer.
+	 * 
+	 * @param b
+	 */
+	public void updateBiomassOccupancy(ParticulateSpecies[] b) {
+		if (_biomass == null) {
+			_biomass = new boolean[_n][_m][_l];
+			_biomassChanges = new DirtyTiles(_n, _m, _l);
+			_biomassChanges.markAll();
+		} else
+			_biomassChanges.clear();
+		PaddedMatrix[] f = new PaddedMatrix[b.length];
+		for (int sp = 0; sp < b.length; sp++)
+			f[sp] = b[sp]._mg[_order - 1];
+		PaddedMatrix bl = _mg[_order - 1];
+		int sk = bl.sk;
+		for (int i = 0; i < _n; i++)
+			for (int j = 0; j < _m; j++) {
+				boolean[] row = _biomass[i][j];
+				int p = bl.index(i + 1, j + 1, 1);
+				for (int k = 0; k < _l; k++, p += sk) {
+					boolean occupied = false;
+					for (int sp = 0; sp < f.length; sp++)
+						if (f[sp].data[p] > 0) {
+							occupied = true;
+							break;
+						}
+					if (occupied != row[k]) {
+						row[k] = occupied;
+						_biomassChanges.mark(i, j, k);
+					}
+				}
+			}
+	}
+
+	/**
+	 * @return occupancy of the finest grid by biomass (indexes starting at 0)
+	 *         at the last call to updateBiomassOccupancy
+	 */
+	public boolean[][][] getBiomassOccupancy() {
+		return _biomass;
+	}
+
+	/**
+	 * @return tiles of the finest grid where the occupancy by biomass changed
+	 *         at the last call to updateBiomassOccupancy, null if it was
+	 *         never called
+	 */
+	public DirtyTiles getBiomassChanges() {
+		return _biomassChanges;
+	}
+
 	public void setThickness(float h) {
 	};
+
+	/**
+	 * Restrict the boundary layer to the coarser grids and find the voxels
+	 * inside it at every grid order. Must be called after setBoundaryLayer
+	 * for the solvers to use the new boundary layer. Only the tiles where
+	 * the boundary layer in the finest grid changed since the last call are
+	 * restricted.
+	 */
+	public void updateMultigridCopies() {
+		int f = _order - 1;
+		PaddedMatrix bl = _mg[f];
+		if (_changes == null) {
+			_changes = new DirtyTiles[_order];
+			for (int g = 0; g < _order; g++)
+				_changes[g] = new DirtyTiles(_mg[g].getN(), _mg[g].getM(),
+						_mg[g].getL());
+			_previous = new float[bl.data.length];
+			_active = new ActiveVoxels[_order];
+			_changes[f].markAll();
+		} else {
+			// compare also the padding, changes there are attributed to the
+			// nearest voxel
+			_changes[f].clear();
+			float[] d = bl.data;
+			for (int p = 0; p < d.length; p++)
+				if (d[p] != _previous[p])
+					_changes[f].mark(clip(bl.getI(p), _n), clip(bl.getJ(p), _m),
+							clip(bl.getK(p), _l));
+		}
+		System.arraycopy(bl.data, 0, _previous, 0, _previous.length);
+		for (int g = f; g > COARSEST; g--) {
+			_changes[g - 1].clear();
+			_changes[g].restrictTo(_changes[g - 1]);
+			MultigridUtils.restrict(_mg[g], _mg[g - 1], _changes[g - 1],
+					_boundaryConditions);
+		}
+		for (int g = 0; g < _order; g++)
+			if (!_changes[g].isEmpty())
+				_active[g] = new ActiveVoxels(_mg[g]);
+	}
+
+	/**
+	 * @param x
+	 *            index in a padded matrix
+	 * @param size
+	 *            number of voxels along the dimension
+	 * @return index of the nearest voxel, starting at 0
+	 */
+	private static int clip(int x, int size) {
+		return Math.min(Math.max(x - 1, 0), size - 1);
+	}
+
+	/**
+	 * @param g
+	 *            grid order
+	 * @return tiles where the boundary layer changed at the last update of
+	 *         the multigrid copies, at grid order g
+	 */
+	public DirtyTiles getChanges(int g) {
+		if (_changes == null)
+			updateMultigridCopies();
+		return _changes[g];
+	}
+
+	/**
+	 * @param g
+	 *            grid order
+	 * @return the voxels inside the boundary layer at grid order g
+	 */
+	public ActiveVoxels getActiveVoxels(int g) {
+		if (_active == null)
+			updateMultigridCopies();
+		return _active[g];
+	}
 }
\ No newline at end of file
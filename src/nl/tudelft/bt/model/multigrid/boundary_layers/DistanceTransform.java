@@ -0,0 +1,272 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.multigrid.boundary_layers;
+
+/**
+ * Exact Euclidean distance transform of a grid, in time linear in the number
+ * of grid nodes. Computes, for every node, the squared distance (in grid
+ * spacings) to the nearest site node. The transform is separable: the 1D
+ * transform along each dimension is computed as the lower envelope of
+ * parabolas (Felzenszwalb and Huttenlocher, Distance Transforms of Sampled
+ * Functions, 2004). Dimensions may be cyclic, in which case distances are
+ * measured across the border, as the cyclic boundary conditions do.
+ * <p>
+ * Buffers are allocated once, so that the transform may be computed at every
+ * iteration without allocating memory.
+ */
+public class DistanceTransform {
+	private static final float INFINITY = Float.POSITIVE_INFINITY;
+
+	private final int _n;
+
+	private final int _m;
+
+	private final int _l;
+
+	private final boolean _cyclicI;
+
+	private final boolean _cyclicJ;
+
+	private final boolean _cyclicK;
+
+	// squared distances, result of the transform, the distance of node
+	// (i, j, k) is at position (i * m + j) * l + k
+	private final float[] _d;
+
+	// buffers for the 1D transforms, long enough for lines extended on both
+	// sides (cyclic dimensions)
+	private final float[] _f;
+
+	private final float[] _g;
+
+	private final int[] _v;
+
+	private final double[] _z;
+
+	// nodes of the box along each dimension
+	private final int[] _mapI;
+
+	private final int[] _mapJ;
+
+	private final int[] _mapK;
+
+	/**
+	 * Create a distance transform for a grid of n x m x l nodes
+	 * 
+	 * @param n
+	 * @param m
+	 * @param l
+	 * @param cyclicI
+	 *            true if dimension i is cyclic
+	 * @param cyclicJ
+	 *            true if dimension j is cyclic
+	 * @param cyclicK
+	 *            true if dimension k is cyclic
+	 */
+	public DistanceTransform(int n, int m, int l, boolean cyclicI,
+			boolean cyclicJ, boolean cyclicK) {
+		_n = n;
+		_m = m;
+		_l = l;
+		_cyclicI = cyclicI;
+		_cyclicJ = cyclicJ;
+		_cyclicK = cyclicK;
+		_d = new float[n * m * l];
+		int length = 3 * Math.max(n, Math.max(m, l));
+		_f = new float[length];
+		_g = new float[length];
+		_v = new int[length];
+		_z = new double[length + 1];
+		_mapI = new int[n];
+		_mapJ = new int[m];
+		_mapK = new int[l];
+	}
+
+	/**
+	 * Compute the squared distance of every node to the nearest site
+	 * 
+	 * @param sites
+	 *            n x m x l matrix, true for the site nodes
+	 * @return the squared distances in grid spacings (infinity if there are
+	 *         no sites), the distance of node (i, j, k) is at position
+	 *         (i * m + j) * l + k. The array is owned by this object and
+	 *         overwritten by the next call.
+	 */
+	public float[] computeSquaredDistances(boolean[][][] sites) {
+		int[] box = {0, _n - 1, 0, _m - 1, 0, _l - 1};
+		return computeSquaredDistances(sites, box);
+	}
+
+	/**
+	 * Compute the squared distance of the nodes in a box to the nearest site
+	 * inside the box. The distance is exact for the nodes whose distance to
+	 * the border of the box is larger than their distance to the nearest
+	 * site, so that a box extended by r on each side of a region gives the
+	 * exact distances up to r in that region. Along cyclic dimensions, the
+	 * box may extend past the border of the grid.
+	 * 
+	 * @param sites
+	 *            n x m x l matrix, true for the site nodes
+	 * @param box
+	 *            ranges {i0, i1, j0, j1, k0, k1} (inclusive) of the nodes of
+	 *            the box
+	 * @return the squared distances in grid spacings, only set inside the
+	 *         box, the distance of node (i, j, k) is at position
+	 *         (i * m + j) * l + k. The array is owned by this object and
+	 *         overwritten by the next call.
+	 */
+	public float[] computeSquaredDistances(boolean[][][] sites, int[] box) {
+		int li = mapRange(box[0], box[1], _n, _cyclicI, _mapI);
+		int lj = mapRange(box[2], box[3], _m, _cyclicJ, _mapJ);
+		int lk = mapRange(box[4], box[5], _l, _cyclicK, _mapK);
+		// a line is cyclic only if it covers a whole cyclic dimension
+		boolean ci = _cyclicI & (li == _n);
+		boolean cj = _cyclicJ & (lj == _m);
+		boolean ck = _cyclicK & (lk == _l);
+		// strides of i and j
+		int si = _m * _l;
+		int sj = _l;
+		float[] d = _d;
+		for (int a = 0; a < li; a++)
+			for (int b = 0; b < lj; b++) {
+				int i = _mapI[a];
+				int j = _mapJ[b];
+				boolean[] s = sites[i][j];
+				int p = i * si + j * sj;
+				for (int c = 0; c < lk; c++) {
+					int k = _mapK[c];
+					d[p + k] = (s[k] ? 0 : INFINITY);
+				}
+			}
+		// transform along k
+		if (lk > 1)
+			for (int a = 0; a < li; a++)
+				for (int b = 0; b < lj; b++) {
+					int p = _mapI[a] * si + _mapJ[b] * sj;
+					for (int c = 0; c < lk; c++)
+						_f[c] = d[p + _mapK[c]];
+					transform(lk, ck);
+					for (int c = 0; c < lk; c++)
+						d[p + _mapK[c]] = _g[c];
+				}
+		// transform along j
+		if (lj > 1)
+			for (int a = 0; a < li; a++)
+				for (int c = 0; c < lk; c++) {
+					int p = _mapI[a] * si + _mapK[c];
+					for (int b = 0; b < lj; b++)
+						_f[b] = d[p + _mapJ[b] * sj];
+					transform(lj, cj);
+					for (int b = 0; b < lj; b++)
+						d[p + _mapJ[b] * sj] = _g[b];
+				}
+		// transform along i
+		if (li > 1)
+			for (int b = 0; b < lj; b++)
+				for (int c = 0; c < lk; c++) {
+					int p = _mapJ[b] * sj + _mapK[c];
+					for (int a = 0; a < li; a++)
+						_f[a] = d[p + _mapI[a] * si];
+					transform(li, ci);
+					for (int a = 0; a < li; a++)
+						d[p + _mapI[a] * si] = _g[a];
+				}
+		return d;
+	}
+
+	/**
+	 * Find the grid nodes of a range along a dimension, clipping the range
+	 * to the grid or, for cyclic dimensions, wrapping it around the border
+	 * 
+	 * @param first
+	 * @param last
+	 * @param size
+	 *            number of nodes along the dimension
+	 * @param cyclic
+	 * @param map
+	 *            array to write the nodes to, in order
+	 * @return number of nodes of the range
+	 */
+	private static int mapRange(int first, int last, int size, boolean cyclic,
+			int[] map) {
+		if (!cyclic) {
+			first = Math.max(first, 0);
+			last = Math.min(last, size - 1);
+		} else if (last - first + 1 >= size) {
+			first = 0;
+			last = size - 1;
+		}
+		int length = 0;
+		for (int x = first; x <= last; x++)
+			map[length++] = ((x % size) + size) % size;
+		return length;
+	}
+
+	/**
+	 * 1D transform of the first length values of _f into _g. For cyclic
+	 * lines, half a line is added on each side from the other side, since
+	 * the nearest image of every site is at most half a line away.
+	 * 
+	 * @param length
+	 * @param cyclic
+	 */
+	private void transform(int length, boolean cyclic) {
+		if (!cyclic) {
+			lowerEnvelope(length, 0);
+			return;
+		}
+		int e = length / 2 + 1;
+		System.arraycopy(_f, 0, _f, e, length);
+		System.arraycopy(_f, length, _f, 0, e);
+		System.arraycopy(_f, e, _f, e + length, e);
+		lowerEnvelope(length + 2 * e, e);
+	}
+
+	/**
+	 * Compute the lower envelope of the parabolas rooted at the finite values
+	 * of _f[0, size) and evaluate it at [offset, offset + length) into _g[0,
+	 * length), where length = size - 2 * offset
+	 * 
+	 * @param size
+	 *            number of values of _f
+	 * @param offset
+	 *            first position evaluated
+	 */
+	private void lowerEnvelope(int size, int offset) {
+		int length = size - 2 * offset;
+		// build the envelope
+		int k = -1;
+		for (int q = 0; q < size; q++) {
+			if (_f[q] == INFINITY)
+				continue;
+			double s = 0;
+			while (k >= 0) {
+				int p = _v[k];
+				s = ((_f[q] + (double) q * q) - (_f[p] + (double) p * p))
+						/ (2.0 * (q - p));
+				if (s > _z[k])
+					break;
+				k--;
+			}
+			k++;
+			_v[k] = q;
+			_z[k] = (k == 0 ? Double.NEGATIVE_INFINITY : s);
+			_z[k + 1] = Double.POSITIVE_INFINITY;
+		}
+		if (k < 0) {
+			// no sites
+			for (int q = 0; q < length; q++)
+				_g[q] = INFINITY;
+			return;
+		}
+		// evaluate the envelope
+		k = 0;
+		for (int q = offset; q < offset + length; q++) {
+			while (_z[k + 1] < q)
+				k++;
+			float dq = q - _v[k];
+			_g[q - offset] = dq * dq + _f[_v[k]];
+		}
+	}
+}
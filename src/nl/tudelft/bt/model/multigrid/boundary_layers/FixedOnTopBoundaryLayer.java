@@ -1,6 +1,7 @@
 package nl.tudelft.bt.model.multigrid.boundary_layers;
 
 import nl.tudelft.bt.model.exceptions.MultigridSystemNotSetException;
+import nl.tudelft.bt.model.multigrid.PaddedMatrix;
 import nl.tudelft.bt.model.multigrid.ParticulateSpecies;
 import nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions;
 
@@ -20,15 +21,15 @@ public class FixedOnTopBoundaryLayer extends BoundaryLayer {
 
 	public void setBoundaryLayer(ParticulateSpecies[] b,
 			BoundaryConditions bc) {
-		float[][][] bl = _mg[_order - 1];
-		int n = bl.length;
-		int m = bl[0].length;
-		int l = bl[0][0].length;
+		PaddedMatrix bl = _mg[_order - 1];
+		int n = bl.ni;
+		int m = bl.nj;
+		int l = bl.nk;
 
 		//  boundary layer on top
 		for (int i = n - 1; i >= n - 3; i--)
 			for (int j = 0; j < m; j++)
 				for (int k = 0; k < l; k++)
-					bl[i][j][k] = 1;
+					bl.set(i, j, k, 1);
 	}
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package nl.tudelft.bt.model.multigrid.boundary_layers;
 import nl.tudelft.bt.model.Model;
 import nl.tudelft.bt.model.exceptions.InvalidValueException;
 import nl.tudelft.bt.model.exceptions.ModelException;
+import nl.tudelft.bt.model.multigrid.PaddedMatrix;
 import nl.tudelft.bt.model.multigrid.ParticulateSpecies;
 import nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions;
 /**
@@ -37,17 +38,17 @@ public class FrontBoundaryLayer extends BoundaryLayer {
 	 */
 	public void setBoundaryLayer(ParticulateSpecies[] b,
 			BoundaryConditions bc) {
-		float[][][] bl = _mg[_order - 1];
-		int n = bl.length;
-		int m = bl[0].length;
-		int l = bl[0][0].length;
+		PaddedMatrix bl = _mg[_order - 1];
+		int n = bl.ni;
+		int m = bl.nj;
+		int l = bl.nk;
 		// find the boundary layer height
 		int h = (int) ((Model.model().getCurrentBiofilmHeight() + _h) / _voxelSide) + 1;
 		for (int i = 0; i < n; i++) {
 			float v = (i > h ? 1.0f : 0.0f);
 			for (int j = 0; j < m; j++)
 				for (int k = 0; k < l; k++)
-					bl[i][j][k] = v;
+					bl.set(i, j, k, v);
 		}
 	}
 	/**
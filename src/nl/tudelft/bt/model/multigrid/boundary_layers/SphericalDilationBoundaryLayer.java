@@ -2,21 +2,60 @@ package nl.tudelft.bt.model.multigrid.boundary_layers;
 
 import nl.tudelft.bt.model.Model;
 import nl.tudelft.bt.model.exceptions.MultigridSystemNotSetException;
+import nl.tudelft.bt.model.multigrid.DirtyTiles;
 import nl.tudelft.bt.model.multigrid.MultigridUtils;
+import nl.tudelft.bt.model.multigrid.PaddedMatrix;
 import nl.tudelft.bt.model.multigrid.ParticulateSpecies;
 import nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions;
 import nl.tudelft.bt.model.util.ExtraMath;
 
 /**
  * Boundary layer that follows the shape of the biomass, set at a distance of
- * the biomass.
+ * the biomass. A liquid node is inside the boundary layer if there is
+ * biomass at an offset (di, dj, dk) from it, in voxels, with |di| <= R, |dj|
+ * <= sqrt(di^2 + R^2) and |dk| <= sqrt(di^2 + dj^2 + R^2), where R is the
+ * dilation radius, the sides j and k being cyclic. The distance of every
+ * node to the nearest biomass along the rows of the last dimension is
+ * computed first, in time linear in the number of nodes, so that only the
+ * rows of the other dimensions are searched. Optionally (see
+ * setEuclideanDilation), the boundary layer is instead the exact Euclidean
+ * dilation of the biomass, computed by a distance transform. The boundary
+ * layer is only updated where the biomass changed.
  * 
  * @author Joao Xavier (j.xavier@tnw.tudelft.nl)
  */
 public class SphericalDilationBoundaryLayer extends BoundaryLayer {
 	float _dilationRadius;
 
-	boolean[][][] _totalBiomass;
+	// true to dilate the biomass by the Euclidean sphere of the dilation
+	// radius
+	private boolean _euclidean = false;
+
+	// computes the distances of the liquid to the biomass, for the
+	// Euclidean dilation
+	private DistanceTransform _distance;
+
+	// distance of every node to the nearest biomass along the row of the
+	// last dimension (j in 2D, k in 3D), in voxels, Integer.MAX_VALUE if
+	// there is no biomass in the row, the distance of node (i, j, k) is at
+	// position (i * m + j) * l + k
+	private int[] _rowDistance;
+
+	// maximum |dj| for each |di|, and maximum |dk| for each |di| and |dj|
+	// (3D only), of the offsets of the biomass searched
+	private int[] _widthJ;
+
+	private int[][] _widthK;
+
+	// largest offset searched along any dimension
+	private int _reach;
+
+	// false if the boundary layer must be computed everywhere at the next
+	// update, e.g. after the dilation radius is changed
+	private boolean _valid;
+
+	// tiles to update
+	private DirtyTiles _region;
 
 	/**
 	 * 
@@ -29,36 +68,120 @@ public class SphericalDilationBoundaryLayer extends BoundaryLayer {
 			throws MultigridSystemNotSetException {
 		super();
 		_dilationRadius = dilationRadius;
-		// allocate space for the total biomass matrix
-		_totalBiomass = new boolean[_n][_m][_l];
+		_rowDistance = new int[_n * _m * _l];
+		_region = new DirtyTiles(_n, _m, _l);
 	}
 
+	/**
+	 * Set the boundary layer at the nodes within the dilation radius of
+	 * biomass. Only the tiles within the dilation radius of the tiles where
+	 * the occupancy by biomass changed are updated, unless these are most of
+	 * the grid.
+	 */
 	public void setBoundaryLayer(ParticulateSpecies[] b,
 			BoundaryConditions bc) {
-		float[][][] bl = _mg[_order - 1];
-		// get the information concerning all the biomass
-		for (int i = 0; i < _n; i++)
-			for (int j = 0; j < _m; j++)
-				for (int k = 0; k < _l; k++) {
-					_totalBiomass[i][j][k] = false;
-					for (int sp = 0; sp < b.length; sp++)
-						if (b[sp]._mg[_order - 1][i + 1][j + 1][k + 1] > 0) {
-							_totalBiomass[i][j][k] = true;
-							break;
-						}
+		if (getBiomassChanges() == null)
+			updateBiomassOccupancy(b);
+		boolean[][][] biomass = getBiomassOccupancy();
+		if (!_valid)
+			computeWidths();
+		float r = _dilationRadius / _voxelSide;
+		float r2 = r * r;
+		int reach = (_euclidean ? (int) Math.ceil(r) : _reach);
+		DirtyTiles changed = getBiomassChanges();
+		_region.clear();
+		_region.markAll(changed);
+		_region.dilate(reach);
+		if (!_valid || _region.isMostlyMarked()) {
+			PaddedMatrix bl = _mg[_order - 1];
+			MultigridUtils.setValues(bl, 1.0f);
+			int[] box = {0, _n - 1, 0, _m - 1, 0, _l - 1};
+			if (_euclidean)
+				// squared distance of every node to the biomass, in voxels
+				setBoundaryLayer(bc, _distance
+						.computeSquaredDistances(biomass), r2, box);
+			else {
+				computeRowDistances(biomass);
+				setBoundaryLayer(bc, box);
+			}
+			_valid = true;
+			return;
+		}
+		if (_region.isEmpty())
+			return;
+		float[] d2 = null;
+		int[] box = new int[6];
+		if (_euclidean) {
+			// distances inside the tiles are exact if the box is extended by
+			// the dilation radius
+			_region.getBoundingBox(box);
+			for (int x = 0; x < 6; x++)
+				box[x] += (x % 2 == 0 ? -reach : reach);
+			d2 = _distance.computeSquaredDistances(biomass, box);
+		} else
+			computeRowDistances(biomass);
+		for (int t = 0; t < _region.getNumberOfTiles(); t++) {
+			if (!_region.isMarked(t))
+				continue;
+			_region.getTile(t, box);
+			if (_euclidean)
+				setBoundaryLayer(bc, d2, r2, box);
+			else
+				setBoundaryLayer(bc, box);
+		}
+	}
+
+	/**
+	 * Set the boundary layer at the nodes of a box by the Euclidean dilation
+	 * of the biomass
+	 * 
+	 * @param bc
+	 * @param d2
+	 *            squared distances of the nodes to the biomass, in voxels,
+	 *            as computed by DistanceTransform
+	 * @param r2
+	 *            square of the dilation radius, in voxels
+	 * @param box
+	 *            ranges {i0, i1, j0, j1, k0, k1} (inclusive) of the nodes
+	 */
+	private void setBoundaryLayer(BoundaryConditions bc, float[] d2,
+			float r2, int[] box) {
+		PaddedMatrix bl = _mg[_order - 1];
+		for (int i = box[0]; i <= box[1]; i++)
+			for (int j = box[2]; j <= box[3]; j++)
+				for (int k = box[4]; k <= box[5]; k++) {
+					// biomass, carrier or liquid within the dilation radius
+					// of biomass
+					if ((d2[(i * _m + j) * _l + k] <= r2)
+							| bc.isCarrier(i, j, k))
+						bl.set(i + 1, j + 1, k + 1, 0);
+					else
+						bl.set(i + 1, j + 1, k + 1, 1);
 				}
-		MultigridUtils.setValues(bl, 1.0f);
-		for (int i = 0; i < _n; i++)
-			for (int j = 0; j < _m; j++)
-				for (int k = 0; k < _l; k++)
-					if (_totalBiomass[i][j][k] | bc.isCarrier(i, j, k)) {
+	}
+
+	/**
+	 * Set the boundary layer at the nodes of a box by searching the biomass
+	 * around every node, with the distances along the rows computed
+	 * 
+	 * @param bc
+	 * @param box
+	 *            ranges {i0, i1, j0, j1, k0, k1} (inclusive) of the nodes
+	 */
+	private void setBoundaryLayer(BoundaryConditions bc, int[] box) {
+		PaddedMatrix bl = _mg[_order - 1];
+		boolean[][][] biomass = getBiomassOccupancy();
+		for (int i = box[0]; i <= box[1]; i++)
+			for (int j = box[2]; j <= box[3]; j++)
+				for (int k = box[4]; k <= box[5]; k++) {
+					if (biomass[i][j][k] | bc.isCarrier(i, j, k))
 						//if this is biomass,
-						bl[i + 1][j + 1][k + 1] = 0;
-					} else {
+						bl.set(i + 1, j + 1, k + 1, 0);
+					else
 						//if liquid, check dilation sphere for biomass
-						bl[i + 1][j + 1][k + 1] = checkDilationRadiusForBiomass(
-								i, j, k);
-					}
+						bl.set(i + 1, j + 1, k + 1,
+								checkDilationRadiusForBiomass(i, j, k));
+				}
 	}
 
 	/**
@@ -66,46 +189,99 @@ public class SphericalDilationBoundaryLayer extends BoundaryLayer {
 	 * 
 	 * @return 1 if there is no biomass in the dilation radius, 0 otherwise
 	 */
-	private final float checkDilationRadiusForBiomass(int n, int m, int l) {
-		int nInterval = (int) Math.floor(_dilationRadius / _voxelSide);
-		for (int i = (-nInterval); i <= nInterval; i++) {
+	private float checkDilationRadiusForBiomass(int n, int m, int l) {
+		int nInterval = _widthJ.length - 1;
+		for (int i = -nInterval; i <= nInterval; i++) {
 			//only procedd if neighbor is within computational volume
 			// boundaries
-			if ((n + i >= 0) & (n + i < _n)) {
-				float deltaN = (float) i * _voxelSide;
-				float dilationRadiusM = (float) Math.sqrt(ExtraMath.sq(deltaN)
-						+ ExtraMath.sq(_dilationRadius));
-				int mInterval = (int) Math.floor(dilationRadiusM / _voxelSide);
-				for (int j = (-mInterval); j <= mInterval; j++) {
-					if (_l == 1) {
-						//2D case
-						if (_totalBiomass[n + i][cyclicIndex(m + j, _m)][0]) {
-							return 0;
-						}
-					} else {
-						//3D case
-						float deltaM = (float) j * _voxelSide;
-						float dilationRadiusL = (float) Math.sqrt(ExtraMath
-								.sq(deltaN)
-								+ ExtraMath.sq(deltaM)
-								+ ExtraMath.sq(_dilationRadius));
-						int lInterval = (int) Math.floor(dilationRadiusL
-								/ _voxelSide);
-						for (int k = (-lInterval); k <= lInterval; k++) {
-							if ((i != 0) | (j != 0) | (k != 0)) {
-								if (_totalBiomass[n + i][cyclicIndex(m + j, _m)][cyclicIndex(
-										l + k, _l)]) {
-									return 0;
-								}
-							}
-						}
-					}
-				}
+			if ((n + i < 0) | (n + i >= _n))
+				continue;
+			int mInterval = _widthJ[Math.abs(i)];
+			if (_l == 1) {
+				//2D case, the rows are along j
+				if (_rowDistance[(n + i) * _m + m] <= mInterval)
+					return 0;
+				continue;
+			}
+			//3D case, the rows are along k
+			int[] lInterval = _widthK[Math.abs(i)];
+			for (int j = -mInterval; j <= mInterval; j++) {
+				int p = ((n + i) * _m + cyclicIndex(m + j, _m)) * _l + l;
+				if (_rowDistance[p] <= lInterval[Math.abs(j)])
+					return 0;
 			}
 		}
 		return 1f;
 	}
 
+	/**
+	 * Compute the widths of the search for biomass around a node for the
+	 * present dilation radius
+	 */
+	private void computeWidths() {
+		int nInterval = (int) Math.floor(_dilationRadius / _voxelSide);
+		_widthJ = new int[nInterval + 1];
+		_widthK = new int[nInterval + 1][];
+		_reach = nInterval;
+		for (int i = 0; i <= nInterval; i++) {
+			float deltaN = (float) i * _voxelSide;
+			float dilationRadiusM = (float) Math.sqrt(ExtraMath.sq(deltaN)
+					+ ExtraMath.sq(_dilationRadius));
+			int mInterval = (int) Math.floor(dilationRadiusM / _voxelSide);
+			_widthJ[i] = mInterval;
+			_reach = Math.max(_reach, mInterval);
+			if (_l == 1)
+				continue;
+			_widthK[i] = new int[mInterval + 1];
+			for (int j = 0; j <= mInterval; j++) {
+				float deltaM = (float) j * _voxelSide;
+				float dilationRadiusL = (float) Math.sqrt(ExtraMath
+						.sq(deltaN)
+						+ ExtraMath.sq(deltaM)
+						+ ExtraMath.sq(_dilationRadius));
+				_widthK[i][j] = (int) Math.floor(dilationRadiusL
+						/ _voxelSide);
+				_reach = Math.max(_reach, _widthK[i][j]);
+			}
+		}
+	}
+
+	/**
+	 * Compute the distance of every node to the nearest biomass along the
+	 * cyclic rows of the last dimension, by a forward and a backward sweep
+	 * going twice around each row
+	 * 
+	 * @param biomass
+	 *            occupancy of the nodes by biomass
+	 */
+	private void computeRowDistances(boolean[][][] biomass) {
+		// rows are along j in 2D and along k in 3D, their nodes are
+		// contiguous in _rowDistance
+		int length = (_l == 1 ? _m : _l);
+		int[] d = _rowDistance;
+		for (int start = 0; start < d.length; start += length) {
+			int last = Integer.MAX_VALUE;
+			for (int x = 0; x < 2 * length; x++) {
+				int p = start + x % length;
+				int i = p / (_m * _l);
+				int j = (p / _l) % _m;
+				int k = p % _l;
+				if (biomass[i][j][k])
+					last = x;
+				if (x >= length)
+					d[p] = (last == Integer.MAX_VALUE ? last : x - last);
+			}
+			last = Integer.MAX_VALUE;
+			for (int x = 2 * length - 1; x >= 0; x--) {
+				int p = start + x % length;
+				if (d[p] == 0)
+					last = x;
+				else if ((x < length) && (last != Integer.MAX_VALUE))
+					d[p] = Math.min(d[p], last - x);
+			}
+		}
+	}
+
 	/**
 	 * inplments cyclic indexes
 	 * 
@@ -116,7 +292,25 @@ public class SphericalDilationBoundaryLayer extends BoundaryLayer {
 	 * @return
 	 */
 	private final int cyclicIndex(int val, int limit) {
-		return (val < 0 ? limit + val : (val >= limit ? val - limit : val));
+		return ((val % limit) + limit) % limit;
+	}
+
+	/**
+	 * Set whether the boundary layer is the Euclidean dilation of the
+	 * biomass by the dilation radius, computed by a distance transform,
+	 * instead of the search of the default, which extends further along j
+	 * and k. The boundary layers are thinner, and results change. Default
+	 * is false.
+	 * 
+	 * @param b
+	 *            true for the Euclidean dilation
+	 */
+	public void setEuclideanDilation(boolean b) {
+		_euclidean = b;
+		if (b && (_distance == null))
+			// the sides (j and k) are cyclic
+			_distance = new DistanceTransform(_n, _m, _l, false, true, true);
+		_valid = false;
 	}
 
 	/**
@@ -125,6 +319,7 @@ public class SphericalDilationBoundaryLayer extends BoundaryLayer {
 	 */
 	public void setThickness(float radius) {
 		_dilationRadius = radius;
+		_valid = false;
 	}
 
 	/**
@@ -2,6 +2,7 @@ package nl.tudelft.bt.model.multigrid.boundary_layers;
 
 import nl.tudelft.bt.model.exceptions.MultigridSystemNotSetException;
 import nl.tudelft.bt.model.multigrid.MultigridUtils;
+import nl.tudelft.bt.model.multigrid.PaddedMatrix;
 import nl.tudelft.bt.model.multigrid.ParticulateSpecies;
 import nl.tudelft.bt.model.multigrid.boundary_conditions.BoundaryConditions;
 
@@ -22,14 +23,14 @@ public class TightBoundaryLayer extends BoundaryLayer {
 
 	public void setBoundaryLayer(ParticulateSpecies[] b,
 			BoundaryConditions bc) {
-		float[][][] bl = _mg[_order - 1];
+		PaddedMatrix bl = _mg[_order - 1];
 		MultigridUtils.setValues(bl, 1.0f);
-		for (int i = 0; i < bl.length; i++)
-			for (int j = 0; j < bl[i].length; j++)
-				for (int k = 0; k < bl[i][j].length; k++)
+		for (int i = 0; i < bl.ni; i++)
+			for (int j = 0; j < bl.nj; j++)
+				for (int k = 0; k < bl.nk; k++)
 					for (int sp = 0; sp < b.length; sp++)
-						if (b[sp]._mg[_order - 1][i][j][k] > 0) {
-							bl[i][j][k] = 0;
+						if (b[sp]._mg[_order - 1].get(i, j, k) > 0) {
+							bl.set(i, j, k, 0);
 							break;
 						}
 	}
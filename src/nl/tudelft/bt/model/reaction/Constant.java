@@ -3,6 +3,7 @@
  */
 package nl.tudelft.bt.model.reaction;
 
+import nl.tudelft.bt.model.multigrid.MultigridVariable;
 import nl.tudelft.bt.model.multigrid.SoluteSpecies;
 
 /**
@@ -21,7 +22,7 @@ public class Constant extends ProcessFactor {
 		_k = k;
 	}
 
-	public float getValue() {
+	public float getValue(int g, int p) {
 		return _k;
 	}
 
@@ -29,7 +30,11 @@ public class Constant extends ProcessFactor {
 		return _k;
 	}
 
-	public float getDerivative(SoluteSpecies c) {
+	public boolean dependsOn(MultigridVariable s) {
+		return false;
+	}
+
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		return 0f;
 	}
 
@@ -0,0 +1,253 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.reaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import nl.tudelft.bt.model.multigrid.SoluteSpecies;
+
+/**
+ * A voxel-scoped memo of factor values, shared by the rate kernels of a set
+ * of solutes. The same factor instance often appears in several reactions and
+ * in the net reactions of several solutes; with the cache, each distinct
+ * factor is evaluated once per visit of a grid node. A cached value stays
+ * valid until the node is left (moveTo) or until one of the solutes it may
+ * depend on is changed at the node (soluteChanged).
+ * <p>
+ * A cache is not thread safe: each thread must use its own, created with
+ * FactorCache(FactorCache).
+ */
+public class FactorCache {
+	private final RateKernel[] _kernels;
+
+	// cache id of each factor slot of each kernel
+	private final int[][] _ids;
+
+	// cache ids of the factors that depend on each solute
+	private final int[][] _dependents;
+
+	private final float[] _values;
+
+	// a value is valid if its stamp is equal to _stamp
+	private final int[] _stamps;
+
+	private int _stamp;
+
+	/**
+	 * Create a cache for the kernels of a set of solutes. Rates must be
+	 * evaluated at each node in the order of the kernels (as in relax). Only
+	 * factors whose value can actually be reused are cached, i.e. factors
+	 * used more than once per node for which no solute they depend on is
+	 * changed between two consecutive uses. The others are evaluated
+	 * directly, so that a cache never costs more than it saves.
+	 * 
+	 * @param kernels
+	 *            the rate kernels of the solutes
+	 */
+	public FactorCache(RateKernel[] kernels) {
+		_kernels = kernels;
+		// find the kernel of the last use of each distinct factor and
+		// whether it can be reused there
+		IdentityHashMap lastUse = new IdentityHashMap();
+		IdentityHashMap reusable = new IdentityHashMap();
+		for (int i = 0; i < kernels.length; i++) {
+			ProcessFactor[] f = kernels[i].getFactors();
+			for (int j = 0; j < f.length; j++) {
+				Integer last = (Integer) lastUse.get(f[j]);
+				if ((last != null)
+						&& !dependsOnSolutes(f[j], kernels, last.intValue(), i))
+					reusable.put(f[j], Boolean.TRUE);
+				lastUse.put(f[j], Integer.valueOf(i));
+			}
+		}
+		// assign cache ids to the reusable factors
+		IdentityHashMap idOf = new IdentityHashMap();
+		ArrayList factors = new ArrayList();
+		_ids = new int[kernels.length][];
+		for (int i = 0; i < kernels.length; i++) {
+			ProcessFactor[] f = kernels[i].getFactors();
+			_ids[i] = new int[f.length];
+			for (int j = 0; j < f.length; j++) {
+				if (!reusable.containsKey(f[j])) {
+					_ids[i][j] = -1;
+					continue;
+				}
+				Integer id = (Integer) idOf.get(f[j]);
+				if (id == null) {
+					id = Integer.valueOf(factors.size());
+					idOf.put(f[j], id);
+					factors.add(f[j]);
+				}
+				_ids[i][j] = id.intValue();
+			}
+		}
+		_dependents = new int[kernels.length][];
+		for (int i = 0; i < kernels.length; i++) {
+			SoluteSpecies s = kernels[i].getSolute();
+			int n = 0;
+			int[] d = new int[factors.size()];
+			for (int j = 0; j < factors.size(); j++)
+				if (((ProcessFactor) factors.get(j)).dependsOn(s))
+					d[n++] = j;
+			_dependents[i] = new int[n];
+			System.arraycopy(d, 0, _dependents[i], 0, n);
+		}
+		_values = new float[factors.size()];
+		_stamps = new int[factors.size()];
+		_stamp = 1;
+	}
+
+	/**
+	 * @return true if no factor value can be reused, in which case the
+	 *         kernels may be used directly
+	 */
+	public boolean isEmpty() {
+		return _values.length == 0;
+	}
+
+	/**
+	 * Check if a factor depends on the solutes of kernels [from, to), which
+	 * are changed between a use of the factor by kernel from and a use by
+	 * kernel to
+	 * 
+	 * @param f
+	 * @param kernels
+	 * @param from
+	 * @param to
+	 * @return true if f depends on any of the solutes
+	 */
+	private static boolean dependsOnSolutes(ProcessFactor f,
+			RateKernel[] kernels, int from, int to) {
+		for (int i = from; i < to; i++)
+			if (f.dependsOn(kernels[i].getSolute()))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Create an empty cache for the same kernels as an existing one, to be
+	 * used by another thread
+	 * 
+	 * @param c
+	 *            the existing cache
+	 */
+	public FactorCache(FactorCache c) {
+		_kernels = c._kernels;
+		_ids = c._ids;
+		_dependents = c._dependents;
+		_values = new float[c._values.length];
+		_stamps = new int[c._stamps.length];
+		_stamp = 1;
+	}
+
+	/**
+	 * Invalidate all cached values. Must be called before evaluating rates at
+	 * a new grid node.
+	 */
+	public void moveTo() {
+		if (++_stamp == Integer.MAX_VALUE) {
+			// restart the stamps before they overflow
+			Arrays.fill(_stamps, 0);
+			_stamp = 1;
+		}
+	}
+
+	/**
+	 * Invalidate the cached values of the factors that may depend on a
+	 * solute. Must be called after the value of the solute at the current
+	 * node is changed.
+	 * 
+	 * @param s
+	 *            index of the solute (and of its kernel)
+	 */
+	public void soluteChanged(int s) {
+		int[] d = _dependents[s];
+		for (int i = 0; i < d.length; i++)
+			_stamps[d[i]] = 0;
+	}
+
+	/**
+	 * Compute the net rate of a solute at location (g, p), using the cached
+	 * factor values
+	 * 
+	 * @param s
+	 *            index of the solute (and of its kernel)
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 * @return net rate [g/um^3/h]
+	 */
+	public float getRate(int s, int g, int p) {
+		return _kernels[s].getRate(g, p, this, _ids[s]);
+	}
+
+	/**
+	 * Update the array with the net rate of a solute and its derivative at
+	 * location (g, p), using the cached factor values
+	 * 
+	 * @param s
+	 *            index of the solute (and of its kernel)
+	 * @param rDr
+	 *            [rate, rateDerivative]
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 */
+	public void updateValuesForRateAndRateDerivative(int s, float[] rDr,
+			int g, int p) {
+		_kernels[s].updateValuesForRateAndRateDerivative(rDr, g, p, this,
+				_ids[s]);
+	}
+
+	/**
+	 * Update the array with the net rate of a solute and its derivative in
+	 * respect to another solute at location (g, p), using the cached factor
+	 * values
+	 * 
+	 * @param s
+	 *            index of the solute (and of its kernel)
+	 * @param c
+	 *            solute species to derivate the rate to
+	 * @param rDr
+	 *            [rate, rateDerivative]
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 */
+	public void updateValuesForRateAndRateDerivative(int s, SoluteSpecies c,
+			float[] rDr, int g, int p) {
+		_kernels[s].updateValuesForRateAndRateDerivative(c, rDr, g, p, this,
+				_ids[s]);
+	}
+
+	/**
+	 * Get the value of a factor at location (g, p), evaluating it only if it
+	 * is not cached
+	 * 
+	 * @param id
+	 *            cache id of the factor (-1 if the factor is not cached)
+	 * @param f
+	 *            the factor
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 * @return the value of the factor
+	 */
+	float getValue(int id, ProcessFactor f, int g, int p) {
+		if (id < 0)
+			return f.getValue(g, p);
+		if (_stamps[id] == _stamp)
+			return _values[id];
+		float v = f.getValue(g, p);
+		_values[id] = v;
+		_stamps[id] = _stamp;
+		return v;
+	}
+}
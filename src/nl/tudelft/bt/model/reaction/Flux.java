@@ -38,12 +38,12 @@ public class Flux extends Reaction implements Serializable {
 	}
 
 	/**
-	 * Returns the rate at the present location
+	 * Returns the rate at location (g, p)
 	 * 
 	 * @return flux rate [g/um^3/h]
 	 */
-	public float getRate() {
-		return (_bulkConcentration - _species.getValue());
+	public float getRate(int g, int p) {
+		return (_bulkConcentration - _species.getValue(g, p));
 	}
 
 	/**
@@ -53,7 +53,8 @@ public class Flux extends Reaction implements Serializable {
 	 * @param mCatalyst
 	 *            mass of catalyst species
 	 */
-	public void computeMassGrowthRateAndAddToGlobal(BiomassSpecies.Composition c) {
+	public void computeMassGrowthRateAndAddToGlobal(
+			BiomassSpecies.Composition c, int g, int p) {
 		// overrides original but does nothing, since the influx will never
 		// be used for kinetics of particulate species
 	}
@@ -72,7 +73,7 @@ public class Flux extends Reaction implements Serializable {
 	 * 
 	 * @return specific rate of reaction [h^-1]
 	 */
-	public float getSpecificRateFactor() {
+	public float getSpecificRateFactor(int g, int p) {
 		return 0;
 	}
 
@@ -83,7 +84,8 @@ public class Flux extends Reaction implements Serializable {
 	 *            composition of biomass particle to compute specific rate
 	 * @return specific rate of reaction [h^-1]
 	 */
-	public float getSpecificRateFactor(BiomassSpecies.Composition c) {
+	public float getSpecificRateFactor(BiomassSpecies.Composition c, int g,
+			int p) {
 		return 0;
 	}
 
@@ -98,33 +100,35 @@ public class Flux extends Reaction implements Serializable {
 	}
 
 	/**
-	 * Returns the derivative of the flux rate at the present
-	 * location
+	 * Returns the derivative of the flux rate at location (g, p)
 	 * 
 	 * @param c
 	 *            chemical species to derivate rate to
 	 * @return derivative of rate of reaction [g/um^3/h]
 	 */
-	public float getRateDerivative(SoluteSpecies c) {
+	public float getRateDerivative(SoluteSpecies c, int g, int p) {
 		if (c == _species) {
-			return -_species.getValue();
+			return -_species.getValue(g, p);
 		}
 		// if the species is not the catalyst
 		return 0;
 	}
 
 	/**
-	 * Update the array with values of the rate and rate derivative
+	 * Add the rate and rate derivative at location (g, p), multiplied by
+	 * coef, to the values in rDr
 	 * 
 	 * @param c
 	 *            the solute species for which this is being computed
+	 * @param coef
+	 *            coefficient multiplying the rate and the rate derivative
 	 * @param rDr
 	 *            [rate, rateDerivative]
 	 */
-	public void updateValuesForRateAndRateDerivative(SoluteSpecies c,
-			float[] rDr) {
-		rDr[0] = getRate();
-		rDr[1] = getRateDerivative(c);
+	public void addRateAndRateDerivative(SoluteSpecies c, float coef,
+			float[] rDr, int g, int p) {
+		rDr[0] += coef * getRate(g, p);
+		rDr[1] += coef * getRateDerivative(c, g, p);
 	}
 
 }
\ No newline at end of file
@@ -24,8 +24,8 @@ public class Inhibition extends ProcessFactor {
 		_k = k;
 	}
 
-	public float getValue() {
-		float conc = _species.getValue();
+	public float getValue(int g, int p) {
+		float conc = _species.getValue(g, p);
 		conc = (conc < 0 ? 0 : conc);
 		return _k / (_k + conc);
 	}
@@ -36,9 +36,13 @@ public class Inhibition extends ProcessFactor {
 		return _k / (_k + conc);
 	}
 
-	public float getDerivative(SoluteSpecies c) {
+	public boolean dependsOn(MultigridVariable s) {
+		return s == _species;
+	}
+
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		if (c == _species) {
-			float conc = _species.getValue();
+			float conc = _species.getValue(g, p);
 			conc = (conc < 0 ? 0 : conc);
 			return -_k / ((_k + conc) * (_k + conc));
 		}
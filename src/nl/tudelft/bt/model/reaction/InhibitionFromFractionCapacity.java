@@ -4,6 +4,7 @@
 package nl.tudelft.bt.model.reaction;
 
 import nl.tudelft.bt.model.BiomassSpecies.Composition;
+import nl.tudelft.bt.model.multigrid.MultigridVariable;
 import nl.tudelft.bt.model.multigrid.ParticulateSpecies;
 import nl.tudelft.bt.model.multigrid.SoluteSpecies;
 
@@ -38,9 +39,9 @@ public class InhibitionFromFractionCapacity extends ProcessFactor {
 		_fmax = fmax;
 	}
 
-	public float getValue() {
-		float v1 = _species1.getValue();
-		float v2 = _species2.getValue();
+	public float getValue(int g, int p) {
+		float v1 = _species1.getValue(g, p);
+		float v2 = _species2.getValue(g, p);
 		float f = v1 / v2;
 		if ((v2 == 0) | (f > _fmax))
 			return 0;
@@ -56,7 +57,11 @@ public class InhibitionFromFractionCapacity extends ProcessFactor {
 		return (_fmax - f) / (_k + (_fmax - f));
 	}
 
-	public float getDerivative(SoluteSpecies c) {
+	public boolean dependsOn(MultigridVariable s) {
+		return (s == _species1) | (s == _species2);
+	}
+
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		//always returns 0 since InhibitionFromFractionCapacity is always
 		// defined using
 		// particulate species as the involved species, so no solute can be
@@ -76,7 +81,7 @@ public class InhibitionFromFractionCapacity extends ProcessFactor {
 	}
 	/* (non-Javadoc)
 	 */
-	public float getValue(Composition c) {
+	public float getValue(Composition c, int g, int p) {
 		float v1 = c.getSpeciesMass(_species1);
 		float v2 = c.getSpeciesMass(_species2);
 		float f = v1 / v2;
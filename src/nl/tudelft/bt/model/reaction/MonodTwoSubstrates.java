@@ -3,6 +3,7 @@
  */
 package nl.tudelft.bt.model.reaction;
 
+import nl.tudelft.bt.model.multigrid.MultigridVariable;
 import nl.tudelft.bt.model.multigrid.SoluteSpecies;
 
 /**
@@ -36,9 +37,9 @@ public class MonodTwoSubstrates extends ProcessFactor {
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
-		float conc1 = _solute1.getValue();
-		float conc2 = _solute2.getValue();
+	public float getValue(int g, int p) {
+		float conc1 = _solute1.getValue(g, p);
+		float conc2 = _solute2.getValue(g, p);
 		return conc1 / (_ks1 + conc1) * conc2 / (_ks2 + conc2);
 	}
 
@@ -48,23 +49,27 @@ public class MonodTwoSubstrates extends ProcessFactor {
 		return conc1 / (_ks1 + conc1) * conc2 / (_ks2 + conc2);
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return (s == _solute1) | (s == _solute2);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		if (c == _solute1) {
-			float conc1 = _solute1.getValue();
-			float conc2 = _solute2.getValue();
+			float conc1 = _solute1.getValue(g, p);
+			float conc2 = _solute2.getValue(g, p);
 			return _ks1
 				/ (_ks1 + conc1)
 				/ (_ks1 + conc1)
 				* conc2
 				/ (_ks2 + conc2);
 		} else if (c == _solute2) {
-			float conc1 = _solute1.getValue();
-			float conc2 = _solute2.getValue();
+			float conc1 = _solute1.getValue(g, p);
+			float conc2 = _solute2.getValue(g, p);
 			return conc1
 				/ (_ks1 + conc1)
 				* _ks2
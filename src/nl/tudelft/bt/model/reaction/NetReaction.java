@@ -8,6 +8,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import nl.tudelft.bt.model.exceptions.ModelRuntimeException;
+import nl.tudelft.bt.model.multigrid.MultigridVariable;
 import nl.tudelft.bt.model.multigrid.SoluteSpecies;
 
 /**
@@ -21,9 +22,6 @@ public class NetReaction implements Serializable {
 	private float[] _coeficients;
 
 	private int _addCounter;
-	
-	//auxiliary variable
-	static final float[] _reactionRDr = new float[2];
 
 	/**
 	 * creates a new instance o ReactionStoichiometry with space for n reactions
@@ -62,9 +60,24 @@ public class NetReaction implements Serializable {
 	 * @return net sum of rate factors [1/h]
 	 */
 	public float getSpecificRate() {
+		return getSpecificRate(MultigridVariable.getCurrentLevel(),
+				MultigridVariable.getCurrentIndex());
+	}
+
+	/**
+	 * Computes the net sum of processe factors and their stoichiometric
+	 * coeficients at location (g, p)
+	 * 
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 * @return net sum of rate factors [1/h]
+	 */
+	public float getSpecificRate(int g, int p) {
 		float u = 0;
 		for (int i = 0; i < _addCounter; i++) {
-			u += _coeficients[i] * _reactions[i].getSpecificRateFactor();
+			u += _coeficients[i] * _reactions[i].getSpecificRateFactor(g, p);
 		}
 		return u;
 	}
@@ -107,12 +120,28 @@ public class NetReaction implements Serializable {
 	 * @return net sum of rate factors [g/um^3/h]
 	 */
 	public float getRate() {
+		return getRate(MultigridVariable.getCurrentLevel(), MultigridVariable
+				.getCurrentIndex());
+	}
+
+	/**
+	 * Computes the net sum of process rates and their stoichiometric
+	 * coeficients at location (g, p)
+	 * 
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 * @return net sum of rate factors [g/um^3/h]
+	 */
+	public float getRate(int g, int p) {
 		float r = 0;
 		for (int i = 0; i < _addCounter; i++) {
-			r += _coeficients[i] * _reactions[i].getRate();
+			r += _coeficients[i] * _reactions[i].getRate(g, p);
 		}
 		return r;
 	}
+
 	/**
 	 * @return the current Global rate for this net reaction
 	 */
@@ -133,9 +162,26 @@ public class NetReaction implements Serializable {
 	 * @return net sum of rate factors [g/um^3/h]
 	 */
 	public float getRateDerivative(SoluteSpecies c) {
+		return getRateDerivative(c, MultigridVariable.getCurrentLevel(),
+				MultigridVariable.getCurrentIndex());
+	}
+
+	/**
+	 * Computes the derivative of net sum of process rates and their
+	 * stoichiometric coeficients in respect to variable at location (g, p)
+	 * 
+	 * @param c
+	 *            the chemical species to derivate rate
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 * @return net sum of rate factors [g/um^3/h]
+	 */
+	public float getRateDerivative(SoluteSpecies c, int g, int p) {
 		float dr = 0;
 		for (int i = 0; i < _addCounter; i++) {
-			dr += _coeficients[i] * _reactions[i].getRateDerivative(c);
+			dr += _coeficients[i] * _reactions[i].getRateDerivative(c, g, p);
 		}
 		return dr;
 	}
@@ -147,15 +193,46 @@ public class NetReaction implements Serializable {
 	 * @param rDr [rate, rateDerivative]
 	 */
 	public void updateValuesForRateAndRateDerivative(SoluteSpecies c, float [] rDr) {
+		updateValuesForRateAndRateDerivative(c, rDr, MultigridVariable
+				.getCurrentLevel(), MultigridVariable.getCurrentIndex());
+	}
+
+	/**
+	 * Update the array with values of the rate and rate derivative at
+	 * location (g, p). Safe for concurrent use as long as each caller
+	 * provides its own rDr array.
+	 * 
+	 * @param c
+	 *            the solute species for which this is being computed
+	 * @param rDr
+	 *            [rate, rateDerivative]
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 */
+	public void updateValuesForRateAndRateDerivative(SoluteSpecies c,
+			float[] rDr, int g, int p) {
 		rDr[0] = 0;
 		rDr[1] = 0;
-		for (int i = 0; i < _addCounter; i++) {
-			_reactions[i].updateValuesForRateAndRateDerivative(c, _reactionRDr);
-			rDr[0] += _coeficients[i] * _reactionRDr[0];
-			rDr[1] += _coeficients[i] * _reactionRDr[1];
-		}
+		for (int i = 0; i < _addCounter; i++)
+			_reactions[i].addRateAndRateDerivative(c, _coeficients[i], rDr,
+					g, p);
 	}
 	
+	/**
+	 * Compile the rate kernel of this net reaction for solute c, for fast
+	 * evaluation of the rate and its derivative in respect to c by the
+	 * solvers
+	 * 
+	 * @param c
+	 *            the solute species for which this is the net reaction
+	 * @return the compiled kernel
+	 */
+	public RateKernel compileKernel(SoluteSpecies c) {
+		return new RateKernel(c, _reactions, _coeficients, _addCounter);
+	}
+
 	/**
 	 * @return the reactions as a List
 	 */
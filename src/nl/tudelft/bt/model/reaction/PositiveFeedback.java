@@ -31,8 +31,8 @@ public class PositiveFeedback extends ProcessFactor {
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
-		float concSolute = _solute.getValue();
+	public float getValue(int g, int p) {
+		float concSolute = _solute.getValue(g, p);
 		if (concSolute > _threshold){
 			return _enhancementFactor;
 		} else {
@@ -44,12 +44,16 @@ public class PositiveFeedback extends ProcessFactor {
 		return _enhancementFactor;
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return s == _solute;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		return 0;
 	}
 }
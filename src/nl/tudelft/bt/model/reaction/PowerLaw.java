@@ -3,6 +3,7 @@
  */
 package nl.tudelft.bt.model.reaction;
 
+import nl.tudelft.bt.model.multigrid.MultigridVariable;
 import nl.tudelft.bt.model.multigrid.SoluteSpecies;
 
 /**
@@ -26,8 +27,8 @@ public class PowerLaw extends ProcessFactor {
 	/* (non-Javadoc)
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
-		float conc = _chemical.getValue();
+	public float getValue(int g, int p) {
+		float conc = _chemical.getValue(g, p);
 		return (float)Math.pow(conc, _k);
 	}
 
@@ -36,12 +37,16 @@ public class PowerLaw extends ProcessFactor {
 		return (float)Math.pow(conc, _k);
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return s == _chemical;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		if (c == _chemical) {
-			float conc = _chemical.getValue();
+			float conc = _chemical.getValue(g, p);
 			return _k * (float)Math.pow( conc , _k-1 );
 		}
 		return 0f;
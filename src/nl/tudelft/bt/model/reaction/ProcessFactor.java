@@ -4,8 +4,11 @@
 package nl.tudelft.bt.model.reaction;
 
 import java.io.Serializable;
+import java.util.HashSet;
 
 import nl.tudelft.bt.model.BiomassSpecies;
+import nl.tudelft.bt.model.exceptions.ModelRuntimeException;
+import nl.tudelft.bt.model.multigrid.MultigridVariable;
 import nl.tudelft.bt.model.multigrid.SoluteSpecies;
 
 /**
@@ -14,21 +17,156 @@ import nl.tudelft.bt.model.multigrid.SoluteSpecies;
  * @author Joao Xavier (j.xavier@tnw.tudelft.nl)
  */
 public abstract class ProcessFactor implements Serializable {
-	abstract public float getValue();
+	// lock of the location-explicit methods that fall back to the methods
+	// using the multigrid cursor, which is shared by all threads
+	private static final Object CURSORLOCK = new Object();
 
-	protected float preComputedValue;
+	// classes and methods checked by checkOverride, guarded by CURSORLOCK
+	private static final HashSet _checked = new HashSet();
 
-	abstract public float getDerivative(SoluteSpecies c);
+	/**
+	 * Get the value of the factor at the current location of the multigrid
+	 * cursor. Adapter for getValue(int, int), kept for code that positions
+	 * the cursor with MultigridVariable.setCurrentLocation. Subclasses must
+	 * override either this method or getValue(int, int).
+	 * 
+	 * @return the value of the factor at the current location
+	 */
+	public float getValue() {
+		return getValue(MultigridVariable.getCurrentLevel(),
+				MultigridVariable.getCurrentIndex());
+	}
+
+	/**
+	 * Get the value of the factor at an explicit location. Implementations
+	 * must not use the static multigrid cursor or any other shared state, so
+	 * that rates can be evaluated concurrently at different locations. The
+	 * default implementation is for factors that only implement getValue():
+	 * it moves the cursor to (g, p) and calls getValue(), holding a lock
+	 * shared by all factors, so that the evaluations of such factors are
+	 * serialized. The cursor is apart from the grid order of the solvers,
+	 * which is not changed. Throws a ModelRuntimeException if the subclass
+	 * overrides neither method.
+	 * 
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 * @return the value of the factor at location (g, p)
+	 */
+	public float getValue(int g, int p) {
+		synchronized (CURSORLOCK) {
+			checkOverride("getValue", new Class[0]);
+			MultigridVariable.setCurrentLocation(g, p);
+			return getValue();
+		}
+	}
+
+	/**
+	 * Get the derivative of the factor at the current location of the
+	 * multigrid cursor. Adapter for getDerivative(SoluteSpecies, int, int).
+	 * Subclasses must override either this method or
+	 * getDerivative(SoluteSpecies, int, int).
+	 * 
+	 * @param c
+	 *            solute species to derivate factor to
+	 * @return the derivative of the factor at the current location
+	 */
+	public float getDerivative(SoluteSpecies c) {
+		return getDerivative(c, MultigridVariable.getCurrentLevel(),
+				MultigridVariable.getCurrentIndex());
+	}
+
+	/**
+	 * Get the derivative of the factor at an explicit location. As
+	 * getValue(int, int), the default implementation moves the multigrid
+	 * cursor to (g, p) and calls getDerivative(SoluteSpecies), holding the
+	 * lock shared by all factors, and throws a ModelRuntimeException if the
+	 * subclass overrides neither method.
+	 * 
+	 * @param c
+	 *            solute species to derivate factor to
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 * @return the derivative of the factor at location (g, p)
+	 */
+	public float getDerivative(SoluteSpecies c, int g, int p) {
+		synchronized (CURSORLOCK) {
+			checkOverride("getDerivative", new Class[] { SoluteSpecies.class });
+			MultigridVariable.setCurrentLocation(g, p);
+			return getDerivative(c);
+		}
+	}
+
+	/**
+	 * Check, once per class, that the class of this factor overrides a
+	 * method using the multigrid cursor, so that the default
+	 * location-explicit method calling it does not call itself back
+	 * 
+	 * @param name
+	 *            name of the method
+	 * @param parameters
+	 *            types of the parameters of the method
+	 * @throws ModelRuntimeException
+	 *             if the method is not overridden
+	 */
+	private void checkOverride(String name, Class[] parameters) {
+		String key = getClass().getName() + "." + name;
+		if (_checked.contains(key))
+			return;
+		Class declaring;
+		try {
+			declaring = getClass().getMethod(name, parameters)
+					.getDeclaringClass();
+		} catch (NoSuchMethodException e) {
+			throw new ModelRuntimeException(e.toString());
+		}
+		if (declaring == ProcessFactor.class)
+			throw new ModelRuntimeException(getClass().getName()
+					+ " must override " + name + " with or without the"
+					+ " location (g, p)");
+		_checked.add(key);
+	}
 
 	abstract public float getMaximumValue();
 
+	/**
+	 * Check if the value of this factor may depend on the value of a given
+	 * variable. Used to skip the computation of derivatives that are always
+	 * 0. The default implementation returns true, which is always safe.
+	 * 
+	 * @param s
+	 *            variable to check
+	 * @return false only if the factor does not depend on s
+	 */
+	public boolean dependsOn(MultigridVariable s) {
+		return true;
+	}
+
 	/**
 	 * @param c
 	 *            compostiion of particle for which rates are being computes
-	 * @return the rate (getValue() is returned by default)
+	 * @return the rate at the current location of the multigrid cursor
 	 */
 	public float getValue(BiomassSpecies.Composition c) {
-		return getValue();
+		return getValue(c, MultigridVariable.getCurrentLevel(),
+				MultigridVariable.getCurrentIndex());
+	}
+
+	/**
+	 * @param c
+	 *            compostiion of particle for which rates are being computes
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 * @return the rate at location (g, p) (getValue(g, p) is returned by
+	 *         default)
+	 */
+	public float getValue(BiomassSpecies.Composition c, int g, int p) {
+		return getValue(g, p);
 	}
 
 	/*
@@ -0,0 +1,422 @@
+/*
+ * File created originally on Oct 18, 2026
+ */
+package nl.tudelft.bt.model.reaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import nl.tudelft.bt.model.multigrid.SoluteSpecies;
+import nl.tudelft.bt.model.multigrid.Species;
+
+/**
+ * The net reaction of a solute species compiled into a flat form that
+ * evaluates the rate and its derivative in respect to the solute in one pass.
+ * When compiled:
+ * <ul>
+ * <li>stoichiometric coefficients, rate constants and Constant factors are
+ * folded into a single coefficient per reaction;</li>
+ * <li>reactions with the same factors are grouped, so that the factors are
+ * evaluated once per group as f * sum(coefficient * catalyst);</li>
+ * <li>factors of a group are not evaluated at all where all its catalysts
+ * are 0 (e.g. outside the biofilm);</li>
+ * <li>derivatives are only evaluated for factors that depend on the solute
+ * (see ProcessFactor.dependsOn), and not at all for groups without such
+ * factors.</li>
+ * </ul>
+ * Reactions that override the rate computation of Reaction (e.g. Flux) are
+ * evaluated through their own methods. A kernel is a snapshot of the rate
+ * constants, so it must be compiled again when these change (the solvers
+ * compile the kernels every time they are called). Kernels hold no state
+ * that changes during evaluation and may be used concurrently; factor values
+ * may be shared between the kernels of several solutes through a
+ * FactorCache.
+ */
+public class RateKernel {
+	private SoluteSpecies _solute;
+
+	private int _nGroups;
+
+	// factors of each group, group g uses factors in
+	// [_factorStart[g], _factorStart[g + 1])
+	private int[] _factorStart;
+
+	private ProcessFactor[] _factors;
+
+	// whether the derivative of the factor in respect to _solute must be
+	// computed
+	private boolean[] _dependsOnSolute;
+
+	// whether any factor of each group depends on _solute
+	private boolean[] _groupDependsOnSolute;
+
+	// catalyst terms of each group, group g uses terms in
+	// [_termStart[g], _termStart[g + 1])
+	private int[] _termStart;
+
+	private float[] _termCoefficient;
+
+	private Species[] _termCatalyst;
+
+	// sum of the coefficients of the terms of each group where the catalyst
+	// is the solute itself
+	private float[] _soluteCoefficient;
+
+	// reactions evaluated through their own methods
+	private Reaction[] _opaque;
+
+	private float[] _opaqueCoefficient;
+
+	/**
+	 * Compile the kernel for the net reaction of a solute species
+	 * 
+	 * @param c
+	 *            the solute species
+	 * @param reactions
+	 *            reactions of the net reaction of c
+	 * @param coefficients
+	 *            stoichiometric coefficients of the reactions
+	 * @param n
+	 *            number of reactions
+	 */
+	RateKernel(SoluteSpecies c, Reaction[] reactions, float[] coefficients,
+			int n) {
+		_solute = c;
+		ArrayList groups = new ArrayList();
+		ArrayList opaque = new ArrayList();
+		ArrayList opaqueCoefficients = new ArrayList();
+		for (int i = 0; i < n; i++) {
+			Reaction r = reactions[i];
+			if (r.getClass() != Reaction.class) {
+				opaque.add(r);
+				opaqueCoefficients.add(Float.valueOf(coefficients[i]));
+				continue;
+			}
+			// fold the constant factors into the coefficient
+			float coef = coefficients[i] * r.getConstant();
+			ArrayList f = new ArrayList();
+			ProcessFactor[] factors = r.getFactors();
+			for (int j = 0; j < factors.length; j++) {
+				if (factors[j].getClass() == Constant.class)
+					coef *= factors[j].getMaximumValue();
+				else
+					f.add(factors[j]);
+			}
+			ProcessFactor[] key = (ProcessFactor[]) f
+					.toArray(new ProcessFactor[f.size()]);
+			// find the group with the same factors
+			Group group = null;
+			for (int j = 0; j < groups.size(); j++) {
+				Group gr = (Group) groups.get(j);
+				if (Arrays.equals(gr.factors, key)) {
+					group = gr;
+					break;
+				}
+			}
+			if (group == null) {
+				group = new Group(key);
+				groups.add(group);
+			}
+			group.coefficients.add(Float.valueOf(coef));
+			group.catalysts.add(r.getCatalystSpecies());
+		}
+		// flatten the groups
+		_nGroups = groups.size();
+		_factorStart = new int[_nGroups + 1];
+		_termStart = new int[_nGroups + 1];
+		_soluteCoefficient = new float[_nGroups];
+		_groupDependsOnSolute = new boolean[_nGroups];
+		for (int g = 0; g < _nGroups; g++) {
+			Group gr = (Group) groups.get(g);
+			_factorStart[g + 1] = _factorStart[g] + gr.factors.length;
+			_termStart[g + 1] = _termStart[g] + gr.catalysts.size();
+		}
+		_factors = new ProcessFactor[_factorStart[_nGroups]];
+		_dependsOnSolute = new boolean[_factors.length];
+		_termCoefficient = new float[_termStart[_nGroups]];
+		_termCatalyst = new Species[_termCoefficient.length];
+		for (int g = 0; g < _nGroups; g++) {
+			Group gr = (Group) groups.get(g);
+			for (int j = 0; j < gr.factors.length; j++) {
+				_factors[_factorStart[g] + j] = gr.factors[j];
+				_dependsOnSolute[_factorStart[g] + j] = gr.factors[j]
+						.dependsOn(c);
+				_groupDependsOnSolute[g] |= _dependsOnSolute[_factorStart[g]
+						+ j];
+			}
+			for (int j = 0; j < gr.catalysts.size(); j++) {
+				int t = _termStart[g] + j;
+				_termCoefficient[t] = ((Float) gr.coefficients.get(j))
+						.floatValue();
+				_termCatalyst[t] = (Species) gr.catalysts.get(j);
+				if (_termCatalyst[t] == c)
+					_soluteCoefficient[g] += _termCoefficient[t];
+			}
+		}
+		_opaque = (Reaction[]) opaque.toArray(new Reaction[opaque.size()]);
+		_opaqueCoefficient = new float[_opaque.length];
+		for (int i = 0; i < _opaque.length; i++)
+			_opaqueCoefficient[i] = ((Float) opaqueCoefficients.get(i))
+					.floatValue();
+	}
+
+	/**
+	 * Compute the net rate at location (g, p)
+	 * 
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 * @return net rate [g/um^3/h]
+	 */
+	public float getRate(int g, int p) {
+		return getRate(g, p, null, null);
+	}
+
+	/**
+	 * Compute the net rate at location (g, p), taking the factor values from
+	 * a cache
+	 * 
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 * @param cache
+	 *            the factor cache, or null to evaluate all factors
+	 * @param ids
+	 *            cache ids of the factors of this kernel
+	 * @return net rate [g/um^3/h]
+	 */
+	float getRate(int g, int p, FactorCache cache, int[] ids) {
+		float r = 0;
+		for (int gr = 0; gr < _nGroups; gr++) {
+			float cat = 0;
+			for (int t = _termStart[gr]; t < _termStart[gr + 1]; t++)
+				cat += _termCoefficient[t] * _termCatalyst[t].getValue(g, p);
+			if (cat == 0)
+				continue;
+			float f = 1;
+			for (int i = _factorStart[gr]; i < _factorStart[gr + 1]; i++)
+				f *= factorValue(i, g, p, cache, ids);
+			r += f * cat;
+		}
+		for (int i = 0; i < _opaque.length; i++)
+			r += _opaqueCoefficient[i] * _opaque[i].getRate(g, p);
+		return r;
+	}
+
+	/**
+	 * Update the array with values of the net rate and its derivative in
+	 * respect to the solute at location (g, p)
+	 * 
+	 * @param rDr
+	 *            [rate, rateDerivative]
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 */
+	public void updateValuesForRateAndRateDerivative(float[] rDr, int g, int p) {
+		updateValuesForRateAndRateDerivative(rDr, g, p, null, null);
+	}
+
+	/**
+	 * Update the array with values of the net rate and its derivative in
+	 * respect to the solute at location (g, p), taking the factor values
+	 * from a cache
+	 * 
+	 * @param rDr
+	 *            [rate, rateDerivative]
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 * @param cache
+	 *            the factor cache, or null to evaluate all factors
+	 * @param ids
+	 *            cache ids of the factors of this kernel
+	 */
+	void updateValuesForRateAndRateDerivative(float[] rDr, int g, int p,
+			FactorCache cache, int[] ids) {
+		float r = 0;
+		float dr = 0;
+		for (int gr = 0; gr < _nGroups; gr++) {
+			float cat = 0;
+			for (int t = _termStart[gr]; t < _termStart[gr + 1]; t++)
+				cat += _termCoefficient[t] * _termCatalyst[t].getValue(g, p);
+			if ((cat == 0) & (_soluteCoefficient[gr] == 0))
+				continue;
+			if (!_groupDependsOnSolute[gr]) {
+				// the derivative comes only from the solute as catalyst
+				float f = 1;
+				for (int i = _factorStart[gr]; i < _factorStart[gr + 1]; i++)
+					f *= factorValue(i, g, p, cache, ids);
+				r += f * cat;
+				dr += f * _soluteCoefficient[gr];
+				continue;
+			}
+			// product of the factors and its derivative, accumulated as
+			// (f1...fi)' = (f1...fi-1)' * fi + (f1...fi-1) * fi'
+			float f = 1;
+			float df = 0;
+			for (int i = _factorStart[gr]; i < _factorStart[gr + 1]; i++) {
+				float v = factorValue(i, g, p, cache, ids);
+				if (_dependsOnSolute[i])
+					df = df * v + f * _factors[i].getDerivative(_solute, g, p);
+				else
+					df *= v;
+				f *= v;
+			}
+			r += f * cat;
+			dr += df * cat + f * _soluteCoefficient[gr];
+		}
+		rDr[0] = r;
+		rDr[1] = dr;
+		for (int i = 0; i < _opaque.length; i++)
+			_opaque[i].addRateAndRateDerivative(_solute, _opaqueCoefficient[i],
+					rDr, g, p);
+	}
+
+	/**
+	 * Update the array with values of the net rate and its derivative in
+	 * respect to any solute at location (g, p), e.g. for the coupling
+	 * between solutes
+	 * 
+	 * @param s
+	 *            solute species to derivate the rate to
+	 * @param rDr
+	 *            [rate, rateDerivative]
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 */
+	public void updateValuesForRateAndRateDerivative(SoluteSpecies s,
+			float[] rDr, int g, int p) {
+		updateValuesForRateAndRateDerivative(s, rDr, g, p, null, null);
+	}
+
+	/**
+	 * Update the array with values of the net rate and its derivative in
+	 * respect to any solute at location (g, p), taking the factor values
+	 * from a cache
+	 * 
+	 * @param s
+	 *            solute species to derivate the rate to
+	 * @param rDr
+	 *            [rate, rateDerivative]
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 * @param cache
+	 *            the factor cache, or null to evaluate all factors
+	 * @param ids
+	 *            cache ids of the factors of this kernel
+	 */
+	void updateValuesForRateAndRateDerivative(SoluteSpecies s, float[] rDr,
+			int g, int p, FactorCache cache, int[] ids) {
+		float r = 0;
+		float dr = 0;
+		for (int gr = 0; gr < _nGroups; gr++) {
+			float cat = 0;
+			float soluteCoefficient = 0;
+			for (int t = _termStart[gr]; t < _termStart[gr + 1]; t++) {
+				cat += _termCoefficient[t] * _termCatalyst[t].getValue(g, p);
+				if (_termCatalyst[t] == s)
+					soluteCoefficient += _termCoefficient[t];
+			}
+			if ((cat == 0) & (soluteCoefficient == 0))
+				continue;
+			float f = 1;
+			float df = 0;
+			for (int i = _factorStart[gr]; i < _factorStart[gr + 1]; i++) {
+				float v = factorValue(i, g, p, cache, ids);
+				if (_factors[i].dependsOn(s))
+					df = df * v + f * _factors[i].getDerivative(s, g, p);
+				else
+					df *= v;
+				f *= v;
+			}
+			r += f * cat;
+			dr += df * cat + f * soluteCoefficient;
+		}
+		rDr[0] = r;
+		rDr[1] = dr;
+		for (int i = 0; i < _opaque.length; i++)
+			_opaque[i].addRateAndRateDerivative(s, _opaqueCoefficient[i], rDr,
+					g, p);
+	}
+
+	/**
+	 * Get the value of the factor in slot i at location (g, p)
+	 * 
+	 * @param i
+	 *            slot of the factor
+	 * @param g
+	 *            grid order
+	 * @param p
+	 *            flat index of the grid node in the matrices of order g
+	 * @param cache
+	 *            the factor cache, or null to evaluate the factor
+	 * @param ids
+	 *            cache ids of the factors of this kernel
+	 * @return the value of the factor
+	 */
+	private float factorValue(int i, int g, int p, FactorCache cache,
+			int[] ids) {
+		if (cache == null)
+			return _factors[i].getValue(g, p);
+		return cache.getValue(ids[i], _factors[i], g, p);
+	}
+
+	/**
+	 * @return the solute species of this kernel
+	 */
+	public SoluteSpecies getSolute() {
+		return _solute;
+	}
+
+	/**
+	 * Check if the rate of this kernel may depend on the concentration of a
+	 * solute, through its factors or as a catalyst. Reactions evaluated
+	 * through their own methods are assumed to depend on every solute.
+	 * 
+	 * @param s
+	 *            a solute species
+	 * @return false only if the rate does not depend on s
+	 */
+	public boolean dependsOn(SoluteSpecies s) {
+		if (_opaque.length > 0)
+			return true;
+		for (int i = 0; i < _factors.length; i++)
+			if (_factors[i].dependsOn(s))
+				return true;
+		for (int t = 0; t < _termCatalyst.length; t++)
+			if (_termCatalyst[t] == s)
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return the factors evaluated by this kernel, by slot
+	 */
+	ProcessFactor[] getFactors() {
+		return _factors;
+	}
+
+	/**
+	 * Reactions sharing the same factors, used while compiling
+	 */
+	private static class Group {
+		final ProcessFactor[] factors;
+
+		final ArrayList coefficients = new ArrayList();
+
+		final ArrayList catalysts = new ArrayList();
+
+		Group(ProcessFactor[] f) {
+			factors = f;
+		}
+	}
+}
@@ -8,6 +8,7 @@ import java.io.Serializable;
 import nl.tudelft.bt.model.BiomassSpecies;
 import nl.tudelft.bt.model.Model;
 import nl.tudelft.bt.model.exceptions.ModelRuntimeException;
+import nl.tudelft.bt.model.multigrid.MultigridVariable;
 import nl.tudelft.bt.model.multigrid.ParticulateSpecies;
 import nl.tudelft.bt.model.multigrid.SoluteSpecies;
 import nl.tudelft.bt.model.multigrid.Species;
@@ -32,6 +33,12 @@ public class Reaction implements Serializable {
 
 	private float _presentReactionRate;
 
+	// sparsity of the derivatives: the slots of the factors that depend on
+	// each solute in _derivativeSolutes, null if not built
+	private SoluteSpecies[] _derivativeSolutes;
+
+	private int[][] _derivativeFactors;
+
 	/**
 	 * creates a new reaction with one or more factors
 	 * 
@@ -65,6 +72,52 @@ public class Reaction implements Serializable {
 			throw new ModelRuntimeException("Trying to add a " + _addCounter
 					+ " factor to " + _name);
 		}
+		if (_derivativeSolutes != null)
+			buildDerivativeSparsity(_derivativeSolutes);
+	}
+
+	/**
+	 * Find, for each solute, the factors of this reaction that depend on it
+	 * (see ProcessFactor.dependsOn), so that derivatives in respect to a
+	 * solute are only computed for these factors. Called by the Model when
+	 * the reaction is registered and when the solutes are set, and again
+	 * when a factor is added.
+	 * 
+	 * @param c
+	 *            the solute species of the model
+	 */
+	public void buildDerivativeSparsity(SoluteSpecies[] c) {
+		int[][] factors = new int[c.length][];
+		for (int s = 0; s < c.length; s++) {
+			int n = 0;
+			for (int i = 0; i < _addCounter; i++)
+				if (_factors[i].dependsOn(c[s]))
+					n++;
+			factors[s] = new int[n];
+			n = 0;
+			for (int i = 0; i < _addCounter; i++)
+				if (_factors[i].dependsOn(c[s]))
+					factors[s][n++] = i;
+		}
+		_derivativeFactors = factors;
+		_derivativeSolutes = c;
+	}
+
+	/**
+	 * @param c
+	 *            a solute species
+	 * @return the slots of the factors that depend on c, in increasing
+	 *         order, or null if unknown (all factors must be derived)
+	 */
+	int[] getFactorsDependingOn(SoluteSpecies c) {
+		SoluteSpecies[] solutes = _derivativeSolutes;
+		int[][] factors = _derivativeFactors;
+		if (solutes == null)
+			return null;
+		for (int s = 0; s < solutes.length; s++)
+			if (solutes[s] == c)
+				return factors[s];
+		return null;
 	}
 
 	/**
@@ -73,7 +126,21 @@ public class Reaction implements Serializable {
 	 * @return rate of reaction [g/um^3/h]
 	 */
 	public float getRate() {
-		return getSpecificRateFactor() * _catalyst.getValue();
+		return getRate(MultigridVariable.getCurrentLevel(), MultigridVariable
+				.getCurrentIndex());
+	}
+
+	/**
+	 * Returns the rate at location (g, p)
+	 * 
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 * @return rate of reaction [g/um^3/h]
+	 */
+	public float getRate(int g, int p) {
+		return getSpecificRateFactor(g, p) * _catalyst.getValue(g, p);
 	}
 
 	/**
@@ -84,8 +151,26 @@ public class Reaction implements Serializable {
 	 *            mass of catalyst species
 	 */
 	public void computeMassGrowthRateAndAddToGlobal(BiomassSpecies.Composition c) {
+		computeMassGrowthRateAndAddToGlobal(c, MultigridVariable
+				.getCurrentLevel(), MultigridVariable.getCurrentIndex());
+	}
+
+	/**
+	 * Pre-compute the mass-based growth rate of a particle located at grid
+	 * node (g, p) and store it in atribute _presentReactionRate. Also, update
+	 * the value of _globalReactionRate
+	 * 
+	 * @param c
+	 *            composition of the biomass particle
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 */
+	public void computeMassGrowthRateAndAddToGlobal(
+			BiomassSpecies.Composition c, int g, int p) {
 		float mCatalyst = c.getSpeciesMass((ParticulateSpecies) _catalyst);
-		float rateFactor = getSpecificRateFactor(c);
+		float rateFactor = getSpecificRateFactor(c, g, p);
 		// Check if the values are valid
 		if ((mCatalyst != mCatalyst) | (rateFactor != rateFactor)) {
 			String st = "reaction " + _name + "produced NaN (mCatalyst = "
@@ -115,10 +200,23 @@ public class Reaction implements Serializable {
 	 * @return specific rate of reaction [h^-1]
 	 */
 	public float getSpecificRateFactor() {
+		return getSpecificRateFactor(MultigridVariable.getCurrentLevel(),
+				MultigridVariable.getCurrentIndex());
+	}
+
+	/**
+	 * Returns the specific rate at location (g, p)
+	 * 
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 * @return specific rate of reaction [h^-1]
+	 */
+	public float getSpecificRateFactor(int g, int p) {
 		float r = _constant;
 		for (int i = 0; i < _addCounter; i++) {
-			r *= _factors[i].getValue();
-			
+			r *= _factors[i].getValue(g, p);
 		}
 		return r;
 	}
@@ -131,9 +229,26 @@ public class Reaction implements Serializable {
 	 * @return specific rate of reaction [h^-1]
 	 */
 	public float getSpecificRateFactor(BiomassSpecies.Composition c) {
+		return getSpecificRateFactor(c, MultigridVariable.getCurrentLevel(),
+				MultigridVariable.getCurrentIndex());
+	}
+
+	/**
+	 * Returns the specific rate at location (g, p)
+	 * 
+	 * @param c
+	 *            composition of biomass particle to compute specific rate
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 * @return specific rate of reaction [h^-1]
+	 */
+	public float getSpecificRateFactor(BiomassSpecies.Composition c, int g,
+			int p) {
 		float r = _constant;
 		for (int i = 0; i < _addCounter; i++) {
-			r *= _factors[i].getValue(c);
+			r *= _factors[i].getValue(c, g, p);
 		}
 		return r;
 	}
@@ -160,29 +275,49 @@ public class Reaction implements Serializable {
 	 * @return derivative of rate of reaction [g/um^3/h]
 	 */
 	public float getRateDerivative(SoluteSpecies c) {
-		float dr = 0;
-		// implements derivative of multiplying functions
+		return getRateDerivative(c, MultigridVariable.getCurrentLevel(),
+				MultigridVariable.getCurrentIndex());
+	}
+
+	/**
+	 * Returns the derivative of the rate of a given reaction at location (g,
+	 * p)
+	 * 
+	 * @param c
+	 *            chemical species to derivate rate to
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 * @return derivative of rate of reaction [g/um^3/h]
+	 */
+	public float getRateDerivative(SoluteSpecies c, int g, int p) {
+		// implements derivative of multiplying functions, only for the
+		// factors that depend on c
+		int[] dependent = getFactorsDependingOn(c);
+		float f = _constant;
+		float df = 0;
+		int d = 0;
 		for (int i = 0; i < _addCounter; i++) {
-			float v = 1;
-			v *= _factors[i].getDerivative(c);
-			for (int j = 0; j < _addCounter; j++)
-				if (j != i)
-					v *= _factors[j].getValue();
-			dr += v;
+			float v = _factors[i].getValue(g, p);
+			if ((dependent == null)
+					|| ((d < dependent.length) && (dependent[d] == i))) {
+				df = df * v + f * _factors[i].getDerivative(c, g, p);
+				d++;
+			} else
+				df *= v;
+			f *= v;
 		}
-		if (c == _catalyst) {
+		if (c == _catalyst)
 			// in case the solute species is the catalyst of the reaciton
-			float r = _constant;
-			for (int i = 0; i < _addCounter; i++)
-				r *= _factors[i].getValue();
-			return dr * _constant * _catalyst.getValue() + r;
-		}
+			return df * _catalyst.getValue(g, p) + f;
 		// if the species is not the catalyst
-		return dr * _constant * _catalyst.getValue();
+		return df * _catalyst.getValue(g, p);
 	}
 
 	/**
-	 * Update the array with values of the rate and rate derivative
+	 * Update the array with values of the rate and rate derivative at the
+	 * present location
 	 * 
 	 * @param c
 	 *            the solute species for which this is being computed
@@ -191,35 +326,71 @@ public class Reaction implements Serializable {
 	 */
 	public void updateValuesForRateAndRateDerivative(SoluteSpecies c,
 			float[] rDr) {
-		rDr[0] = _constant;
+		rDr[0] = 0;
 		rDr[1] = 0;
-		float catalystValue = _catalyst.getValue();
-		//compute the rates and store the values of the rates for each
-		//factor for later use
-		for (int i = 0; i < _addCounter; i++) {
-			_factors[i].preComputedValue = _factors[i].getValue();
-			rDr[0] *= _factors[i].preComputedValue;
-		}
-		rDr[0] *= catalystValue; //rate is finished computing
-		// Compute the derivative implemented by multiplying functions
+		addRateAndRateDerivative(c, 1, rDr, MultigridVariable
+				.getCurrentLevel(), MultigridVariable.getCurrentIndex());
+	}
+
+	/**
+	 * Add the rate and rate derivative at location (g, p), multiplied by a
+	 * coefficient, to the values in array rDr. All intermediate values are
+	 * kept in local variables, so concurrent calls for different locations
+	 * (and different rDr arrays) are safe.
+	 * 
+	 * @param c
+	 *            the solute species for which this is being computed
+	 * @param coef
+	 *            coefficient multiplying the rate and the rate derivative
+	 * @param rDr
+	 *            [rate, rateDerivative]
+	 * @param g
+	 *            grid level
+	 * @param p
+	 *            flat index of the grid node in the matrices of level g
+	 */
+	public void addRateAndRateDerivative(SoluteSpecies c, float coef,
+			float[] rDr, int g, int p) {
+		int[] dependent = getFactorsDependingOn(c);
+		float f = _constant;
+		float df = 0;
+		// the product of the factors and its derivative are accumulated
+		// together: (f1...fi)' = (f1...fi-1)' * fi + (f1...fi-1) * fi',
+		// where fi' is only computed for the factors that depend on c
+		int d = 0;
 		for (int i = 0; i < _addCounter; i++) {
-			float v = 1;
-			v *= _factors[i].getDerivative(c);
-			for (int j = 0; j < _addCounter; j++)
-				if (j != i)
-					v *= _factors[j].preComputedValue;
-			rDr[1] += v;
-		}
-		rDr[1] *= _constant * catalystValue;
-		// if the species is the catalyst		
-		if (c == _catalyst) {
-			// in case the solute species is the catalyst of the reaciton
-			float r = _constant;
-			for (int i = 0; i < _addCounter; i++)
-				r *= _factors[i].preComputedValue;
-			rDr[1] += r;
-			return;
+			float v = _factors[i].getValue(g, p);
+			if ((dependent == null)
+					|| ((d < dependent.length) && (dependent[d] == i))) {
+				df = df * v + f * _factors[i].getDerivative(c, g, p);
+				d++;
+			} else
+				df *= v;
+			f *= v;
 		}
+		float catalystValue = _catalyst.getValue(g, p);
+		rDr[0] += coef * (f * catalystValue);
+		// if the species is the catalyst
+		if (c == _catalyst)
+			rDr[1] += coef * (df * catalystValue + f);
+		else
+			rDr[1] += coef * (df * catalystValue);
+	}
+
+	/**
+	 * @return the rate constant
+	 */
+	float getConstant() {
+		return _constant;
+	}
+
+	/**
+	 * @return the factors of this reaction
+	 */
+	ProcessFactor[] getFactors() {
+		ProcessFactor[] f = new ProcessFactor[_addCounter];
+		System.arraycopy(_factors, 0, f, 0, _addCounter);
+		return f;
 	}
 
 	/**
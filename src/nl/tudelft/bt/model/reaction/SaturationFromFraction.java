@@ -3,6 +3,7 @@
  */
 package nl.tudelft.bt.model.reaction;
 import nl.tudelft.bt.model.BiomassSpecies.Composition;
+import nl.tudelft.bt.model.multigrid.MultigridVariable;
 import nl.tudelft.bt.model.multigrid.ParticulateSpecies;
 import nl.tudelft.bt.model.multigrid.SoluteSpecies;
 /**
@@ -28,9 +29,9 @@ public class SaturationFromFraction extends ProcessFactor {
 		_species2 = c2;
 		_k = k;
 	}
-	public float getValue() {
-		float v1 = _species1.getValue();
-		float v2 = _species2.getValue();
+	public float getValue(int g, int p) {
+		float v1 = _species1.getValue(g, p);
+		float v2 = _species2.getValue(g, p);
 		return (v2 > 0) ? ((v1 / v2) / (_k + v1 / v2)) : 0;
 	}
 	public float getMaximumValue() {
@@ -38,7 +39,10 @@ public class SaturationFromFraction extends ProcessFactor {
 		float v2 = _species2.getMaximumValue();
 		return (v2 > 0) ? ((v1 / v2) / (_k + v1 / v2)) : 0;
 	}
-	public float getDerivative(SoluteSpecies c) {
+	public boolean dependsOn(MultigridVariable s) {
+		return (s == _species1) | (s == _species2);
+	}
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		//always returns 0 since SaturationFromFraction is always defined using
 		// particulate species as the involved species, so no solute can be
 		// involved
@@ -57,7 +61,7 @@ public class SaturationFromFraction extends ProcessFactor {
 	}
 	/* (non-Javadoc)
 	 */
-	public float getValue(Composition c) {
+	public float getValue(Composition c, int g, int p) {
 		float v1 = c.getSpeciesMass(_species1);
 		float v2 = c.getSpeciesMass(_species2);
 		return (v2 > 0) ? ((v1 / v2) / (_k + v1 / v2)) : 0;
@@ -42,8 +42,8 @@ public class SaturationWithMaintenance extends ProcessFactor {
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
-		float conc = _species.getValue();
+	public float getValue(int g, int p) {
+		float conc = _species.getValue(g, p);
 		if (conc < (_f / (1 - _f) * _k))
 			return 0;
 		return conc / (_k + conc) - _f;
@@ -56,14 +56,18 @@ public class SaturationWithMaintenance extends ProcessFactor {
 		return conc / (_k + conc) - _f;
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return s == _species;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		if (c == _species) {
-			float conc = _species.getValue();
+			float conc = _species.getValue(g, p);
 			if (conc < (_f / (1 - _f) * _k))
 				return 0;
 			return _k / ((_k + conc) * (_k + conc));
@@ -94,25 +98,25 @@ public class SaturationWithMaintenance extends ProcessFactor {
 	 * 
 	 * @see nl.tudelft.bt.model.reaction.ProcessFactor#getValue(nl.tudelft.bt.model.BiomassSpecies.Composition)
 	 */
-	public float getValue(Composition c) {
+	public float getValue(Composition c, int g, int p) {
 		// if the _species is a particulate species, return a rate that
 		// reflects the fraction of the species in the grid element (present
 		// voxel
 		if (_species instanceof ParticulateSpecies) {
-			ParticulateSpecies p = (ParticulateSpecies) _species;
-			if (c.speciesPartOfComposition(p)) {
-				float totalMass = p.getTotalMassInPresentVoxel();
-				float m = c.getSpeciesMass(p);
+			ParticulateSpecies sp = (ParticulateSpecies) _species;
+			if (c.speciesPartOfComposition(sp)) {
+				float totalMass = sp.getTotalMassInPresentVoxel(g, p);
+				float m = c.getSpeciesMass(sp);
 				// case where totalMass is zero or too small for
 				// precision purposes
 				if (Float.isInfinite(m / totalMass))
 					return 0;
 				if (m > 0) {
-					return m / totalMass * getValue();
+					return m / totalMass * getValue(g, p);
 				}
 				return 0;
 			}
 		}
-		return getValue();
+		return getValue(g, p);
 	}
 }
\ No newline at end of file
@@ -27,8 +27,8 @@ public class SoluteLevelCheck extends ProcessFactor {
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
-		float concSolute = _solute.getValue();
+	public float getValue(int g, int p) {
+		float concSolute = _solute.getValue(g, p);
 		if(concSolute != 7f) {for(int i = 0; i < 100; i++)
 		System.out.println(concSolute);}
 		else System.out.println(concSolute);
@@ -40,12 +40,16 @@ public class SoluteLevelCheck extends ProcessFactor {
 		return 1;
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return s == _solute;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		return 0;
 	}
 }
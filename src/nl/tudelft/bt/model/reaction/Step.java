@@ -29,8 +29,8 @@ public class Step extends ProcessFactor {
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
-		float concPublicGood = _solute.getValue();
+	public float getValue(int g, int p) {
+		float concPublicGood = _solute.getValue(g, p);
 		
 		//concPublicGood = 10f;
 		if (concPublicGood > _threshold){
@@ -44,12 +44,16 @@ public class Step extends ProcessFactor {
 		return 1;
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return s == _solute;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		return 0;
 	}
 }
@@ -31,10 +31,10 @@ public class StepOrNoStep extends ProcessFactor {
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
+	public float getValue(int g, int p) {
 		if (_ifStep)
 		{
-			float concPublicGood = _solute.getValue();
+			float concPublicGood = _solute.getValue(g, p);
 			if (concPublicGood < 0) System.out.println(concPublicGood);
 			if (concPublicGood > _threshold){
 				return 1f;
@@ -50,12 +50,16 @@ public class StepOrNoStep extends ProcessFactor {
 		return 1;
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return s == _solute;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		return 0;
 	}
 }
@@ -31,8 +31,8 @@ public class ZerothOrder extends ProcessFactor {
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
-		float conc = _species.getValue();
+	public float getValue(int g, int p) {
+		float conc = _species.getValue(g, p);
 		return (conc == 0 ? 0 : 1);
 	}
 
@@ -41,12 +41,16 @@ public class ZerothOrder extends ProcessFactor {
 		return (conc == 0 ? 0 : 1);
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return s == _species;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		return 0f;
 	}
 
@@ -24,8 +24,8 @@ public class DownRegulationStep extends ProcessFactor {
 		
 	}
 
-	public float getValue() {
-		float conc = _autoinducer.getValue();
+	public float getValue(int g, int p) {
+		float conc = _autoinducer.getValue(g, p);
 		conc = (conc < 0 ? 0 : conc);
 		if (conc > _QSthreshold) {
 			return 0;
@@ -37,7 +37,11 @@ public class DownRegulationStep extends ProcessFactor {
 		return 1;
 	}
 
-	public float getDerivative(SoluteSpecies c) {
+	public boolean dependsOn(MultigridVariable s) {
+		return s == _autoinducer;
+	}
+
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		return 0f;
 	}
 
@@ -34,8 +34,8 @@ public class SigmoidalGoodUtil extends ProcessFactor {
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
-		float concPublicGood = _publicGood.getValue();
+	public float getValue(int g, int p) {
+		float concPublicGood = _publicGood.getValue(g, p);
 		return (float) Math.tanh((concPublicGood - _goodHalfPoint) * _steepness) + 1f;
 	}
 
@@ -44,13 +44,21 @@ public class SigmoidalGoodUtil extends ProcessFactor {
 		return (float) (Math.tanh((concPublicGood - _goodHalfPoint) * _steepness)) + 1f;
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return s == _publicGood;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
-		float concPublicGood = _publicGood.getValue();
-		return (float) (_steepness * (1 - Math.tanh((concPublicGood - _goodHalfPoint) * _steepness)));
+	public float getDerivative(SoluteSpecies c, int g, int p) {
+		if (c == _publicGood) {
+			float concPublicGood = _publicGood.getValue(g, p);
+			double t = Math.tanh((concPublicGood - _goodHalfPoint) * _steepness);
+			return (float) (_steepness * (1 - t * t));
+		}
+		return 0f;
 	}
 }
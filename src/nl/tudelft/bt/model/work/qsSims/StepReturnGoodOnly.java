@@ -30,8 +30,8 @@ public class StepReturnGoodOnly extends ProcessFactor {
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
-		float concPublicGood = _publicGood.getValue();
+	public float getValue(int g, int p) {
+		float concPublicGood = _publicGood.getValue(g, p);
 		if (concPublicGood > _goodThreshold){
 			return 1;
 		} else {
@@ -43,12 +43,16 @@ public class StepReturnGoodOnly extends ProcessFactor {
 		return 1;
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return s == _publicGood;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
+	public float getDerivative(SoluteSpecies c, int g, int p) {
 		return 0;
 	}
 }
@@ -38,9 +38,9 @@ public class StepReturnSubstrateAndGood extends ProcessFactor {
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
-		float concSubstrate = _substrate.getValue();
-		float concPublicGood = _publicGood.getValue();
+	public float getValue(int g, int p) {
+		float concSubstrate = _substrate.getValue(g, p);
+		float concPublicGood = _publicGood.getValue(g, p);
 		if (concPublicGood < _goodThreshold) {
 			return 0;
 		} else {
@@ -55,17 +55,21 @@ public class StepReturnSubstrateAndGood extends ProcessFactor {
 		return concSubstrate / (_Ks + concSubstrate);
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return (s == _substrate) | (s == _publicGood);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
-		float concPublicGood = _publicGood.getValue();
+	public float getDerivative(SoluteSpecies c, int g, int p) {
+		float concPublicGood = _publicGood.getValue(g, p);
 		if (concPublicGood < _goodThreshold)
 			return 0;
 		if (c == _substrate) {
-			float conc1 = _substrate.getValue();
+			float conc1 = _substrate.getValue(g, p);
 			return _Ks / (_Ks + conc1) / (_Ks + conc1);
 		} else if (c == _publicGood) {
 			return 0;
@@ -39,16 +39,16 @@ public class StepReturnSubstrateAndInducer extends ProcessFactor {
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalValue(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getValue() {
-		float concSubstrate = _substrate.getValue();
-		float concInducer = _inducer.getValue();
-		//System.out.println("InducerConc:" + _inducer.getValue() + _inducerThreshold);
+	public float getValue(int g, int p) {
+		float concSubstrate = _substrate.getValue(g, p);
+		float concInducer = _inducer.getValue(g, p);
+		//System.out.println("InducerConc:" + _inducer.getValue(g, p) + _inducerThreshold);
 		//concInducer = 10f;
 		if (concInducer < _inducerThreshold) {
 		//if(false) {
 			return 0;
 		} else {
-			System.out.println("InducerConc2:" + _inducer.getValue() + _inducerThreshold);
+			System.out.println("InducerConc2:" + _inducer.getValue(g, p) + _inducerThreshold);
 			return concSubstrate / (_Ks + concSubstrate);
 		}
 	}
@@ -60,18 +60,22 @@ public class StepReturnSubstrateAndInducer extends ProcessFactor {
 		return concSubstrate / (_Ks + concSubstrate);
 	}
 
+	public boolean dependsOn(MultigridVariable s) {
+		return (s == _substrate) | (s == _inducer);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.photobiofilms.phlip.reaction.ReactionFactor#getLocalDerivative(org.photobiofilms.phlip.ContinuousCoordinate)
 	 */
-	public float getDerivative(SoluteSpecies c) {
-		float concInducer = _inducer.getValue();
+	public float getDerivative(SoluteSpecies c, int g, int p) {
+		float concInducer = _inducer.getValue(g, p);
 		if (concInducer < _inducerThreshold)
 		//if(false)
 			return 0;
 		if (c == _substrate) {
-			float conc1 = _substrate.getValue();
+			float conc1 = _substrate.getValue(g, p);
 			return _Ks / (_Ks + conc1) / (_Ks + conc1);
 		} else if (c == _inducer) {
 			return 0;